@@ -5,9 +5,10 @@ import tech.mcprison.prison.Prison;
 import tech.mcprison.prison.PrisonAPI;
 import tech.mcprison.prison.internal.events.player.PlayerChatEvent;
 import tech.mcprison.prison.ranks.data.Rank;
-import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
-import tech.mcprison.prison.util.Text;
+import tech.mcprison.prison.ranks.managers.LadderManager;
+import tech.mcprison.prison.ranks.managers.RankManager;
+import tech.mcprison.prison.ranks.metrics.RanksMetrics;
 
 import java.util.Map;
 import java.util.Optional;
@@ -32,21 +33,47 @@ public class ChatHandler {
      */
 
     @Subscribe public void onPlayerChat(PlayerChatEvent e) {
+        long start = System.nanoTime();
         Optional<RankPlayer> player =
             PrisonRanks.getInstance().getPlayerManager().getPlayer(e.getPlayer().getUUID());
-        String prefix = "";
 
-        if(player.isPresent()) {
-            StringBuilder builder = new StringBuilder();
-            for(Map.Entry<RankLadder, Rank> entry: player.get().getRanks().entrySet()) {
-                builder.append(entry.getValue().tag);
-            }
-            prefix = builder.toString();
-        }
+        e.setFormat(formatChat(e.getFormat(), player.orElse(null)));
+        PrisonRanks.getInstance().getMetrics().histogram(RanksMetrics.CHAT).recordSince(start);
+    }
+
+    /*
+     * Methods
+     */
 
+    /**
+     * Fills in the {PRISON_RANK} placeholder of a chat format with the player's rank tags. The tags are
+     * translated when ranks are loaded, so nothing is translated here.
+     *
+     * @param format The chat format.
+     * @param player The player chatting, or null if they have no record.
+     * @return The format with the placeholder replaced.
+     */
+    public static String formatChat(String format, RankPlayer player) {
+        if (format.indexOf("{PRISON_RANK}") == -1) {
+            return format;
+        }
 
-        String newFormat = e.getFormat().replace("{PRISON_RANK}", Text.translateAmpColorCodes(prefix));
-        e.setFormat(newFormat);
+        StringBuilder prefix = new StringBuilder();
+        if (player != null) {
+            LadderManager ladderManager = PrisonRanks.getInstance().getLadderManager();
+            RankManager rankManager = PrisonRanks.getInstance().getRankManager();
+            for (Map.Entry<String, Integer> entry : player.ranks.entrySet()) {
+                // As in RankPlayer.getRanks(), ranks on ladders that no longer exist are skipped.
+                if (ladderManager.getLadderOrNull(entry.getKey()) == null) {
+                    continue;
+                }
+                Rank rank = rankManager.getRankOrNull(entry.getValue());
+                if (rank != null) {
+                    prefix.append(rank.getDisplayTag());
+                }
+            }
+        }
+        return RankUtil.replacePlaceholder(format, "{PRISON_RANK}", prefix.toString());
     }
 
 }
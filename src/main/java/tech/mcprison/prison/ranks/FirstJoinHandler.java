@@ -24,7 +24,6 @@ import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankPlayer;
 import tech.mcprison.prison.ranks.events.FirstJoinEvent;
 
-import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -49,7 +48,7 @@ public class FirstJoinHandler {
     @Subscribe public void onFirstJoin(FirstJoinEvent event) {
         RankPlayer player = event.getPlayer();
 
-        Optional<Rank> firstRank = PrisonRanks.getInstance().getDefaultLadder().getByPosition(1);
+        Optional<Rank> firstRank = PrisonRanks.getInstance().getPlayerManager().getStartingRank();
 
         if (firstRank.isPresent()) {
             player.addRank(PrisonRanks.getInstance().getDefaultLadder(), firstRank.get());
@@ -57,11 +56,7 @@ public class FirstJoinHandler {
             Output.get().logWarn("There are no ranks on the server! New player has no rank.");
         }
 
-        try {
-            PrisonRanks.getInstance().getPlayerManager().savePlayer(player);
-        } catch (IOException e) {
-            Output.get().logError("Could not save player files.", e);
-        }
+        // No need to save here; the player manager writes the new player once every listener is done.
     }
 
 }
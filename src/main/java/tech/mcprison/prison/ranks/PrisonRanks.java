@@ -20,22 +20,51 @@ package tech.mcprison.prison.ranks;
 import tech.mcprison.prison.Prison;
 import tech.mcprison.prison.PrisonAPI;
 import tech.mcprison.prison.convert.ConversionManager;
+import tech.mcprison.prison.integration.EconomyIntegration;
 import tech.mcprison.prison.integration.IntegrationType;
 import tech.mcprison.prison.modules.Module;
 import tech.mcprison.prison.modules.ModuleStatus;
 import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.api.AsyncRanks;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
+import tech.mcprison.prison.ranks.audit.AuditLog;
+import tech.mcprison.prison.ranks.codec.Codec;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
 import tech.mcprison.prison.ranks.commands.CommandCommands;
 import tech.mcprison.prison.ranks.commands.LadderCommands;
 import tech.mcprison.prison.ranks.commands.RankUpCommand;
 import tech.mcprison.prison.ranks.commands.RanksCommands;
+import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.display.RankListCache;
+import tech.mcprison.prison.ranks.economy.BalanceCache;
+import tech.mcprison.prison.ranks.expiry.RankExpiryService;
+import tech.mcprison.prison.ranks.history.RankHistory;
+import tech.mcprison.prison.ranks.jfr.FlightRecording;
 import tech.mcprison.prison.ranks.managers.LadderManager;
 import tech.mcprison.prison.ranks.managers.PlayerManager;
 import tech.mcprison.prison.ranks.managers.RankManager;
+import tech.mcprison.prison.ranks.metrics.MeteredDataStore;
+import tech.mcprison.prison.ranks.metrics.RanksMetrics;
+import tech.mcprison.prison.ranks.metrics.StorageWatchdog;
+import tech.mcprison.prison.ranks.ratelimit.RankUpRateLimiter;
+import tech.mcprison.prison.ranks.storage.CollectionStorageBackend;
+import tech.mcprison.prison.ranks.storage.DataStore;
+import tech.mcprison.prison.ranks.storage.KnownPlayers;
+import tech.mcprison.prison.ranks.storage.MigratingPlayerStore;
+import tech.mcprison.prison.ranks.storage.PlayerKeys;
+import tech.mcprison.prison.ranks.storage.SegmentStorageBackend;
+import tech.mcprison.prison.ranks.storage.SqlStorageBackend;
+import tech.mcprison.prison.ranks.storage.StorageBackend;
 import tech.mcprison.prison.store.Collection;
 import tech.mcprison.prison.store.Database;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -53,6 +82,18 @@ public class PrisonRanks extends Module {
     private PlayerManager playerManager;
 
     private Database database;
+    private RanksConfig config;
+    private StorageBackend storage;
+    private RanksMetrics metrics;
+    private StorageWatchdog watchdog;
+    private EconomyIntegration economy;
+    private AsyncRanks async;
+    private RankExpiryService expiryService;
+    private RankHistory history;
+    private AuditLog auditLog;
+    private RankUpRateLimiter rateLimiter;
+    private BalanceCache balanceCache;
+    private RankListCache rankListCache;
 
     /*
      * Constructor
@@ -70,6 +111,31 @@ public class PrisonRanks extends Module {
         return instance;
     }
 
+    /**
+     * Sets up the module without a server, for tests, benchmarks and load tests. Only the config, metrics,
+     * caches, rate limiter and managers are created, on the given storage; there's no economy, audit log,
+     * history, listeners or commands. The managers start empty, apart from the default ladder.
+     *
+     * @param config  The settings to use.
+     * @param storage Where the managers keep their data, usually the tests' {@code MemoryStorageBackend}.
+     * @return The module, which {@link #getInstance()} now returns as well.
+     */
+    public static PrisonRanks offline(RanksConfig config, StorageBackend storage) {
+        PrisonRanks ranks = new PrisonRanks("offline");
+        ranks.config = config;
+        ranks.storage = storage;
+        ranks.metrics = new RanksMetrics();
+        ranks.rateLimiter = new RankUpRateLimiter(config);
+        ranks.rankListCache = new RankListCache();
+        ranks.rankManager = new RankManager(storage.getRanks());
+        ranks.ladderManager = new LadderManager(storage.getLadders());
+        ranks.playerManager = new PlayerManager(storage.getPlayers(), false);
+        instance = ranks;
+
+        ranks.ladderManager.createLadder("default");
+        return ranks;
+    }
+
     @Override public void enable() {
         instance = this;
 
@@ -79,6 +145,10 @@ public class PrisonRanks extends Module {
             return;
         }
 
+        // Resolve the economy once, instead of on every rank-up
+        this.economy = (EconomyIntegration) PrisonAPI.getIntegrationManager()
+            .getForType(IntegrationType.ECONOMY).orElseThrow(IllegalStateException::new);
+
         Optional<Database> databaseOptional = PrisonAPI.getStorage().getDatabase("ranksDb");
         if (!databaseOptional.isPresent()) {
             PrisonAPI.getStorage().createDatabase("ranks");
@@ -86,38 +156,87 @@ public class PrisonRanks extends Module {
         }
         this.database = databaseOptional.get();
 
+        // Load up the config and the storage
+
+        Object phase = FlightRecording.beginPhase();
+        loadConfig();
+        metrics = new RanksMetrics();
+        rateLimiter = new RankUpRateLimiter(config);
+        balanceCache = new BalanceCache(economy, config.balanceCacheSeconds);
+        rankListCache = new RankListCache();
+        Prison.get().getEventBus().register(metrics.getRankUpStats());
+        if (config.watchdogThreshold > 0) {
+            // The module is enabled on the server thread, so that's the one to watch.
+            watchdog = new StorageWatchdog(Thread.currentThread(), config.watchdogThreshold);
+        }
+        storage = initStorage();
+        auditLog = new AuditLog(new File(PrisonAPI.getPluginDirectory(), "ranks-audit"));
+        FlightRecording.commitPhase(phase, "storage");
+
         // Load up the ranks
 
-        rankManager = new RankManager(initCollection("ranks"));
+        phase = FlightRecording.beginPhase();
+        rankManager = new RankManager(wrapStore(storage.getRanks(), "ranks", CodecUtil.RANK));
         try {
             rankManager.loadRanks();
         } catch (IOException e) {
             Output.get().logError("A rank file failed to load.", e);
         }
+        FlightRecording.commitPhase(phase, "ranks");
 
         // Load up the ladders
 
 
-        ladderManager = new LadderManager(initCollection("ladders"));
+        phase = FlightRecording.beginPhase();
+        ladderManager =
+            new LadderManager(wrapStore(storage.getLadders(), "ladders", CodecUtil.LADDER));
         try {
             ladderManager.loadLadders();
         } catch (IOException e) {
             Output.get().logError("A ladder file failed to load.", e);
         }
         createDefaultLadder();
+        FlightRecording.commitPhase(phase, "ladders");
 
         // Load up the players
 
 
-        playerManager = new PlayerManager(initCollection("players"));
+        phase = FlightRecording.beginPhase();
+        if (config.migratedPlayerKeys.contains(storage.getName())) {
+            storage.getPlayers().setMigrated();
+        }
+        playerManager =
+            new PlayerManager(wrapStore(storage.getPlayers(), "players", CodecUtil.PLAYER));
+        if (config.sparsePlayers) {
+            try {
+                playerManager.setKnownPlayers(new KnownPlayers(
+                    new File(PrisonAPI.getPluginDirectory(), "ranks-known-players.dat")));
+            } catch (IOException e) {
+                Output.get().logError(
+                    "Could not read the known players, so players pruned by sparse storage will be treated as new.",
+                    e);
+            }
+        }
         try {
             playerManager.loadPlayers();
         } catch (IOException e) {
             Output.get().logError("A player file failed to load.", e);
         }
+        if (!storage.getPlayers().isMigrated()) {
+            startPlayerKeyMigration();
+        }
+        if (config.historyLimit > 0) {
+            history = new RankHistory(new File(PrisonAPI.getPluginDirectory(), "ranks-history"),
+                config.historyLimit);
+            playerManager.setHistory(history);
+        }
+        expiryService = new RankExpiryService();
+        expiryService.start();
+        FlightRecording.commitPhase(phase, "players");
 
         // Load up the commands
 
+        phase = FlightRecording.beginPhase();
         Prison.get().getCommandHandler().registerCommands(new RankUpCommand());
         Prison.get().getCommandHandler().registerCommands(new CommandCommands());
         Prison.get().getCommandHandler().registerCommands(new RanksCommands());
@@ -127,8 +246,15 @@ public class PrisonRanks extends Module {
 
         new FirstJoinHandler();
         new ChatHandler();
+        async = new AsyncRanks();
         ConversionManager.getInstance().registerConversionAgent(new RankConversionAgent());
 
+        if (config.metricsDumpInterval > 0) {
+            metrics.startDumping(new File(PrisonAPI.getPluginDirectory(), "ranks-stats.json"),
+                config.metricsDumpInterval);
+        }
+        FlightRecording.commitPhase(phase, "listeners");
+
     }
 
     private Collection initCollection(String collName) {
@@ -141,6 +267,147 @@ public class PrisonRanks extends Module {
         return collectionOptional.orElseThrow(RuntimeException::new);
     }
 
+    /**
+     * Moves players saved under the old half-UUID keys to full-UUID keys, in the background. Until it's done,
+     * the players store looks under both.
+     */
+    private void startPlayerKeyMigration() {
+        MigratingPlayerStore players = storage.getPlayers();
+        String backend = storage.getName();
+
+        Thread thread = new Thread(() -> {
+            try {
+                int moved = players.migrate((checked, movedSoFar) -> Output.get()
+                    .logInfo("Moving player files to new keys: %d checked, %d moved.", checked,
+                        movedSoFar));
+                if (moved > 0) {
+                    Output.get().logInfo("Moved %d player files to new keys.", moved);
+                }
+                PrisonAPI.getScheduler().runTaskLater(() -> {
+                    config.migratedPlayerKeys.add(backend);
+                    saveConfig();
+                }, 0);
+            } catch (IOException | RuntimeException e) {
+                Output.get().logError(
+                    "Could not move player files to new keys. This will be tried again on the next start.",
+                    e);
+            }
+        }, "prison-ranks-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the module's settings, and writes them back so that any new settings show up with their defaults.
+     */
+    private void loadConfig() {
+        Collection configCollection = initCollection("config");
+        config = configCollection.get("config").map(RanksConfig::new).orElseGet(RanksConfig::new);
+        saveConfig();
+    }
+
+    private void saveConfig() {
+        initCollection("config").insert("config", config.toDocument());
+    }
+
+    /**
+     * Opens the storage backend chosen in the config. If it can't be opened, the data will be kept in
+     * Prison's document storage instead.
+     */
+    private StorageBackend initStorage() {
+        CollectionStorageBackend collectionStorage = new CollectionStorageBackend(database);
+        if (SegmentStorageBackend.NAME.equalsIgnoreCase(config.storage)) {
+            return initSegmentStorage(collectionStorage);
+        }
+        if (!SqlStorageBackend.NAME.equalsIgnoreCase(config.storage)) {
+            return collectionStorage;
+        }
+
+        SqlStorageBackend sqlStorage;
+        try {
+            sqlStorage =
+                new SqlStorageBackend(new File(PrisonAPI.getPluginDirectory(), "ranks.db"));
+        } catch (IOException e) {
+            Output.get().logError(
+                "Could not open the ranks database; falling back to the collection storage.", e);
+            return collectionStorage;
+        }
+
+        // The first time the database is used, carry over whatever was in the collections.
+        try {
+            if (sqlStorage.getRanks().count() == 0 && sqlStorage.getLadders().count() == 0
+                && sqlStorage.getPlayerTable().count() == 0) {
+                copyStorage(collectionStorage, sqlStorage);
+            }
+        } catch (IOException e) {
+            Output.get().logError("Could not copy the existing ranks data into the database.", e);
+        }
+        return sqlStorage;
+    }
+
+    private StorageBackend initSegmentStorage(CollectionStorageBackend collectionStorage) {
+        SegmentStorageBackend segmentStorage;
+        try {
+            segmentStorage = new SegmentStorageBackend(collectionStorage,
+                new File(PrisonAPI.getPluginDirectory(), "ranks-players"));
+        } catch (IOException e) {
+            Output.get().logError(
+                "Could not open the player segments; falling back to the collection storage.", e);
+            return collectionStorage;
+        }
+
+        // Ranks and ladders stay where they are; the first time, carry the players over.
+        if (segmentStorage.getPlayerSegments().size() == 0) {
+            try {
+                Map<String, RankPlayer> players = new LinkedHashMap<>();
+                for (RankPlayer player : collectionStorage.getPlayers().loadAll()) {
+                    players.put(PlayerKeys.key(player.uid), player);
+                }
+                if (!players.isEmpty()) {
+                    segmentStorage.getPlayers().saveAll(players);
+                    Output.get().logInfo("Copied %d players into the %s storage.", players.size(),
+                        segmentStorage.getName());
+                }
+            } catch (IOException e) {
+                Output.get().logError("Could not copy the existing players into the segments.", e);
+            }
+        }
+        return segmentStorage;
+    }
+
+    /**
+     * Wraps one of the backend's stores with the metrics and, if enabled, the watchdog.
+     */
+    private <T> DataStore<T> wrapStore(DataStore<T> store, String name, Codec<T> codec) {
+        if (watchdog != null) {
+            store = watchdog.watch(store, name);
+        }
+        return new MeteredDataStore<>(store, name, codec, metrics);
+    }
+
+    private void copyStorage(StorageBackend from, StorageBackend to) throws IOException {
+        Map<String, Rank> ranks = new LinkedHashMap<>();
+        for (Rank rank : from.getRanks().loadAll()) {
+            ranks.put("rank_" + rank.id, rank);
+        }
+        Map<String, RankLadder> ladders = new LinkedHashMap<>();
+        for (RankLadder ladder : from.getLadders().loadAll()) {
+            ladders.put("ladder_" + ladder.id, ladder);
+        }
+        Map<String, RankPlayer> players = new LinkedHashMap<>();
+        for (RankPlayer player : from.getPlayers().loadAll()) {
+            players.put(PlayerKeys.key(player.uid), player);
+        }
+
+        to.transaction(() -> {
+            to.getRanks().saveAll(ranks);
+            to.getLadders().saveAll(ladders);
+            to.getPlayers().saveAll(players);
+        });
+        Output.get().logInfo("Copied %d ranks, %d ladders and %d players into the %s storage.",
+            ranks.size(), ladders.size(), players.size(), to.getName());
+    }
+
     /**
      * A default ladder is absolutely necessary on the server, so let's create it if it doesn't exist.
      */
@@ -173,6 +440,24 @@ public class PrisonRanks extends Module {
         } catch (IOException e) {
             Output.get().logError("A ranks file failed to save.", e);
         }
+        if (metrics != null) {
+            metrics.stop();
+        }
+        if (expiryService != null) {
+            expiryService.stop();
+        }
+        if (playerManager != null) {
+            playerManager.shutdown();
+        }
+        if (history != null) {
+            history.close();
+        }
+        if (auditLog != null) {
+            auditLog.close();
+        }
+        if (storage != null) {
+            storage.close();
+        }
     }
 
     public RankManager getRankManager() {
@@ -195,4 +480,84 @@ public class PrisonRanks extends Module {
         return database;
     }
 
+    public RanksConfig getConfig() {
+        return config;
+    }
+
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
+    public RanksMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return The thread-safe API for other plugins. Plugins wanting their own work executor can create an
+     * {@link AsyncRanks} of their own.
+     */
+    public AsyncRanks getAsync() {
+        return async;
+    }
+
+    public RankExpiryService getExpiryService() {
+        return expiryService;
+    }
+
+    /**
+     * @return The players' rank history, or null if it's turned off.
+     */
+    public RankHistory getHistory() {
+        return history;
+    }
+
+    public RankUpRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * @return The audit log, or null if the module was set up with {@link #offline(RanksConfig, StorageBackend)}.
+     */
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Notes a change to a player's ranks in the audit log, if there is one. The module has none when it was set up
+     * with {@link #offline(RanksConfig, StorageBackend)}.
+     *
+     * @param entry The change.
+     */
+    public void audit(AuditEntry entry) {
+        if (auditLog != null) {
+            auditLog.record(entry);
+        }
+    }
+
+    /**
+     * @return The storage watchdog, or null if it's turned off.
+     */
+    public StorageWatchdog getWatchdog() {
+        return watchdog;
+    }
+
+    public EconomyIntegration getEconomy() {
+        return economy;
+    }
+
+    /**
+     * @return Players' balances, remembered for a few seconds, for showing whether they can afford something.
+     * This is null if the module was set up with {@link #offline(RanksConfig, StorageBackend)}.
+     */
+    public BalanceCache getBalanceCache() {
+        return balanceCache;
+    }
+
+    /**
+     * @return The rendered pages of rank lists, which are forgotten whenever ranks or ladders change.
+     */
+    public RankListCache getRankListCache() {
+        return rankListCache;
+    }
+
 }
@@ -1,7 +1,8 @@
 package tech.mcprison.prison.ranks;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import tech.mcprison.prison.PrisonAPI;
 import tech.mcprison.prison.convert.ConversionAgent;
 import tech.mcprison.prison.convert.ConversionResult;
@@ -10,10 +11,19 @@ import tech.mcprison.prison.output.Output;
 import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Faizaan A. Datoo
@@ -31,87 +41,176 @@ public class RankConversionAgent implements ConversionAgent {
         }
 
         String[] ranksJson = ranksFolder.list((dir, name) -> name.endsWith(".json"));
+        if (ranksJson == null) {
+            ranksJson = new String[0];
+        }
 
-        try {
+        long start = System.nanoTime();
+        List<String> errors = new ArrayList<>();
 
-            if (ranksJson != null) {
-                for (String rankJson : ranksJson) {
-                    File rankFile = new File(ranksFolder, rankJson);
-                    String json = new String(Files.readAllBytes(rankFile.toPath()));
-
-                    JsonObject obj = new JsonParser().parse(json).getAsJsonObject();
-                    String name = obj.getAsJsonPrimitive("name").getAsString();
-                    double price = obj.getAsJsonPrimitive("price").getAsDouble();
-                    String prefix = obj.getAsJsonPrimitive("prefix").getAsString();
-                    if (!prefix.contains("[")) {
-                        prefix = "&3[" + prefix;
-                    }
-                    if (!prefix.contains("]")) {
-                        prefix = prefix + "&3]";
-                    }
-
-                    if(PrisonRanks.getInstance().getRankManager().getRank(name).isPresent()) {
-                        break; // Already added
-                    }
-
-                    Optional<RankLadder> rankLadderOptional =
-                        PrisonRanks.getInstance().getLadderManager().getLadder("default");
-                    if (!rankLadderOptional.isPresent()) {
-                        break; // Idek how this is possible.
-                    }
-
-                    Optional<Rank> ourRank =
-                        PrisonRanks.getInstance().getRankManager().createRank(name, prefix, price);
-                    if (!ourRank.isPresent()) {
-                        Output.get().logWarn(String.format("Could not convert rank '%s'", name));
-                        break; // It failed
-                    }
-
-                    try {
-                        PrisonRanks.getInstance().getRankManager().saveRank(ourRank.get());
-                    } catch (IOException e) {
-                        String nonNullName = name == null ? "null" : name;
-                        PrisonRanks.getInstance().getErrorManager().throwError(
-                            new Error("while converting ranks")
-                                .appendStackTrace("while saving rank " + nonNullName, e));
-                        break; // Skip this...
-                    }
-
-                    rankLadderOptional.get().addRank(ourRank.get());
-                    try {
-                        PrisonRanks.getInstance().getLadderManager()
-                            .saveLadder(rankLadderOptional.get());
-                    } catch (IOException e) {
-                        PrisonRanks.getInstance().getErrorManager().throwError(
-                            new Error("while converting ranks")
-                                .appendStackTrace("while saving default ladder", e));
-                        break; // Skip this...
-                    }
+        // Parse every file up front, in parallel. Nothing is created until all of them have been read.
+        List<LegacyRank> legacyRanks = parseAll(ranksFolder, ranksJson, errors);
+        long parseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
-                }
+        RankLadder defaultLadder = PrisonRanks.getInstance().getDefaultLadder();
+        int converted = 0;
+        for (LegacyRank legacyRank : legacyRanks) {
+            if (PrisonRanks.getInstance().getRankManager().getRank(legacyRank.name).isPresent()) {
+                continue; // Already added
+            }
 
-                Output.get().logInfo("Notice: While we converted your ranks data, Prison 3 no longer ties itself to the permissions plugin."
-                    + "That means that if you want users to change permissions groups when they rank up, you'll have to use rank-up commands.");
-                Output.get().logInfo("For more information, see this article:&b https://github.com/MC-Prison/Prison/wiki/Ranks-Guidebook#rank-up-commands");
-
-                alreadyConverted.createNewFile();
-                return new ConversionResult(getName(), ConversionResult.Status.Success,
-                    "Converted " + ranksJson.length + " ranks.");
-            } else {
-                alreadyConverted.createNewFile();
-                return new ConversionResult(getName(), ConversionResult.Status.Success,
-                    "Converted 0 ranks.");
+            Optional<Rank> ourRank = PrisonRanks.getInstance().getRankManager()
+                .createRank(legacyRank.name, legacyRank.prefix, legacyRank.price);
+            if (!ourRank.isPresent()) {
+                errors.add(legacyRank.file + ": could not create rank '" + legacyRank.name + "'");
+                continue;
             }
+
+            defaultLadder.addRank(ourRank.get());
+            converted++;
+        }
+
+        // Write everything at once, rather than re-saving the ladder after every rank.
+        try {
+            PrisonRanks.getInstance().getStorage().transaction(() -> {
+                PrisonRanks.getInstance().getRankManager().saveRanks();
+                PrisonRanks.getInstance().getLadderManager().saveLadder(defaultLadder);
+            });
         } catch (IOException e) {
             PrisonRanks.getInstance().getErrorManager().throwError(
-                new Error("while converting ranks").appendStackTrace("while loading ranks", e));
+                new Error("while converting ranks").appendStackTrace("while saving ranks", e));
             return ConversionResult.failure(getName(), "IOException, check console for details.");
         }
 
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        if (converted > 0) {
+            Output.get().logInfo("Notice: While we converted your ranks data, Prison 3 no longer ties itself to the permissions plugin."
+                + "That means that if you want users to change permissions groups when they rank up, you'll have to use rank-up commands.");
+            Output.get().logInfo("For more information, see this article:&b https://github.com/MC-Prison/Prison/wiki/Ranks-Guidebook#rank-up-commands");
+        }
+
+        String summary = String.format("Converted %d of %d ranks in %dms (%dms reading files).",
+            converted, ranksJson.length, totalMillis, parseMillis);
+
+        if (!errors.isEmpty()) {
+            for (String error : errors) {
+                Output.get().logWarn("Could not convert " + error);
+            }
+            // Not marked as converted, so the broken files can be fixed and the conversion run again.
+            // Ranks which made it this time will be skipped.
+            return new ConversionResult(getName(), ConversionResult.Status.Partial,
+                summary + " " + errors.size() + " files failed, check console for details.");
+        }
+
+        try {
+            alreadyConverted.createNewFile();
+        } catch (IOException e) {
+            Output.get().logWarn("Could not mark the old ranks as converted.", e);
+        }
+        return new ConversionResult(getName(), ConversionResult.Status.Success, summary);
+    }
+
+    /**
+     * Reads every legacy rank file on a small thread pool. Files which can't be read are added to the errors
+     * and left out, rather than stopping the others.
+     *
+     * @return The ranks which were read, in the same order as the files.
+     */
+    private List<LegacyRank> parseAll(File folder, String[] files, List<String> errors) {
+        List<LegacyRank> ret = new ArrayList<>(files.length);
+        if (files.length == 0) {
+            return ret;
+        }
+
+        int threads = Math.min(files.length, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-convert-%d").setDaemon(true)
+                .build());
+        try {
+            List<Future<LegacyRank>> futures = new ArrayList<>(files.length);
+            for (String file : files) {
+                futures.add(executor.submit(() -> parse(new File(folder, file))));
+            }
+
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    ret.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() == null ? e : e.getCause();
+                    errors.add(files[i] + ": " + cause.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            errors.add("the remaining files: interrupted while reading them");
+        } finally {
+            executor.shutdownNow();
+        }
+        return ret;
+    }
+
+    /**
+     * Reads the fields we need from a legacy rank file as a stream, skipping everything else.
+     */
+    private LegacyRank parse(File file) throws IOException {
+        LegacyRank rank = new LegacyRank();
+        rank.file = file.getName();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+            JsonReader json = new JsonReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "name":
+                        rank.name = json.nextString();
+                        break;
+                    case "price":
+                        rank.price = json.nextDouble();
+                        break;
+                    case "prefix":
+                        rank.prefix = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("invalid JSON: " + e.getMessage(), e);
+        }
+
+        if (rank.name == null || rank.price == null || rank.prefix == null) {
+            throw new IOException("missing 'name', 'price' or 'prefix'");
+        }
+        if (!rank.prefix.contains("[")) {
+            rank.prefix = "&3[" + rank.prefix;
+        }
+        if (!rank.prefix.contains("]")) {
+            rank.prefix = rank.prefix + "&3]";
+        }
+        return rank;
     }
 
     @Override public String getName() {
         return "Ranks";
     }
 
+    /**
+     * The fields of a rank from Prison 2 which carry over.
+     */
+    private static class LegacyRank {
+
+        String file;
+        String name;
+        Double price;
+        String prefix;
+
+    }
+
 }
@@ -19,18 +19,20 @@ package tech.mcprison.prison.ranks;
 
 import tech.mcprison.prison.Prison;
 import tech.mcprison.prison.PrisonAPI;
-import tech.mcprison.prison.integration.EconomyIntegration;
-import tech.mcprison.prison.integration.IntegrationType;
 import tech.mcprison.prison.internal.Player;
 import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
 import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.economy.BalanceCache;
 import tech.mcprison.prison.ranks.events.RankUpEvent;
+import tech.mcprison.prison.ranks.jfr.FlightRecording;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.metrics.RanksMetrics;
 
 import java.io.IOException;
 import java.text.NumberFormat;
-import java.util.Optional;
 
 /**
  * Utilities for changing the ranks of players.
@@ -44,7 +46,28 @@ public class RankUtil {
      */
 
     public static final int RANKUP_SUCCESS = 0, RANKUP_FAILURE = 1, RANKUP_HIGHEST = 2,
-        RANKUP_CANT_AFFORD = 3, RANKUP_NO_RANKS = 4;
+        RANKUP_CANT_AFFORD = 3, RANKUP_NO_RANKS = 4, RANKUP_THROTTLED = 5;
+
+    // Outcomes that carry no rank are shared, so failing rank-ups don't allocate a result each time. The rest
+    // are kept by their rank; see Rank#getRankUpResult(int).
+    private static final RankUpResult FAILURE_RESULT = new RankUpResult(RANKUP_FAILURE, null);
+    private static final RankUpResult NO_RANKS_RESULT = new RankUpResult(RANKUP_NO_RANKS, null);
+    private static final RankUpResult THROTTLED_RESULT = new RankUpResult(RANKUP_THROTTLED, null);
+
+    // Pays for rank-ups through the server's economy plugin.
+    private static final Funds ECONOMY_FUNDS = new Funds() {
+        @Override public boolean canAfford(RankPlayer player, Player prisonPlayer, double amount) {
+            return PrisonRanks.getInstance().getEconomy().canAfford(prisonPlayer, amount);
+        }
+
+        @Override public void remove(RankPlayer player, Player prisonPlayer, double amount) {
+            PrisonRanks.getInstance().getEconomy().removeBalance(prisonPlayer, amount);
+            BalanceCache balanceCache = PrisonRanks.getInstance().getBalanceCache();
+            if (balanceCache != null) {
+                balanceCache.invalidate(player.uid);
+            }
+        }
+    };
 
     /*
      * Constructor
@@ -64,67 +87,131 @@ public class RankUtil {
      * @param ladderName The name of the ladder to rank up this player on.
      */
     public static RankUpResult rankUpPlayer(RankPlayer player, String ladderName) {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginRankUp();
+        RankUpResult result = doRankUpPlayer(player, ladderName);
+        PrisonRanks.getInstance().getMetrics().recordRankUp(result.status, System.nanoTime() - start);
+        if (event != null) {
+            FlightRecording.commitRankUp(event, player.uid.toString(), ladderName,
+                RanksMetrics.getOutcomeName(result.status),
+                result.rank == null ? 0 : result.rank.cost);
+        }
+        return result;
+    }
+
+    private static RankUpResult doRankUpPlayer(RankPlayer player, String ladderName) {
 
         Player prisonPlayer = PrisonAPI.getPlayer(player.uid).orElse(null);
         RankLadder ladder =
-            PrisonRanks.getInstance().getLadderManager().getLadder(ladderName).orElse(null);
+            PrisonRanks.getInstance().getLadderManager().getLadderOrNull(ladderName);
 
         if(prisonPlayer == null || ladder == null) {
-            return new RankUpResult(RANKUP_FAILURE, null);
+            return FAILURE_RESULT;
+        }
+
+        // Checked before anything touches the economy or storage, which is what the limit protects.
+        if (!PrisonRanks.getInstance().getRateLimiter().tryAcquire(player.uid, ladder)) {
+            return THROTTLED_RESULT;
         }
 
-        Optional<Rank> currentRankOptional = player.getRank(ladder);
+        return rankUpPlayer(player, prisonPlayer, ladder, ECONOMY_FUNDS,
+            PrisonRanks.getInstance().getPlayerManager(), true);
+    }
+
+    /**
+     * Sends the player to the next rank, paying with the given funds and saving through the given player manager.
+     * This is the body of {@link #rankUpPlayer(RankPlayer, String)}; it's exposed so that the load test
+     * can run real rank-ups against synthetic players.
+     *
+     * @param player        The {@link RankPlayer} to rank up.
+     * @param prisonPlayer  The online player, used for the economy and commands. May be null if neither needs it.
+     * @param ladder        The ladder to rank up this player on.
+     * @param funds         Where the money for the rank-up comes from.
+     * @param playerManager The {@link PlayerManager} to save the player with.
+     * @param applyEffects  Whether to run the rank-up commands and post the {@link RankUpEvent}.
+     */
+    public static RankUpResult rankUpPlayer(RankPlayer player, Player prisonPlayer,
+        RankLadder ladder, Funds funds, PlayerManager playerManager, boolean applyEffects) {
+
+        Rank currentRank = player.getRankOrNull(ladder);
         Rank nextRank;
 
-        if (!currentRankOptional.isPresent()) {
-            Optional<Rank> lowestRank = ladder.getByPosition(0);
-            if (!lowestRank.isPresent()) {
-                return new RankUpResult(RANKUP_NO_RANKS, null);
+        if (currentRank == null) {
+            nextRank = ladder.getByPositionOrNull(0);
+            if (nextRank == null) {
+                return NO_RANKS_RESULT;
             }
-            nextRank = lowestRank.get();
         } else {
-            Optional<Rank> nextRankOptional =
-                ladder.getNext(ladder.getPositionOfRank(currentRankOptional.get()));
+            nextRank = ladder.getNextOrNull(ladder.getPositionOfRank(currentRank));
 
-            if (!nextRankOptional.isPresent()) {
-                return new RankUpResult(RANKUP_HIGHEST,
-                    currentRankOptional.get()); // We're already at the highest rank.
+            if (nextRank == null) {
+                return currentRank.getRankUpResult(RANKUP_HIGHEST); // We're already at the highest rank.
             }
-
-            nextRank = nextRankOptional.get();
         }
 
         // We're going to be making a transaction here
         // We'll check if the player can afford it first, and if so, we'll make the transaction and proceed.
 
-        EconomyIntegration economy = (EconomyIntegration) PrisonAPI.getIntegrationManager()
-            .getForType(IntegrationType.ECONOMY).orElseThrow(IllegalStateException::new);
-        if (!economy.canAfford(prisonPlayer, nextRank.cost)) {
-            return new RankUpResult(RANKUP_CANT_AFFORD, nextRank);
+        if (!funds.canAfford(player, prisonPlayer, nextRank.cost)) {
+            return nextRank.getRankUpResult(RANKUP_CANT_AFFORD);
         }
 
-        economy.removeBalance(prisonPlayer, nextRank.cost);
+        funds.remove(player, prisonPlayer, nextRank.cost);
 
         player.addRank(ladder, nextRank);
 
         try {
-            PrisonRanks.getInstance().getPlayerManager().savePlayer(player);
+            playerManager.savePlayer(player);
         } catch (IOException e) {
             Output.get().logError("An error occurred while saving player files.", e);
-            return new RankUpResult(RANKUP_FAILURE, null);
+            return FAILURE_RESULT;
+        }
+
+        if (!applyEffects) {
+            return nextRank.getRankUpResult(RANKUP_SUCCESS);
         }
 
         // Now, we'll run the rank up commands.
 
-        for (String cmd : nextRank.rankUpCommands) {
-            String formatted = cmd.replace("{player}", prisonPlayer.getName())
-                .replace("{player_uid}", player.uid.toString());
-            PrisonAPI.dispatchCommand(formatted);
+        if (nextRank.rankUpCommands != null) {
+            for (String cmd : nextRank.rankUpCommands) {
+                String formatted = replacePlaceholder(cmd, "{player}", prisonPlayer.getName());
+                if (formatted.indexOf("{player_uid}") != -1) {
+                    formatted = replacePlaceholder(formatted, "{player_uid}", player.uid.toString());
+                }
+                PrisonAPI.dispatchCommand(formatted);
+            }
         }
 
         Prison.get().getEventBus().post(
-            new RankUpEvent(player, currentRankOptional.orElse(null), nextRank, nextRank.cost));
-        return new RankUpResult(RANKUP_SUCCESS, nextRank);
+            new RankUpEvent(player, ladder, currentRank, nextRank, nextRank.cost));
+        PrisonRanks.getInstance().audit(
+            new AuditEntry(prisonPlayer.getName(), player.uid, ladder.name,
+                currentRank == null ? null : currentRank.name, nextRank.name, nextRank.cost,
+                "rankup"));
+        return nextRank.getRankUpResult(RANKUP_SUCCESS);
+    }
+
+    /**
+     * Replaces every occurrence of a placeholder in a string. Unlike {@link String#replace(CharSequence, CharSequence)}
+     * on Java 8, this doesn't compile a regex pattern on each call, and hands back the original string untouched
+     * if the placeholder doesn't appear at all.
+     */
+    static String replacePlaceholder(String input, String placeholder, String value) {
+        int index = input.indexOf(placeholder);
+        if (index == -1) {
+            return input;
+        }
+
+        StringBuilder builder = new StringBuilder(input.length() + value.length());
+        int last = 0;
+        while (index != -1) {
+            builder.append(input, last, index).append(value);
+            last = index + placeholder.length();
+            index = input.indexOf(placeholder, last);
+        }
+        builder.append(input, last, input.length());
+        return builder.toString();
     }
 
     public static String doubleToDollarString(double val) {
@@ -132,18 +219,32 @@ public class RankUtil {
     }
 
     public static int doubleToInt(Object d) {
-        return Math.toIntExact(Math.round((double) d));
+        if (d instanceof Integer) {
+            return (Integer) d;
+        }
+        return Math.toIntExact(Math.round(((Number) d).doubleValue()));
     }
 
     /*
      * Member Classes
      */
 
+    /**
+     * Where the money for a rank-up comes from.
+     */
+    public interface Funds {
+
+        boolean canAfford(RankPlayer player, Player prisonPlayer, double amount);
+
+        void remove(RankPlayer player, Player prisonPlayer, double amount);
+
+    }
+
 
     public static class RankUpResult {
 
-        public int status;
-        public Rank rank;
+        public final int status;
+        public final Rank rank;
 
         public RankUpResult(int status, Rank rank) {
             this.status = status;
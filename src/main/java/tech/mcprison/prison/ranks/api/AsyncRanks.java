@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.api;
+
+import tech.mcprison.prison.PrisonAPI;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.RankUtil;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.history.RankChange;
+import tech.mcprison.prison.ranks.history.RankHistory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * A thread-safe way for other plugins to read and change ranks from any thread.
+ * <p>
+ * The ranks data isn't thread-safe, and rank-ups run commands and charge the economy, so every operation is
+ * handed to a work executor; by default that's the server thread. Operations on the same player always run
+ * one after another, in the order they were asked for, even if a multi-threaded work executor is used.
+ * Each method returns straight away, and its future completes on the callback executor passed to it, or on the
+ * work executor if none is.
+ * <p>
+ * Players handed back are copies, so they can be read safely from any thread; changes made to them have no
+ * effect.
+ */
+public class AsyncRanks {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final Executor workExecutor;
+
+    // The last queued operation of each player with something in flight.
+    private final Map<UUID, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Runs operations on the server thread.
+     */
+    public AsyncRanks() {
+        this(serverThread());
+    }
+
+    /**
+     * @param workExecutor Where operations run. It must be safe to use the ranks module from its threads.
+     */
+    public AsyncRanks(Executor workExecutor) {
+        this.workExecutor = workExecutor;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @return An executor which runs tasks on the server thread, at the next tick.
+     */
+    public static Executor serverThread() {
+        return task -> PrisonAPI.getScheduler().runTaskLater(task, 0);
+    }
+
+    /**
+     * Looks up a player's ranks.
+     *
+     * @param uid      The player's UUID.
+     * @param callback Where to complete the future.
+     * @return A copy of the player, or null if the player has never joined.
+     */
+    public CompletableFuture<RankPlayer> getPlayerAsync(UUID uid, Executor callback) {
+        return forPlayer(uid, callback, () -> PrisonRanks.getInstance().getPlayerManager()
+            .getPlayer(uid).map(AsyncRanks::copy).orElse(null));
+    }
+
+    public CompletableFuture<RankPlayer> getPlayerAsync(UUID uid) {
+        return getPlayerAsync(uid, workExecutor);
+    }
+
+    /**
+     * Ranks a player up on a ladder, charging them as {@code /rankup} would. The player must be online.
+     *
+     * @param uid        The player's UUID.
+     * @param ladderName The name of the ladder.
+     * @param callback   Where to complete the future.
+     * @return The outcome of the rank-up. The future fails with an {@link IllegalArgumentException} if the
+     * player has never joined.
+     */
+    public CompletableFuture<RankUtil.RankUpResult> rankUpAsync(UUID uid, String ladderName,
+        Executor callback) {
+        return forPlayer(uid, callback,
+            () -> RankUtil.rankUpPlayer(requirePlayer(uid), ladderName));
+    }
+
+    public CompletableFuture<RankUtil.RankUpResult> rankUpAsync(UUID uid, String ladderName) {
+        return rankUpAsync(uid, ladderName, workExecutor);
+    }
+
+    /**
+     * Puts a player on a rank, for free and without running rank-up commands. The player is saved in the
+     * background.
+     *
+     * @param uid      The player's UUID.
+     * @param rankName The name of the rank. The player is put on it in every ladder that holds it.
+     * @param callback Where to complete the future.
+     * @return A copy of the changed player. The future fails with an {@link IllegalArgumentException} if the
+     * player has never joined, or if the rank doesn't exist or isn't on any ladder.
+     */
+    public CompletableFuture<RankPlayer> setRankAsync(UUID uid, String rankName,
+        Executor callback) {
+        return forPlayer(uid, callback, () -> {
+            RankPlayer player = requirePlayer(uid);
+            Rank rank = PrisonRanks.getInstance().getRankManager().getRank(rankName)
+                .orElseThrow(() -> new IllegalArgumentException("No rank named " + rankName));
+
+            List<RankLadder> ladders =
+                PrisonRanks.getInstance().getLadderManager().getLaddersWithRank(rank.id);
+            if (ladders.isEmpty()) {
+                throw new IllegalArgumentException("The rank " + rankName + " isn't on a ladder");
+            }
+            for (RankLadder ladder : ladders) {
+                String oldRank = player.getRank(ladder).map(found -> found.name).orElse(null);
+                player.addRank(ladder, rank);
+                PrisonRanks.getInstance().audit(
+                    new AuditEntry("api", uid, ladder.name, oldRank, rank.name, 0, "set by a plugin"));
+            }
+
+            PrisonRanks.getInstance().getPlayerManager().savePlayerAsync(player);
+            return copy(player);
+        });
+    }
+
+    public CompletableFuture<RankPlayer> setRankAsync(UUID uid, String rankName) {
+        return setRankAsync(uid, rankName, workExecutor);
+    }
+
+    /**
+     * Looks up the ranks of many players at once.
+     *
+     * @param uids     The players' UUIDs.
+     * @param callback Where to complete the future.
+     * @return Copies of the players, by UUID. Players who have never joined are left out.
+     */
+    public CompletableFuture<Map<UUID, RankPlayer>> getPlayersAsync(Collection<UUID> uids,
+        Executor callback) {
+        List<UUID> copy = new ArrayList<>(uids);
+        return run(callback, () -> {
+            Map<UUID, RankPlayer> ret = new LinkedHashMap<>();
+            for (UUID uid : copy) {
+                PrisonRanks.getInstance().getPlayerManager().getPlayer(uid)
+                    .ifPresent(player -> ret.put(uid, copy(player)));
+            }
+            return ret;
+        });
+    }
+
+    public CompletableFuture<Map<UUID, RankPlayer>> getPlayersAsync(Collection<UUID> uids) {
+        return getPlayersAsync(uids, workExecutor);
+    }
+
+    /**
+     * Finds every player who holds a rank.
+     *
+     * @param rankName The name of the rank.
+     * @param callback Where to complete the future.
+     * @return Copies of the players holding the rank. This is empty if the rank doesn't exist.
+     */
+    public CompletableFuture<List<RankPlayer>> getPlayersWithRankAsync(String rankName,
+        Executor callback) {
+        return run(callback, () -> {
+            Rank rank = PrisonRanks.getInstance().getRankManager().getRank(rankName).orElse(null);
+            if (rank == null) {
+                return new ArrayList<>();
+            }
+            return PrisonRanks.getInstance().getPlayerManager().getPlayersWithRank(rank)
+                .map(AsyncRanks::copy).collect(Collectors.toList());
+        });
+    }
+
+    public CompletableFuture<List<RankPlayer>> getPlayersWithRankAsync(String rankName) {
+        return getPlayersWithRankAsync(rankName, workExecutor);
+    }
+
+    /**
+     * Reads a player's rank history. This is read from disk on the history thread, not the work executor.
+     *
+     * @param uid      The player's UUID.
+     * @param callback Where to complete the future.
+     * @return The player's rank changes, oldest first. The future fails with an {@link IllegalStateException}
+     * if the history is turned off.
+     */
+    public CompletableFuture<List<RankChange>> getHistoryAsync(UUID uid, Executor callback) {
+        CompletableFuture<List<RankChange>> result = new CompletableFuture<>();
+        RankHistory history = PrisonRanks.getInstance().getHistory();
+        if (history == null) {
+            complete(result, null, new IllegalStateException("The rank history is turned off"),
+                callback);
+            return result;
+        }
+
+        history.read(uid).whenComplete((value, error) -> complete(result, value, error, callback));
+        return result;
+    }
+
+    public CompletableFuture<List<RankChange>> getHistoryAsync(UUID uid) {
+        return getHistoryAsync(uid, workExecutor);
+    }
+
+    /**
+     * Runs an operation on the work executor once every earlier operation on the same player has finished.
+     */
+    private <T> CompletableFuture<T> forPlayer(UUID uid, Executor callback, Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<?> previous = tails.put(uid, done);
+        if (previous == null) {
+            previous = CompletableFuture.completedFuture(null);
+        }
+
+        // Run after the previous one whether it succeeded or not.
+        previous.handle((ignored, error) -> null)
+            .thenApplyAsync(ignored -> work.get(), workExecutor)
+            .whenComplete((value, error) -> {
+                tails.remove(uid, done);
+                done.complete(null);
+                complete(result, value, error, callback);
+            });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> run(Executor callback, Supplier<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(work, workExecutor)
+            .whenComplete((value, error) -> complete(result, value, error, callback));
+        return result;
+    }
+
+    private static <T> void complete(CompletableFuture<T> result, T value, Throwable error,
+        Executor callback) {
+        callback.execute(() -> {
+            if (error != null) {
+                // Unwrap the CompletionException that the async stages wrap failures in.
+                result.completeExceptionally(
+                    error instanceof CompletionException && error.getCause() != null ? error
+                        .getCause() : error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private static RankPlayer requirePlayer(UUID uid) {
+        return PrisonRanks.getInstance().getPlayerManager().getPlayer(uid)
+            .orElseThrow(() -> new IllegalArgumentException("No player with the UUID " + uid));
+    }
+
+    private static RankPlayer copy(RankPlayer player) {
+        return player.copy();
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.archive;
+
+import com.google.gson.stream.JsonReader;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.codec.Codec;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.storage.StorageBackend;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes all ranks data to a single archive file, and reads it back. The archive is gzipped, with one JSON
+ * record per line: a header, then every rank, ladder and player. Records are streamed one at a time in both
+ * directions, so memory use doesn't grow with the number of players.
+ * <p>
+ * Ranks and ladders are read and written on the storage backend directly. Imported players are written through
+ * {@link PlayerManager#importPlayers(Map)}, between {@link PlayerManager#beginImport()} and its finish or
+ * abort, so they can't be overwritten by queued saves. Both directions are meant to be run off the server
+ * thread.
+ */
+public class RanksArchive {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final int VERSION = 1;
+
+    private static final String TYPE_HEADER = "header", TYPE_RANK = "rank", TYPE_LADDER = "ladder",
+        TYPE_PLAYER = "player";
+
+    // How many records are written to storage at once while importing.
+    private static final int BATCH_SIZE = 500;
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final StorageBackend storage;
+    private final Progress progress;
+
+    private int ranks, ladders, players;
+    private long lastProgress;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param storage  The backend to read from or write to.
+     * @param progress Told how far along a long export or import is, every few seconds.
+     */
+    public RanksArchive(StorageBackend storage, Progress progress) {
+        this.storage = storage;
+        this.progress = progress;
+        this.lastProgress = System.nanoTime();
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Writes everything in storage to an archive file, replacing the file if it exists. The file is written
+     * under a temporary name first, so a failed export never leaves a truncated archive behind.
+     *
+     * @param file The file to write.
+     * @throws IOException If storage could not be read, or if the file could not be written.
+     */
+    public void export(File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+            new GZIPOutputStream(new FileOutputStream(temp)), StandardCharsets.UTF_8))) {
+
+            writer.write("{\"type\":\"" + TYPE_HEADER + "\",\"version\":" + VERSION + ",\"created\":"
+                + System.currentTimeMillis() + "}\n");
+
+            storage.getRanks().forEach(rank -> {
+                writeRecord(writer, TYPE_RANK, CodecUtil.RANK, rank);
+                ranks++;
+            });
+            storage.getLadders().forEach(ladder -> {
+                writeRecord(writer, TYPE_LADDER, CodecUtil.LADDER, ladder);
+                ladders++;
+            });
+            storage.getPlayers().forEach(player -> {
+                writeRecord(writer, TYPE_PLAYER, CodecUtil.PLAYER, player);
+                players++;
+                reportProgress("Exported");
+            });
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+
+        if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+            throw new IOException("Could not move " + temp.getName() + " to " + file.getName());
+        }
+    }
+
+    private <T> void writeRecord(Writer writer, String type, Codec<T> codec, T value)
+        throws IOException {
+        writer.write("{\"type\":\"");
+        writer.write(type);
+        writer.write("\",\"data\":");
+        writer.write(codec.toJson(value));
+        writer.write("}\n");
+    }
+
+    /**
+     * Reads an archive file into storage. Records in the archive replace stored ones with the same key, and
+     * anything stored which isn't in the archive is left alone. Records are written in batches; each batch
+     * is written in full or not at all, but an import which fails part way leaves the earlier batches written.
+     * <p>
+     * The managers don't see imported data until they're reloaded. Players must be between
+     * {@link PlayerManager#beginImport()} and its finish or abort while this runs.
+     *
+     * @param file The archive to read.
+     * @throws IOException If the file could not be read or isn't a valid archive, or if storage could not be
+     *                     written.
+     */
+    public void importFrom(File file) throws IOException {
+        PlayerManager playerManager = PrisonRanks.getInstance().getPlayerManager();
+        Batch<Rank> rankBatch = new Batch<>(storage.getRanks()::saveAll,
+            PrisonRanks.getInstance().getRankManager()::getRankKey);
+        Batch<RankLadder> ladderBatch = new Batch<>(storage.getLadders()::saveAll,
+            PrisonRanks.getInstance().getLadderManager()::getLadderKey);
+        Batch<RankPlayer> playerBatch =
+            new Batch<>(playerManager::importPlayers, playerManager::getPlayerKey);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8))) {
+
+            int lineNumber = 0;
+            boolean headerRead = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                try (JsonReader json = new JsonReader(new StringReader(line))) {
+                    json.beginObject();
+                    if (!"type".equals(json.nextName())) {
+                        throw new IOException("the record has no type");
+                    }
+                    String type = json.nextString();
+
+                    if (!headerRead) {
+                        if (!TYPE_HEADER.equals(type)) {
+                            throw new IOException("this isn't a ranks archive");
+                        }
+                        readHeader(json);
+                        headerRead = true;
+                        continue;
+                    }
+
+                    if (!"data".equals(json.nextName())) {
+                        throw new IOException("the record has no data");
+                    }
+                    switch (type) {
+                        case TYPE_RANK:
+                            rankBatch.add(CodecUtil.RANK.read(json));
+                            ranks++;
+                            break;
+                        case TYPE_LADDER:
+                            ladderBatch.add(CodecUtil.LADDER.read(json));
+                            ladders++;
+                            break;
+                        case TYPE_PLAYER:
+                            playerBatch.add(CodecUtil.PLAYER.read(json));
+                            players++;
+                            reportProgress("Imported");
+                            break;
+                        default:
+                            throw new IOException("unknown record type '" + type + "'");
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    throw new IOException(
+                        "Line " + lineNumber + " of " + file.getName() + " is invalid: " + e
+                            .getMessage(), e);
+                }
+            }
+
+            if (!headerRead) {
+                throw new IOException(file.getName() + " is empty");
+            }
+        }
+
+        rankBatch.flush();
+        ladderBatch.flush();
+        playerBatch.flush();
+    }
+
+    private void readHeader(JsonReader json) throws IOException {
+        while (json.hasNext()) {
+            if ("version".equals(json.nextName())) {
+                int version = json.nextInt();
+                if (version > VERSION) {
+                    throw new IOException(
+                        "the archive is version " + version + ", but only up to " + VERSION
+                            + " can be read");
+                }
+            } else {
+                json.skipValue();
+            }
+        }
+    }
+
+    private void reportProgress(String verb) {
+        long now = System.nanoTime();
+        if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+            progress.update(verb + " " + players + " players so far...");
+        }
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public int getRanks() {
+        return ranks;
+    }
+
+    public int getLadders() {
+        return ladders;
+    }
+
+    public int getPlayers() {
+        return players;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * Told how far along an export or import is.
+     */
+    @FunctionalInterface public interface Progress {
+
+        void update(String message);
+
+    }
+
+    /**
+     * Writes a batch of imported records.
+     */
+    @FunctionalInterface private interface BatchWriter<T> {
+
+        void write(Map<String, T> batch) throws IOException;
+
+    }
+
+    /**
+     * Collects imported records and writes them once enough have built up.
+     */
+    private static class Batch<T> {
+
+        private final BatchWriter<T> writer;
+        private final Function<T, String> keys;
+        private final Map<String, T> pending = new LinkedHashMap<>();
+
+        Batch(BatchWriter<T> writer, Function<T, String> keys) {
+            this.writer = writer;
+            this.keys = keys;
+        }
+
+        void add(T value) throws IOException {
+            pending.put(keys.apply(value), value);
+            if (pending.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            if (!pending.isEmpty()) {
+                writer.write(pending);
+                pending.clear();
+            }
+        }
+    }
+
+}
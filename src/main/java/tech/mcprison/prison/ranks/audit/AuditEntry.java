@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.audit;
+
+import java.util.UUID;
+
+/**
+ * One change to a player's ranks, as written to the {@link AuditLog}. Ranks are kept by name, so the entry
+ * still reads sensibly after they've been deleted.
+ */
+public class AuditEntry {
+
+    /*
+     * Fields & Constants
+     */
+
+    // When the change happened, in milliseconds since the epoch.
+    public final long time;
+
+    // Who made the change: a player or console name, or "server" for changes the module made by itself.
+    public final String actor;
+
+    public final UUID player;
+    public final String ladder;
+
+    // The player's rank on the ladder before and after. Either may be null if they weren't on the ladder.
+    public final String oldRank;
+    public final String newRank;
+
+    // What the player paid, if anything.
+    public final double cost;
+
+    // Why the change was made, like "rankup" or "rank deleted".
+    public final String cause;
+
+    /*
+     * Constructor
+     */
+
+    public AuditEntry(long time, String actor, UUID player, String ladder, String oldRank,
+        String newRank, double cost, String cause) {
+        this.time = time;
+        this.actor = actor;
+        this.player = player;
+        this.ladder = ladder;
+        this.oldRank = oldRank;
+        this.newRank = newRank;
+        this.cost = cost;
+        this.cause = cause;
+    }
+
+    public AuditEntry(String actor, UUID player, String ladder, String oldRank, String newRank,
+        double cost, String cause) {
+        this(System.currentTimeMillis(), actor, player, ladder, oldRank, newRank, cost, cause);
+    }
+
+}
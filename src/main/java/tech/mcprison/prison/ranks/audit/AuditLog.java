@@ -0,0 +1,456 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.audit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.output.Output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of every change made to players' ranks, and who made it.
+ * <p>
+ * Entries are written as lines of JSON to segment files, {@code audit-000001.log} and onwards, starting a new
+ * one once the current one reaches {@value #SEGMENT_BYTES} bytes. Nothing is ever rewritten or removed.
+ * Alongside each full segment, a {@code .idx} file lists the player and offset of every entry in it, so that a
+ * player's entries can be found without reading the logs. These are loaded into memory on start, and the entries
+ * themselves are only read when asked for.
+ * <p>
+ * All file access happens on one background thread, so nothing here blocks the server thread.
+ */
+public class AuditLog {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final int SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final String SEGMENT_FORMAT = "audit-%06d";
+
+    private final File folder;
+    private final long segmentBytes;
+    private final ExecutorService executor;
+
+    // Everything below is only used on the audit thread.
+
+    // Player -> where their entries are, oldest first. Each is the segment number << 40 | the offset in it.
+    private final Map<UUID, Postings> index = new HashMap<>();
+    private int segment;
+    private long position;
+    private OutputStream out;
+    // The index of the current segment, written out when it fills up: most, least significant bits, offset.
+    private ByteArrayOutputStream segmentIndex = new ByteArrayOutputStream();
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Opens the log in the given folder, which is created if it doesn't exist. The index is loaded in the
+     * background; entries recorded meanwhile are written once it's done.
+     */
+    public AuditLog(File folder) {
+        this(folder, SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the log with segments of a different size, so tests can fill several of them.
+     */
+    AuditLog(File folder, long segmentBytes) {
+        this.folder = folder;
+        this.segmentBytes = segmentBytes;
+        this.executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-audit").setDaemon(true).build());
+        executor.execute(() -> {
+            try {
+                open();
+            } catch (IOException e) {
+                Output.get().logError("Could not open the rank audit log.", e);
+            }
+        });
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Adds an entry to the log in the background.
+     */
+    public void record(AuditEntry entry) {
+        executor.execute(() -> {
+            if (out == null) {
+                return; // Failed to open; already logged.
+            }
+            try {
+                append(entry);
+            } catch (IOException e) {
+                Output.get().logError("Could not write to the rank audit log.", e);
+            }
+        });
+    }
+
+    /**
+     * Reads a player's latest entries in the background.
+     *
+     * @param player The player's UUID.
+     * @param limit  How many entries to read, at most.
+     * @return The entries, oldest first, completed on the audit thread.
+     */
+    public CompletableFuture<List<AuditEntry>> read(UUID player, int limit) {
+        CompletableFuture<List<AuditEntry>> ret = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                ret.complete(readEntries(player, limit));
+            } catch (IOException | RuntimeException e) {
+                ret.completeExceptionally(e);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Writes out any queued entries and closes the log. Closing it again does nothing.
+     */
+    public void close() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+            } catch (IOException e) {
+                Output.get().logWarn("Could not close the rank audit log.", e);
+            }
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Output.get().logWarn("Gave up waiting for the rank audit log to be written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void open() throws IOException {
+        folder.mkdirs();
+        String[] logs = folder.list((dir, name) -> name.matches("audit-\\d{6,}\\.log"));
+        int[] segments = new int[logs == null ? 0 : logs.length];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = Integer.parseInt(logs[i].substring(6, logs[i].length() - 4));
+        }
+        Arrays.sort(segments);
+
+        for (int i = 0; i < segments.length - 1; i++) {
+            loadSegmentIndex(segments[i]);
+        }
+
+        // The last segment is still being written to, so it has no index file yet.
+        segment = segments.length == 0 ? 1 : segments[segments.length - 1];
+        File log = getFile(segment, ".log");
+        position = scan(segment, log);
+        if (log.length() > position) {
+            // A line cut short by a crash; drop it, or the next entry would be joined onto it.
+            try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+                raf.setLength(position);
+            }
+        }
+        out = new BufferedOutputStream(new FileOutputStream(log, true));
+    }
+
+    private void loadSegmentIndex(int segment) throws IOException {
+        File idx = getFile(segment, ".idx");
+        if (!idx.exists()) {
+            // The server stopped before this segment's index was written.
+            segmentIndex = new ByteArrayOutputStream();
+            scan(segment, getFile(segment, ".log"));
+            writeSegmentIndex(segment);
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(idx)))) {
+            while (true) {
+                long msb;
+                long lsb;
+                long offset;
+                try {
+                    msb = in.readLong();
+                    lsb = in.readLong();
+                    offset = in.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                addPosting(new UUID(msb, lsb), segment, offset);
+            }
+        }
+    }
+
+    /**
+     * Indexes every whole line of a segment, and fills {@link #segmentIndex} with them.
+     *
+     * @return Where the last whole line ends.
+     */
+    private long scan(int segment, File log) throws IOException {
+        segmentIndex = new ByteArrayOutputStream();
+        if (!log.exists()) {
+            return 0;
+        }
+
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(log))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                try {
+                    UUID player = parse(line.toByteArray()).player;
+                    addPosting(player, segment, offset);
+                    writeSegmentPosting(player, offset);
+                } catch (IOException | RuntimeException e) {
+                    Output.get().logWarn("Skipping an unreadable line in " + log.getName() + ".");
+                }
+                offset += line.size() + 1;
+                line.reset();
+            }
+        }
+        return offset;
+    }
+
+    private void append(AuditEntry entry) throws IOException {
+        if (position >= segmentBytes) {
+            roll();
+        }
+
+        byte[] line = (format(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        out.write(line);
+        out.flush();
+
+        addPosting(entry.player, segment, position);
+        writeSegmentPosting(entry.player, position);
+        position += line.length;
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        writeSegmentIndex(segment);
+
+        segment++;
+        position = 0;
+        segmentIndex = new ByteArrayOutputStream();
+        out = new BufferedOutputStream(new FileOutputStream(getFile(segment, ".log"), true));
+    }
+
+    private void writeSegmentIndex(int segment) throws IOException {
+        try (OutputStream idx = new FileOutputStream(getFile(segment, ".idx"))) {
+            segmentIndex.writeTo(idx);
+        }
+    }
+
+    private void writeSegmentPosting(UUID player, long offset) throws IOException {
+        DataOutputStream data = new DataOutputStream(segmentIndex);
+        data.writeLong(player.getMostSignificantBits());
+        data.writeLong(player.getLeastSignificantBits());
+        data.writeLong(offset);
+    }
+
+    private void addPosting(UUID player, int segment, long offset) {
+        index.computeIfAbsent(player, uid -> new Postings()).add(((long) segment << 40) | offset);
+    }
+
+    private List<AuditEntry> readEntries(UUID player, int limit) throws IOException {
+        List<AuditEntry> ret = new ArrayList<>();
+        Postings postings = index.get(player);
+        if (postings == null) {
+            return ret;
+        }
+        if (out != null) {
+            out.flush();
+        }
+
+        RandomAccessFile file = null;
+        int openSegment = -1;
+        try {
+            for (int i = Math.max(0, postings.size - limit); i < postings.size; i++) {
+                int entrySegment = (int) (postings.refs[i] >>> 40);
+                long offset = postings.refs[i] & ((1L << 40) - 1);
+                if (entrySegment != openSegment) {
+                    if (file != null) {
+                        file.close();
+                    }
+                    file = new RandomAccessFile(getFile(entrySegment, ".log"), "r");
+                    openSegment = entrySegment;
+                }
+                file.seek(offset);
+                ret.add(parse(readLine(file)));
+            }
+        } finally {
+            if (file != null) {
+                file.close();
+            }
+        }
+        return ret;
+    }
+
+    private static byte[] readLine(RandomAccessFile file) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = file.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        return line.toByteArray();
+    }
+
+    private static String format(AuditEntry entry) throws IOException {
+        StringWriter ret = new StringWriter();
+        try (JsonWriter json = new JsonWriter(ret)) {
+            json.beginObject();
+            json.name("time").value(entry.time);
+            json.name("actor").value(entry.actor);
+            json.name("player").value(entry.player.toString());
+            json.name("ladder").value(entry.ladder);
+            json.name("old").value(entry.oldRank);
+            json.name("new").value(entry.newRank);
+            json.name("cost").value(entry.cost);
+            json.name("cause").value(entry.cause);
+            json.endObject();
+        }
+        return ret.toString();
+    }
+
+    private static AuditEntry parse(byte[] line) throws IOException {
+        long time = 0;
+        double cost = 0;
+        String actor = null;
+        String player = null;
+        String ladder = null;
+        String oldRank = null;
+        String newRank = null;
+        String cause = null;
+
+        try (JsonReader json = new JsonReader(
+            new StringReader(new String(line, StandardCharsets.UTF_8)))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "time":
+                        time = json.nextLong();
+                        break;
+                    case "actor":
+                        actor = json.nextString();
+                        break;
+                    case "player":
+                        player = json.nextString();
+                        break;
+                    case "ladder":
+                        ladder = json.nextString();
+                        break;
+                    case "old":
+                        oldRank = json.nextString();
+                        break;
+                    case "new":
+                        newRank = json.nextString();
+                        break;
+                    case "cost":
+                        cost = json.nextDouble();
+                        break;
+                    case "cause":
+                        cause = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException e) {
+            throw new IOException("Invalid audit entry: " + e.getMessage(), e);
+        }
+
+        if (player == null) {
+            throw new IOException("Audit entry without a player");
+        }
+        return new AuditEntry(time, actor, UUID.fromString(player), ladder, oldRank, newRank, cost,
+            cause);
+    }
+
+    private File getFile(int segment, String extension) {
+        return new File(folder, String.format(SEGMENT_FORMAT, segment) + extension);
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * A growable list of entry locations, kept as primitives so a large log doesn't cost an object per entry.
+     */
+    private static class Postings {
+
+        long[] refs = new long[4];
+        int size;
+
+        void add(long ref) {
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            refs[size++] = ref;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Reads and writes a single data object directly to and from a JSON stream.
+ * Unlike the {@link tech.mcprison.prison.store.Document} route, no intermediate tree of maps
+ * and boxed numbers is built; fields are pulled from the stream straight into the object.
+ *
+ * @param <T> The type of object this codec handles.
+ */
+public interface Codec<T> {
+
+    /**
+     * Reads one object from the reader. The reader must be positioned at the start of a JSON object.
+     *
+     * @param in The {@link JsonReader} to read from.
+     * @return The decoded object.
+     * @throws IOException If the stream is malformed or could not be read.
+     */
+    T read(JsonReader in) throws IOException;
+
+    /**
+     * Writes one object to the writer as a JSON object.
+     *
+     * @param out   The {@link JsonWriter} to write to.
+     * @param value The object to encode.
+     * @throws IOException If the stream could not be written to.
+     */
+    void write(JsonWriter out, T value) throws IOException;
+
+    /**
+     * Decodes an object from a JSON string.
+     *
+     * @param json The JSON string.
+     * @return The decoded object.
+     * @throws IOException If the string is not valid JSON for this type.
+     */
+    default T fromJson(String json) throws IOException {
+        try (JsonReader in = new JsonReader(new StringReader(json))) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Encodes an object to a JSON string.
+     *
+     * @param value The object to encode.
+     * @return The JSON string.
+     * @throws IOException If the object could not be encoded.
+     */
+    default String toJson(T value) throws IOException {
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(buffer)) {
+            write(out, value);
+        }
+        return buffer.toString();
+    }
+
+}
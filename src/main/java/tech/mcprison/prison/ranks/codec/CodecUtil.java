@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Shared instances and small reading helpers for the codecs. The codecs are stateless, so one
+ * instance of each is enough for the whole module.
+ */
+public class CodecUtil {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final RankCodec RANK = new RankCodec();
+    public static final RankLadderCodec LADDER = new RankLadderCodec();
+    public static final RankPlayerCodec PLAYER = new RankPlayerCodec();
+
+    /*
+     * Constructor
+     */
+
+    private CodecUtil() {
+    }
+
+    /*
+     * Methods
+     */
+
+    static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+}
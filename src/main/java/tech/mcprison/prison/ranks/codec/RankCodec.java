@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.ranks.data.Rank;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Streams {@link Rank}s in the same layout that {@link Rank#toDocument()} produces.
+ */
+public class RankCodec implements Codec<Rank> {
+
+    @Override public Rank read(JsonReader in) throws IOException {
+        Rank rank = new Rank();
+        rank.rankUpCommands = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    rank.id = in.nextInt();
+                    break;
+                case "name":
+                    rank.name = CodecUtil.nextStringOrNull(in);
+                    break;
+                case "tag":
+                    rank.tag = CodecUtil.nextStringOrNull(in);
+                    break;
+                case "cost":
+                    rank.cost = in.nextDouble();
+                    break;
+                case "commands":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        break;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        rank.rankUpCommands.add(in.nextString());
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        rank.updateDisplay();
+        return rank;
+    }
+
+    @Override public void write(JsonWriter out, Rank rank) throws IOException {
+        out.beginObject();
+        out.name("id").value(rank.id);
+        out.name("name").value(rank.name);
+        out.name("tag").value(rank.tag);
+        out.name("cost").value(rank.cost);
+        out.name("commands").beginArray();
+        if (rank.rankUpCommands != null) {
+            for (String command : rank.rankUpCommands) {
+                out.value(command);
+            }
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.ranks.data.RankLadder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Streams {@link RankLadder}s in the same layout that {@link RankLadder#toDocument()} produces.
+ */
+public class RankLadderCodec implements Codec<RankLadder> {
+
+    @Override public RankLadder read(JsonReader in) throws IOException {
+        RankLadder ladder = new RankLadder();
+        ladder.ranks = new ArrayList<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    ladder.id = in.nextInt();
+                    break;
+                case "name":
+                    ladder.name = CodecUtil.nextStringOrNull(in);
+                    break;
+                case "ranks":
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        readPositionRank(in, ladder);
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return ladder;
+    }
+
+    private void readPositionRank(JsonReader in, RankLadder ladder) throws IOException {
+        int position = 0;
+        int rankId = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "position":
+                    position = in.nextInt();
+                    break;
+                case "rankId":
+                    rankId = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        ladder.ranks.add(ladder.new PositionRank(position, rankId));
+    }
+
+    @Override public void write(JsonWriter out, RankLadder ladder) throws IOException {
+        out.beginObject();
+        out.name("id").value(ladder.id);
+        out.name("name").value(ladder.name);
+        out.name("ranks").beginArray();
+        for (RankLadder.PositionRank rank : ladder.ranks) {
+            out.beginObject();
+            out.name("position").value(rank.getPosition());
+            out.name("rankId").value(rank.getRankId());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.ranks.data.RankExpiry;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Streams {@link RankPlayer}s in the same layout that {@link RankPlayer#toDocument()} produces.
+ */
+public class RankPlayerCodec implements Codec<RankPlayer> {
+
+    @Override public RankPlayer read(JsonReader in) throws IOException {
+        RankPlayer player = new RankPlayer();
+        player.ranks = new HashMap<>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uid":
+                    player.uid = UUID.fromString(in.nextString());
+                    break;
+                case "ranks":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        player.ranks.put(in.nextName(), in.nextInt());
+                    }
+                    in.endObject();
+                    break;
+                case "expiries":
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String ladder = in.nextName();
+                        player.expiries.put(ladder, readExpiry(in));
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (player.uid == null) {
+            throw new IOException("Player record has no uid.");
+        }
+        return player;
+    }
+
+    @Override public void write(JsonWriter out, RankPlayer player) throws IOException {
+        out.beginObject();
+        out.name("uid").value(player.uid.toString());
+        out.name("ranks").beginObject();
+        for (Map.Entry<String, Integer> entry : player.ranks.entrySet()) {
+            out.name(entry.getKey()).value(entry.getValue().intValue());
+        }
+        out.endObject();
+        if (!player.expiries.isEmpty()) {
+            out.name("expiries").beginObject();
+            for (Map.Entry<String, RankExpiry> entry : player.expiries.entrySet()) {
+                RankExpiry expiry = entry.getValue();
+                out.name(entry.getKey()).beginObject();
+                out.name("rank").value(expiry.rankId);
+                out.name("at").value(expiry.expiresAt);
+                if (expiry.previousRankId != null) {
+                    out.name("previous").value(expiry.previousRankId.intValue());
+                }
+                out.endObject();
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private RankExpiry readExpiry(JsonReader in) throws IOException {
+        RankExpiry expiry = new RankExpiry();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "rank":
+                    expiry.rankId = in.nextInt();
+                    break;
+                case "at":
+                    expiry.expiresAt = in.nextLong();
+                    break;
+                case "previous":
+                    expiry.previousRankId = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return expiry;
+    }
+
+}
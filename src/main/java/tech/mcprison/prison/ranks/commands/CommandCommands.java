@@ -86,7 +86,7 @@ public class CommandCommands {
             return;
         }
 
-        ChatDisplay display = new ChatDisplay("RankUpCommand for " + rank.tag);
+        ChatDisplay display = new ChatDisplay("RankUpCommand for " + rank.getDisplayTag());
         display.text("&8Click a command to remove it.");
         BulletedListComponent.BulletedListBuilder builder =
             new BulletedListComponent.BulletedListBuilder();
@@ -9,6 +9,7 @@ import tech.mcprison.prison.output.Output;
 import tech.mcprison.prison.ranks.PrisonRanks;
 import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.display.RankListCache;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -58,7 +59,7 @@ public class LadderCommands {
             return;
         }
 
-        boolean success = PrisonRanks.getInstance().getLadderManager().removeLadder(ladder.get());
+        boolean success = PrisonRanks.getInstance().getLadderManager().removeLadder(ladder.get(), sender.getName());
         if (success) {
             Output.get().sendInfo(sender, "The ladder '%s' has been deleted.", ladderName);
         } else {
@@ -81,7 +82,8 @@ public class LadderCommands {
     }
 
     @Command(identifier = "ranks ladder listranks", description = "Lists the ranks within a ladder.", onlyPlayers = false, permissions = "ranks.ladder")
-    public void ladderInfo(CommandSender sender, @Arg(name = "ladderName") String ladderName) {
+    public void ladderInfo(CommandSender sender, @Arg(name = "ladderName") String ladderName,
+        @Arg(name = "page", def = "1", verifiers = "min[1]") int page) {
         Optional<RankLadder> ladder =
             PrisonRanks.getInstance().getLadderManager().getLadder(ladderName);
 
@@ -90,24 +92,16 @@ public class LadderCommands {
             return;
         }
 
+        RankListCache.Page rendered = PrisonRanks.getInstance().getRankListCache()
+            .getPage(ladder.get(), RankListCache.View.LADDER, page);
+
         ChatDisplay display = new ChatDisplay(ladder.get().name);
         display.text("&7This ladder contains the following ranks:");
-
-        BulletedListComponent.BulletedListBuilder builder =
-            new BulletedListComponent.BulletedListBuilder();
-        for (RankLadder.PositionRank rank : ladder.get().ranks) {
-            Optional<Rank> rankOptional =
-                PrisonRanks.getInstance().getRankManager().getRank(rank.getRankId());
-            if(!rankOptional.isPresent()) {
-                continue; // Skip it
-            }
-
-            builder.add("&3#%d &8- &3%s", rank.getPosition(),
-                rankOptional.get().name);
+        display.addComponent(rendered.getList());
+        if (rendered.getNavigation() != null) {
+            display.addComponent(rendered.getNavigation());
         }
 
-        display.addComponent(builder.build());
-
         display.send(sender);
     }
 
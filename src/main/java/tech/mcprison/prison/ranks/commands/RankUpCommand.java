@@ -119,6 +119,9 @@ public class RankUpCommand {
             case RankUtil.RANKUP_NO_RANKS:
                 Output.get().sendError(sender, "There are no ranks in this ladder.");
                 break;
+            case RankUtil.RANKUP_THROTTLED:
+                Output.get().sendError(sender, "You're ranking up too quickly. Wait a moment and try again.");
+                break;
         }
 
     }
@@ -1,23 +1,52 @@
 package tech.mcprison.prison.ranks.commands;
 
 import tech.mcprison.prison.chat.FancyMessage;
+import tech.mcprison.prison.PrisonAPI;
 import tech.mcprison.prison.commands.Arg;
 import tech.mcprison.prison.commands.Command;
 import tech.mcprison.prison.internal.CommandSender;
+import tech.mcprison.prison.internal.Player;
 import tech.mcprison.prison.output.BulletedListComponent;
 import tech.mcprison.prison.output.ChatDisplay;
 import tech.mcprison.prison.output.FancyMessageComponent;
 import tech.mcprison.prison.output.Output;
 import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.api.AsyncRanks;
+import tech.mcprison.prison.ranks.archive.RanksArchive;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
 import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.display.RankListCache;
+import tech.mcprison.prison.ranks.economy.BalanceCache;
+import tech.mcprison.prison.ranks.history.RankChange;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.managers.ReloadChanges;
+import tech.mcprison.prison.ranks.metrics.LatencyHistogram;
+import tech.mcprison.prison.ranks.metrics.RankUpStats;
+import tech.mcprison.prison.ranks.metrics.RanksMetrics;
+import tech.mcprison.prison.ranks.metrics.StorageWatchdog;
+import tech.mcprison.prison.ranks.simulation.EconomySimulation;
+import tech.mcprison.prison.ranks.storage.SegmentDataStore;
+import tech.mcprison.prison.ranks.storage.SegmentStorageBackend;
+import tech.mcprison.prison.ranks.storage.StorageBackend;
 import tech.mcprison.prison.util.Text;
 
+import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +54,8 @@ import java.util.stream.Collectors;
  */
 public class RanksCommands {
 
+    // Only one export or import may run at a time.
+    private final AtomicBoolean archiveRunning = new AtomicBoolean();
 
     @Command(identifier = "ranks", onlyPlayers = false)
     public void baseCommand(CommandSender sender,
@@ -123,7 +154,7 @@ public class RanksCommands {
             return;
         }
 
-        boolean success = PrisonRanks.getInstance().getRankManager().removeRank(rank);
+        boolean success = PrisonRanks.getInstance().getRankManager().removeRank(rank, sender.getName());
 
         if (success) {
             Output.get().sendInfo(sender, "The rank '%s' has been removed successfully.", rankName);
@@ -135,7 +166,8 @@ public class RanksCommands {
 
     @Command(identifier = "ranks list", description = "Lists all the ranks on the server.", onlyPlayers = false, permissions = "ranks.list")
     public void listRanks(CommandSender sender,
-        @Arg(name = "ladderName", def = "default") String ladderName) {
+        @Arg(name = "ladderName", def = "default") String ladderName,
+        @Arg(name = "page", def = "1", verifiers = "min[1]") int page) {
 
         Optional<RankLadder> ladder =
             PrisonRanks.getInstance().getLadderManager().getLadder(ladderName);
@@ -145,28 +177,36 @@ public class RanksCommands {
             return;
         }
 
-        List<RankLadder.PositionRank> ranks = ladder.get().ranks;
+        RankListCache cache = PrisonRanks.getInstance().getRankListCache();
+        RankListCache.Page rendered = cache.getPage(ladder.get(), RankListCache.View.RANKS, page);
 
         ChatDisplay display = new ChatDisplay("Ranks in " + ladderName);
         display.text("&8Click on a rank's name to view more info.");
 
-        BulletedListComponent.BulletedListBuilder builder =
-            new BulletedListComponent.BulletedListBuilder();
-        for (RankLadder.PositionRank pos : ranks) {
-            Optional<Rank> rankOptional = ladder.get().getByPosition(pos.getPosition());
-            if (!rankOptional.isPresent()) {
-                continue; // Skip it
+        // Players are shown which rank is next for them, and whether they look able to afford it.
+        Rank nextRank = null;
+        boolean canAffordNext = false;
+        if (sender instanceof Player) {
+            Optional<RankPlayer> rankPlayer = PrisonRanks.getInstance().getPlayerManager()
+                .getPlayer(((Player) sender).getUUID());
+            if (rankPlayer.isPresent()) {
+                Optional<Rank> current = rankPlayer.get().getRank(ladder.get());
+                nextRank = (current.isPresent() ?
+                    ladder.get().getNext(ladder.get().getPositionOfRank(current.get())) :
+                    ladder.get().getByPosition(0)).orElse(null);
+            }
+            if (nextRank != null) {
+                canAffordNext = PrisonRanks.getInstance().getBalanceCache()
+                    .canAfford((Player) sender, nextRank.cost);
             }
-            Rank rank = rankOptional.get();
-
-            String text =
-                String.format("&3%s&r &8- &7%s", rank.tag, Text.numberToDollars(rank.cost));
-            FancyMessage msg = new FancyMessage(text).command("/ranks info " + rank.name)
-                .tooltip("&7Click to view info.");
-            builder.add(msg);
         }
 
-        display.addComponent(builder.build());
+        // Only the next rank's line is built for this player; the rest of the page is shared.
+        display.addComponent(rendered.getList(nextRank,
+            canAffordNext ? " &a(next, you can afford it)" : " &c(next)"));
+        if (rendered.getNavigation() != null) {
+            display.addComponent(rendered.getNavigation());
+        }
         display.addComponent(new FancyMessageComponent(
             new FancyMessage("&7[&a+&7] Add").suggest("/ranks create ")
                 .tooltip("&7Create a new rank.")));
@@ -183,18 +223,9 @@ public class RanksCommands {
             }
         }
 
-        if (others.size() != 0) {
-            FancyMessage msg = new FancyMessage("&8You may also try ");
-            int i = 0;
-            for (String other : others) {
-                i++;
-                if (i == others.size() && others.size() > 1) {
-                    msg.then(" &8and ");
-                }
-                msg.then("&7" + other).tooltip("&7Click to view.").command(other);
-                msg.then(i == others.size() ? "&8." : "&8,");
-            }
-            display.addComponent(new FancyMessageComponent(msg));
+        FancyMessageComponent footer = cache.getFooter(others);
+        if (footer != null) {
+            display.addComponent(footer);
         }
 
         display.send(sender);
@@ -212,7 +243,7 @@ public class RanksCommands {
         List<RankLadder> ladders =
             PrisonRanks.getInstance().getLadderManager().getLaddersWithRank(rank.get().id);
 
-        ChatDisplay display = new ChatDisplay("Rank " + rank.get().tag);
+        ChatDisplay display = new ChatDisplay("Rank " + rank.get().getDisplayTag());
         // (I know this is confusing) Ex. Ladder(s): default, test, and test2.
         display.text("&3%s: &7%s", Text.pluralize("Ladder", ladders.size()),
             Text.implodeCommaAndDot(
@@ -227,11 +258,9 @@ public class RanksCommands {
             display.text("&6Rank ID: &7%s", rank.get().id);
             display.text("&6Rank Name: &7%s", rank.get().name);
 
-            List<RankPlayer> players =
-                PrisonRanks.getInstance().getPlayerManager().getPlayers().stream()
-                    .filter(rankPlayer -> rankPlayer.getRanks().values().contains(rank.get()))
-                    .collect(Collectors.toList());
-            display.text("&7There are &6%s &7with this rank.", players.size() + " players");
+            long players =
+                PrisonRanks.getInstance().getPlayerManager().getPlayersWithRank(rank.get()).count();
+            display.text("&7There are &6%s &7with this rank.", players + " players");
 
             FancyMessage del =
                 new FancyMessage("&7[&c-&7] Delete").command("/ranks delete " + rank.get().name)
@@ -242,5 +271,607 @@ public class RanksCommands {
         display.send(sender);
     }
 
+    @Command(identifier = "ranks prune", description = "Removes the files of players who only have the starting rank.", onlyPlayers = false, permissions = "ranks.admin")
+    public void pruneCmd(CommandSender sender) {
+        if (!PrisonRanks.getInstance().getConfig().sparsePlayers) {
+            Output.get().sendError(sender,
+                "Sparse player storage is disabled, so these files are still needed. Enable 'sparse-players' in the ranks config first.");
+            return;
+        }
+
+        Output.get().sendInfo(sender, "Pruning player files in the background...");
+        PrisonRanks.getInstance().getPlayerManager().pruneDefaultPlayers()
+            .whenCompleteAsync((pruned, error) -> {
+                if (error != null) {
+                    Output.get().sendError(sender,
+                        "An error occurred while pruning player files. &8Check the console for details.");
+                    Output.get().logError("Could not prune player files.", error);
+                    return;
+                }
+                Output.get().sendInfo(sender, "Removed %d redundant player files.", pruned);
+            }, AsyncRanks.serverThread());
+    }
+
+    @Command(identifier = "ranks stats", description = "Shows how the ranks module is performing.", onlyPlayers = false, permissions = "ranks.admin")
+    public void statsCmd(CommandSender sender) {
+        RanksMetrics metrics = PrisonRanks.getInstance().getMetrics();
+
+        ChatDisplay display = new ChatDisplay("Ranks Stats");
+        display.text("&7Times are in milliseconds.");
+
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        for (LatencyHistogram histogram : metrics.getHistograms()) {
+            builder.add("&3%s&8: &7%d calls, mean %.2f, p50 %.2f, p99 %.2f, max %.2f",
+                histogram.getName(), histogram.getCount(),
+                LatencyHistogram.toMillis(histogram.getMeanNanos()),
+                LatencyHistogram.toMillis(histogram.getPercentileNanos(0.5)),
+                LatencyHistogram.toMillis(histogram.getPercentileNanos(0.99)),
+                LatencyHistogram.toMillis(histogram.getMaxNanos()));
+        }
+        display.addComponent(builder.build());
+
+        StringBuilder outcomes = new StringBuilder();
+        for (int i = 0; i < RanksMetrics.getOutcomeCount(); i++) {
+            if (i > 0) {
+                outcomes.append("&8, ");
+            }
+            outcomes.append("&7").append(RanksMetrics.getOutcomeName(i)).append(" &3")
+                .append(metrics.getRankUpOutcome(i));
+        }
+        display.text("&3Rank-ups&8: %s", outcomes.toString());
+        display.text("&3Loaded&8: &7%d players, %d ranks, %d ladders", metrics.getLoadedPlayers(),
+            metrics.getLoadedRanks(), metrics.getLoadedLadders());
+        BalanceCache balanceCache = PrisonRanks.getInstance().getBalanceCache();
+        display.text("&3Balance cache&8: &7%.1f%% hits, %d hits, %d misses",
+            100 * balanceCache.getHitRate(), balanceCache.getHits(), balanceCache.getMisses());
+
+        StorageBackend storage = PrisonRanks.getInstance().getStorage();
+        if (storage instanceof SegmentStorageBackend) {
+            SegmentDataStore<RankPlayer> segments = ((SegmentStorageBackend) storage).getPlayerSegments();
+            long diskBytes = segments.getDiskBytes();
+            display.text("&3Player segments&8: &7%d players in %.1f KB, %.0f%% live", segments.size(),
+                diskBytes / 1024.0, diskBytes == 0 ? 100.0 : 100.0 * segments.getLiveBytes() / diskBytes);
+        }
+
+        display.send(sender);
+    }
+
+    @Command(identifier = "ranks economy", description = "Shows rank-ups and the money they took over the last minute, hour and day.", onlyPlayers = false, permissions = "ranks.admin")
+    public void economyCmd(CommandSender sender, @Arg(name = "ladder", def = "default") String ladderName) {
+        Optional<RankLadder> ladder = PrisonRanks.getInstance().getLadderManager().getLadder(ladderName);
+        if (!ladder.isPresent()) {
+            Output.get().sendError(sender, "The ladder '%s' doesn't exist.", ladderName);
+            return;
+        }
+
+        RankUpStats stats = PrisonRanks.getInstance().getMetrics().getRankUpStats();
+        RankUpStats.Windows total = stats.getLadder(ladder.get().name);
+        if (total == null || total.getRankUps(RankUpStats.DAY) == 0) {
+            Output.get().sendInfo(sender, "Nobody has ranked up on '%s' in the last day.", ladderName);
+            return;
+        }
+
+        ChatDisplay display = new ChatDisplay("Rank-ups on " + ladder.get().name);
+        display.text("&7Rank-ups and money taken in the last 1m / 1h / 24h.");
+
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        Map<Integer, RankUpStats.Windows> byRank = stats.getRanks(ladder.get().name);
+        for (RankLadder.PositionRank positionRank : ladder.get().ranks) {
+            RankUpStats.Windows windows = byRank.get(positionRank.getRankId());
+            if (windows == null || windows.getRankUps(RankUpStats.DAY) == 0) {
+                continue;
+            }
+            String rankName = PrisonRanks.getInstance().getRankManager().getRank(positionRank.getRankId())
+                .map(rank -> rank.name).orElse("#" + positionRank.getRankId());
+            builder.add("&3%s&8: %s", rankName, formatWindows(windows));
+        }
+        display.addComponent(builder.build());
+        display.text("&3Total&8: %s", formatWindows(total));
+        display.send(sender);
+    }
+
+    private String formatWindows(RankUpStats.Windows windows) {
+        return String.format("&7%d / %d / %d rank-ups, %s / %s / %s",
+            windows.getRankUps(RankUpStats.MINUTE), windows.getRankUps(RankUpStats.HOUR),
+            windows.getRankUps(RankUpStats.DAY), Text.numberToDollars(windows.getMoney(RankUpStats.MINUTE)),
+            Text.numberToDollars(windows.getMoney(RankUpStats.HOUR)),
+            Text.numberToDollars(windows.getMoney(RankUpStats.DAY)));
+    }
+
+    @Command(identifier = "ranks watchdog", description = "Shows storage calls that blocked the server thread.", onlyPlayers = false, permissions = "ranks.admin")
+    public void watchdogCmd(CommandSender sender) {
+        StorageWatchdog watchdog = PrisonRanks.getInstance().getWatchdog();
+        if (watchdog == null) {
+            Output.get().sendWarn(sender,
+                "The storage watchdog is turned off. Set 'watchdog-threshold' in the ranks config to enable it.");
+            return;
+        }
+
+        List<StorageWatchdog.CallSite> sites = watchdog.getCallSites();
+        if (sites.isEmpty()) {
+            Output.get().sendInfo(sender, "No storage calls have blocked the server thread for over %.0fms.",
+                LatencyHistogram.toMillis(watchdog.getThresholdNanos()));
+            return;
+        }
+
+        ChatDisplay display = new ChatDisplay("Blocking Storage Calls");
+        display.text("&7Worst first, by total time blocked.");
+
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        for (StorageWatchdog.CallSite site : sites) {
+            builder.add("&3%s&8: &7%d calls, %.1fms total, %.1fms max", site.getLocation(),
+                site.getCount(), LatencyHistogram.toMillis(site.getTotalNanos()),
+                LatencyHistogram.toMillis(site.getMaxNanos()));
+        }
+        display.addComponent(builder.build());
+
+        display.send(sender);
+    }
+
+    @Command(identifier = "ranks simulate", description = "Simulates players earning money and ranking up a ladder, to show how long each rank takes.", onlyPlayers = false, permissions = "ranks.admin")
+    public void simulateCmd(CommandSender sender, @Arg(name = "ladder", def = "default") String ladderName,
+        @Arg(name = "players", description = "How many players to simulate.", def = "100000") int players,
+        @Arg(name = "income", description = "The median player's income per hour.", def = "1000") double income,
+        @Arg(name = "spread", description = "How much incomes differ between players; 0 for none.", def = "0.8") double spread,
+        @Arg(name = "hours", description = "How many hours of play to simulate.", def = "720") int hours,
+        @Arg(name = "costscale", description = "What to multiply every rank's cost by.", def = "1") double costScale,
+        @Arg(name = "seed", def = "1") long seed) {
+        Optional<RankLadder> ladder = PrisonRanks.getInstance().getLadderManager().getLadder(ladderName);
+        if (!ladder.isPresent()) {
+            Output.get().sendError(sender, "The ladder '%s' doesn't exist.", ladderName);
+            return;
+        }
+        if (players < 1 || hours < 1 || income <= 0 || spread < 0 || costScale < 0) {
+            Output.get().sendError(sender,
+                "There must be at least one player and one hour, and the income must be positive.");
+            return;
+        }
+        if (players > EconomySimulation.MAX_PLAYERS || hours > EconomySimulation.MAX_HOURS) {
+            Output.get().sendError(sender, "At most %d players and %d hours can be simulated.",
+                EconomySimulation.MAX_PLAYERS, EconomySimulation.MAX_HOURS);
+            return;
+        }
+
+        EconomySimulation simulation =
+            new EconomySimulation(ladder.get(), costScale, players, income, spread, hours, seed);
+        Output.get().sendInfo(sender, "Simulating %d players over %d hours...", players, hours);
+
+        Thread thread = new Thread(() -> {
+            EconomySimulation.Result result = simulation.run();
+            PrisonAPI.getScheduler().runTaskLater(() -> sendSimulationResult(sender, result), 0);
+        }, "prison-ranks-simulate");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void sendSimulationResult(CommandSender sender, EconomySimulation.Result result) {
+        ChatDisplay display = new ChatDisplay("Economy Simulation");
+        display.text("&7%d players made %d rank-ups in %.1f seconds.", result.players, result.rankUps,
+            result.elapsedSeconds);
+        display.text("&7Time to reach each rank, for the 10%%, 50%% and 90%% of players who did:");
+
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        for (int i = 1; i < result.rankNames.length; i++) {
+            double[] percentiles = result.percentiles[i];
+            if (result.reached[i] == 0) {
+                builder.add("&3%s &8(%s)&8: &cnobody reached it", result.rankNames[i],
+                    Text.numberToDollars(result.costs[i]));
+                continue;
+            }
+            builder.add("&3%s &8(%s)&8: &7%.1f%% reached it; %s, %s, %s", result.rankNames[i],
+                Text.numberToDollars(result.costs[i]), 100.0 * result.reached[i] / result.players,
+                formatHours(percentiles[0]), formatHours(percentiles[1]), formatHours(percentiles[2]));
+        }
+        display.addComponent(builder.build());
+        display.send(sender);
+    }
+
+    private String formatHours(double hours) {
+        return formatDuration((long) (hours * TimeUnit.HOURS.toMillis(1)));
+    }
+
+    @Command(identifier = "ranks export", description = "Writes all ranks, ladders and players to one compressed file.", onlyPlayers = false, permissions = "ranks.admin")
+    public void exportCmd(CommandSender sender,
+        @Arg(name = "file", description = "The name of the file to write, in the exports folder.", def = "ranks-export.ndjson.gz") String fileName) {
+        File file = getArchiveFile(sender, fileName);
+        if (file == null) {
+            return;
+        }
+        if (!archiveRunning.compareAndSet(false, true)) {
+            Output.get().sendWarn(sender, "An export or import is already running.");
+            return;
+        }
+
+        file.getParentFile().mkdirs();
+        Output.get().sendInfo(sender, "Exporting to %s...", file.getName());
+        runArchiveTask(sender, "export", archive -> {
+            PrisonRanks.getInstance().getPlayerManager().flushSaves();
+            archive.export(file);
+        }, archive -> Output.get().sendInfo(sender,
+            "Exported %d ranks, %d ladders and %d players to %s.", archive.getRanks(),
+            archive.getLadders(), archive.getPlayers(), file.getName()));
+    }
+
+    @Command(identifier = "ranks import", description = "Reads ranks, ladders and players from an exported file, replacing those already stored.", onlyPlayers = false, permissions = "ranks.admin")
+    public void importCmd(CommandSender sender,
+        @Arg(name = "file", description = "The name of the file to read, in the exports folder.") String fileName) {
+        File file = getArchiveFile(sender, fileName);
+        if (file == null) {
+            return;
+        }
+        if (!file.isFile()) {
+            Output.get().sendError(sender, "The file '%s' doesn't exist.", file.getName());
+            return;
+        }
+        if (!archiveRunning.compareAndSet(false, true)) {
+            Output.get().sendWarn(sender, "An export or import is already running.");
+            return;
+        }
+
+        Output.get().sendInfo(sender, "Importing from %s...", file.getName());
+        PlayerManager playerManager = PrisonRanks.getInstance().getPlayerManager();
+        runArchiveTask(sender, "import", archive -> {
+            playerManager.beginImport();
+            try {
+                archive.importFrom(file);
+            } catch (IOException | RuntimeException e) {
+                playerManager.abortImport();
+                throw e;
+            }
+        }, archive -> {
+            try {
+                PrisonRanks.getInstance().getRankManager().reloadRanks();
+                PrisonRanks.getInstance().getLadderManager().reloadLadders();
+                playerManager.finishImport();
+            } catch (IOException e) {
+                Output.get().sendError(sender,
+                    "The data was imported, but could not be reloaded. Restart the server to use it.");
+                Output.get().logError("Could not reload the ranks data after an import.", e);
+                return;
+            }
+            Output.get().sendInfo(sender, "Imported %d ranks, %d ladders and %d players from %s.",
+                archive.getRanks(), archive.getLadders(), archive.getPlayers(), file.getName());
+        });
+    }
+
+    private File getArchiveFile(CommandSender sender, String fileName) {
+        // Keep archives inside the exports folder.
+        if (!fileName.matches("[A-Za-z0-9_\\-][A-Za-z0-9_.\\-]*")) {
+            Output.get().sendError(sender,
+                "File names may only contain letters, numbers, dots, dashes and underscores.");
+            return null;
+        }
+        return new File(new File(PrisonAPI.getPluginDirectory(), "exports"), fileName);
+    }
+
+    /**
+     * Runs an export or import on its own thread. Progress and the result are sent back on the server thread.
+     */
+    private void runArchiveTask(CommandSender sender, String name, ArchiveTask task,
+        Consumer<RanksArchive> onSuccess) {
+        RanksArchive archive = new RanksArchive(PrisonRanks.getInstance().getStorage(),
+            message -> PrisonAPI.getScheduler()
+                .runTaskLater(() -> Output.get().sendInfo(sender, message), 0));
+
+        Thread thread = new Thread(() -> {
+            Runnable result;
+            try {
+                task.run(archive);
+                result = () -> onSuccess.accept(archive);
+            } catch (IOException | RuntimeException e) {
+                Output.get().logError("The ranks " + name + " failed.", e);
+                result = () -> Output.get().sendError(sender, "The %s failed: %s", name, e.getMessage());
+            }
+
+            Runnable finish = result;
+            PrisonAPI.getScheduler().runTaskLater(() -> {
+                try {
+                    finish.run();
+                } finally {
+                    archiveRunning.set(false);
+                }
+            }, 0);
+        }, "prison-ranks-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FunctionalInterface private interface ArchiveTask {
+
+        void run(RanksArchive archive) throws IOException;
+
+    }
+
+    @Command(identifier = "ranks reload", description = "Re-reads ranks and ladders from storage, without touching players.", onlyPlayers = false, permissions = "ranks.admin")
+    public void reloadCmd(CommandSender sender) {
+        Output.get().sendInfo(sender, "Reloading ranks and ladders...");
+
+        // Read on another thread, then apply everything in one go on the server thread, so nothing
+        // sees the ranks changed but the ladders not.
+        Thread thread = new Thread(() -> {
+            List<Rank> ranks;
+            List<RankLadder> ladders;
+            try {
+                ranks = PrisonRanks.getInstance().getRankManager().readStoredRanks();
+                ladders = PrisonRanks.getInstance().getLadderManager().readStoredLadders();
+            } catch (IOException e) {
+                Output.get().logError("Could not read ranks and ladders for a reload.", e);
+                PrisonAPI.getScheduler().runTaskLater(() -> Output.get()
+                    .sendError(sender, "Could not read from storage: %s", e.getMessage()), 0);
+                return;
+            }
+
+            PrisonAPI.getScheduler().runTaskLater(() -> applyReload(sender, ranks, ladders), 0);
+        }, "prison-ranks-reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void applyReload(CommandSender sender, List<Rank> ranks, List<RankLadder> ladders) {
+        if (ladders.stream().noneMatch(ladder -> ladder.name.equals("default"))) {
+            Output.get().sendError(sender,
+                "Storage has no 'default' ladder, so nothing was reloaded.");
+            return;
+        }
+
+        Set<Integer> rankIds = new HashSet<>();
+        for (Rank rank : ranks) {
+            rankIds.add(rank.id);
+        }
+        for (RankLadder ladder : ladders) {
+            for (RankLadder.PositionRank positionRank : ladder.ranks) {
+                if (!rankIds.contains(positionRank.getRankId())) {
+                    Output.get().sendWarn(sender,
+                        "The ladder '%s' refers to rank ID %d, which doesn't exist.", ladder.name,
+                        positionRank.getRankId());
+                }
+            }
+        }
+
+        ReloadChanges rankChanges = PrisonRanks.getInstance().getRankManager().applyRanks(ranks);
+        ReloadChanges ladderChanges =
+            PrisonRanks.getInstance().getLadderManager().applyLadders(ladders);
+
+        if (rankChanges.isEmpty() && ladderChanges.isEmpty()) {
+            Output.get().sendInfo(sender, "Nothing has changed.");
+            return;
+        }
+        Output.get().sendInfo(sender, "Reloaded. Ranks: %s. Ladders: %s.", rankChanges, ladderChanges);
+    }
+
+    @Command(identifier = "ranks temprank", description = "Gives a player a rank for a while, after which they go back to their old rank.", onlyPlayers = false, permissions = "ranks.admin")
+    public void tempRankCmd(CommandSender sender, @Arg(name = "player") String playerName,
+        @Arg(name = "rank") String rankName,
+        @Arg(name = "duration", description = "How long the rank lasts, like 30m, 12h or 7d.") String durationText,
+        @Arg(name = "ladder", description = "The ladder, if the rank is on more than one.", def = "") String ladderName) {
+        Player prisonPlayer = PrisonAPI.getPlayer(playerName).orElse(null);
+        RankPlayer player = prisonPlayer == null ? null :
+            PrisonRanks.getInstance().getPlayerManager().getPlayer(prisonPlayer.getUUID()).orElse(null);
+        if (player == null) {
+            Output.get().sendError(sender, "The player '%s' isn't online.", playerName);
+            return;
+        }
+
+        Optional<Rank> rank = PrisonRanks.getInstance().getRankManager().getRank(rankName);
+        if (!rank.isPresent()) {
+            Output.get().sendError(sender, "The rank '%s' doesn't exist.", rankName);
+            return;
+        }
+
+        long duration = parseDuration(durationText);
+        if (duration <= 0) {
+            Output.get().sendError(sender,
+                "'%s' isn't a duration. Use a number followed by s, m, h or d, like 12h.", durationText);
+            return;
+        }
+
+        List<RankLadder> ladders =
+            PrisonRanks.getInstance().getLadderManager().getLaddersWithRank(rank.get().id);
+        if (!ladderName.isEmpty()) {
+            ladders.removeIf(ladder -> !ladder.name.equalsIgnoreCase(ladderName));
+        }
+        if (ladders.size() != 1) {
+            Output.get().sendError(sender, ladders.isEmpty() ?
+                "The rank '%s' isn't on that ladder." :
+                "The rank '%s' is on more than one ladder. Say which one to use.", rank.get().name);
+            return;
+        }
+
+        long expiresAt;
+        try {
+            expiresAt = PrisonRanks.getInstance().getExpiryService()
+                .setTemporaryRank(player, ladders.get(0), rank.get(), duration, sender.getName());
+        } catch (IOException e) {
+            Output.get().sendError(sender,
+                "An error occurred while saving the player. &8Check the console for details.");
+            Output.get().logError("Could not save a temporary rank.", e);
+            return;
+        }
+
+        Output.get().sendInfo(sender, "%s has the rank %s until %s.", prisonPlayer.getName(),
+            rank.get().name, new Date(expiresAt));
+    }
+
+    @Command(identifier = "ranks history", description = "Shows when a player reached each rank, and how long they stayed.", onlyPlayers = false, permissions = "ranks.admin")
+    public void historyCmd(CommandSender sender,
+        @Arg(name = "player", description = "An online player's name, or any player's UUID.") String playerName,
+        @Arg(name = "count", description = "How many of the latest changes to show.", def = "20") int count) {
+        Optional<UUID> uid = findPlayerUid(playerName);
+        if (!uid.isPresent()) {
+            Output.get().sendError(sender, "The player '%s' isn't online. Use their UUID instead.",
+                playerName);
+            return;
+        }
+
+        // Read on the history thread, and show it once it's back on the server thread.
+        PrisonRanks.getInstance().getAsync().getHistoryAsync(uid.get()).whenComplete((changes, error) -> {
+            if (error != null) {
+                Output.get().sendError(sender, "Could not read the history: %s", error.getMessage());
+                return;
+            }
+            sendHistory(sender, playerName, changes, count);
+        });
+    }
+
+    private void sendHistory(CommandSender sender, String playerName, List<RankChange> changes,
+        int count) {
+        if (changes.isEmpty()) {
+            Output.get().sendInfo(sender, "%s has no rank history.", playerName);
+            return;
+        }
+
+        // How long each rank was held is the time until the next change on the same ladder.
+        long now = System.currentTimeMillis();
+        long[] heldFor = new long[changes.size()];
+        Map<Integer, Integer> latestOnLadder = new HashMap<>();
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            RankChange change = changes.get(i);
+            Integer next = latestOnLadder.put(change.ladderId, i);
+            heldFor[i] = next == null ? -1 : changes.get(next).time - change.time;
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        ChatDisplay display = new ChatDisplay("History of " + playerName);
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        for (int i = Math.max(0, changes.size() - count); i < changes.size(); i++) {
+            RankChange change = changes.get(i);
+            String ladder = PrisonRanks.getInstance().getLadderManager().getLadder(change.ladderId)
+                .map(rankLadder -> rankLadder.name).orElse("#" + change.ladderId);
+            String rank = change.rankId == null ? "&cleft the ladder" :
+                PrisonRanks.getInstance().getRankManager().getRank(change.rankId)
+                    .map(found -> found.name).orElse("#" + change.rankId);
+            String held;
+            if (change.rankId == null) {
+                held = "";
+            } else if (heldFor[i] < 0) {
+                held = " &8(still held, " + formatDuration(now - change.time) + " so far)";
+            } else {
+                held = " &8(held for " + formatDuration(heldFor[i]) + ")";
+            }
+
+            builder.add("&7%s &3%s&7: &b%s%s", dateFormat.format(new Date(change.time)), ladder,
+                rank, held);
+        }
+        display.addComponent(builder.build());
+        display.text("&7Showing %d of %d changes.", Math.min(count, changes.size()),
+            changes.size());
+        display.send(sender);
+    }
+
+    @Command(identifier = "ranks audit", description = "Shows the latest changes to a player's ranks, and who made them.", onlyPlayers = false, permissions = "ranks.admin")
+    public void auditCmd(CommandSender sender,
+        @Arg(name = "player", description = "An online player's name, or any player's UUID.") String playerName,
+        @Arg(name = "count", description = "How many of the latest changes to show.", def = "20") int count) {
+        Optional<UUID> uid = findPlayerUid(playerName);
+        if (!uid.isPresent()) {
+            Output.get().sendError(sender, "The player '%s' isn't online. Use their UUID instead.",
+                playerName);
+            return;
+        }
+
+        // Read on the audit thread, and show it once it's back on the server thread.
+        PrisonRanks.getInstance().getAuditLog().read(uid.get(), count)
+            .whenCompleteAsync((entries, error) -> {
+                if (error != null) {
+                    Output.get()
+                        .sendError(sender, "Could not read the audit log: %s", error.getMessage());
+                    return;
+                }
+                sendAudit(sender, playerName, entries);
+            }, AsyncRanks.serverThread());
+    }
+
+    private void sendAudit(CommandSender sender, String playerName, List<AuditEntry> entries) {
+        if (entries.isEmpty()) {
+            Output.get().sendInfo(sender, "Nothing has changed %s's ranks.", playerName);
+            return;
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        ChatDisplay display = new ChatDisplay("Audit of " + playerName);
+        BulletedListComponent.BulletedListBuilder builder =
+            new BulletedListComponent.BulletedListBuilder();
+        for (AuditEntry entry : entries) {
+            builder.add("&7%s &3%s&7: &b%s &7-> &b%s &8(%s by %s%s)",
+                dateFormat.format(new Date(entry.time)), entry.ladder,
+                entry.oldRank == null ? "none" : entry.oldRank,
+                entry.newRank == null ? "none" : entry.newRank, entry.cause, entry.actor,
+                entry.cost > 0 ? ", paid " + Text.numberToDollars(entry.cost) : "");
+        }
+        display.addComponent(builder.build());
+        display.send(sender);
+    }
+
+    /**
+     * Finds a player by the name of an online player, or by any player's UUID.
+     */
+    private Optional<UUID> findPlayerUid(String nameOrUid) {
+        try {
+            return Optional.of(UUID.fromString(nameOrUid));
+        } catch (IllegalArgumentException e) {
+            return PrisonAPI.getPlayer(nameOrUid).map(Player::getUUID);
+        }
+    }
+
+    /**
+     * Formats a length of time like 3d 4h, using its two largest units.
+     */
+    private String formatDuration(long millis) {
+        long seconds = TimeUnit.MILLISECONDS.toSeconds(Math.max(0, millis));
+        long[] amounts = {seconds / 86400, seconds / 3600 % 24, seconds / 60 % 60, seconds % 60};
+        String[] units = {"d", "h", "m", "s"};
+
+        StringBuilder builder = new StringBuilder();
+        int shown = 0;
+        for (int i = 0; i < amounts.length && shown < 2; i++) {
+            if (amounts[i] > 0 || (i == amounts.length - 1 && shown == 0)) {
+                builder.append(shown > 0 ? " " : "").append(amounts[i]).append(units[i]);
+                shown++;
+            } else if (shown > 0) {
+                break;
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads a duration like 90s, 30m, 12h or 7d.
+     *
+     * @return The duration in milliseconds, or -1 if it couldn't be read.
+     */
+    private long parseDuration(String text) {
+        if (text.length() < 2) {
+            return -1;
+        }
+
+        TimeUnit unit;
+        switch (Character.toLowerCase(text.charAt(text.length() - 1))) {
+            case 's':
+                unit = TimeUnit.SECONDS;
+                break;
+            case 'm':
+                unit = TimeUnit.MINUTES;
+                break;
+            case 'h':
+                unit = TimeUnit.HOURS;
+                break;
+            case 'd':
+                unit = TimeUnit.DAYS;
+                break;
+            default:
+                return -1;
+        }
+
+        try {
+            return unit.toMillis(Long.parseLong(text.substring(0, text.length() - 1)));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
 }
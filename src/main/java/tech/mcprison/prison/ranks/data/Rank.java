@@ -19,6 +19,7 @@ package tech.mcprison.prison.ranks.data;
 
 import tech.mcprison.prison.ranks.RankUtil;
 import tech.mcprison.prison.store.Document;
+import tech.mcprison.prison.util.Text;
 
 import java.util.List;
 
@@ -48,6 +49,17 @@ public class Rank {
     // The commands that are run when this rank is attained.
     public List<String> rankUpCommands;
 
+    // The tag with its color codes translated, and this rank's line in rank lists. These are worked out when the
+    // rank is loaded or edited, not each time it's shown, and remember what they were worked out from.
+    private transient String displayTag;
+    private transient String listLine;
+    private transient String displayedTag;
+    private transient double displayedCost;
+
+    // The rank-up results carrying this rank, one per outcome. They hold nothing but the outcome and the rank,
+    // so they're made the first time each is needed and handed out from then on.
+    private transient RankUtil.RankUpResult[] rankUpResults;
+
     /*
      * Document-related
      */
@@ -59,8 +71,9 @@ public class Rank {
         this.id = RankUtil.doubleToInt(document.get("id"));
         this.name = (String) document.get("name");
         this.tag = (String) document.get("tag");
-        this.cost = (double) document.get("cost");
+        this.cost = ((Number) document.get("cost")).doubleValue();
         this.rankUpCommands = (List<String>) document.get("commands");
+        updateDisplay();
     }
 
     public Document toDocument() {
@@ -73,6 +86,63 @@ public class Rank {
         return ret;
     }
 
+    /*
+     * Methods
+     */
+
+    /**
+     * Works out the translated tag and list line again. Call this after changing the tag or cost.
+     */
+    public void updateDisplay() {
+        displayTag = tag == null ? "" : Text.translateAmpColorCodes(tag);
+        listLine = Text.translateAmpColorCodes(
+            String.format("&3%s&r &8- &7%s", tag, Text.numberToDollars(cost)));
+        displayedTag = tag;
+        displayedCost = cost;
+    }
+
+    private void checkDisplay() {
+        // The fields are public, so they may have been changed without updateDisplay() being called.
+        if (displayTag == null || tag != displayedTag || cost != displayedCost) {
+            updateDisplay();
+        }
+    }
+
+    /**
+     * @return The tag, with its color codes translated. This is empty if the rank has no tag.
+     */
+    public String getDisplayTag() {
+        checkDisplay();
+        return displayTag;
+    }
+
+    /**
+     * @return The rank's line in rank lists: its tag and cost, with color codes translated.
+     */
+    public String getListLine() {
+        checkDisplay();
+        return listLine;
+    }
+
+    /**
+     * @param status One of the {@code RankUtil.RANKUP_} outcomes.
+     * @return The result of a rank-up with that outcome and this rank. The same result is returned each time.
+     */
+    public RankUtil.RankUpResult getRankUpResult(int status) {
+        RankUtil.RankUpResult[] results = rankUpResults;
+        if (results == null) {
+            results = new RankUtil.RankUpResult[RankUtil.RANKUP_THROTTLED + 1];
+            rankUpResults = results;
+        }
+        RankUtil.RankUpResult result = results[status];
+        if (result == null) {
+            // Two threads may both make one; either is as good as the other.
+            result = new RankUtil.RankUpResult(status, this);
+            results[status] = result;
+        }
+        return result;
+    }
+
     /*
      * equals() and hashCode()
      */
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.data;
+
+/**
+ * When a temporary rank on one of a player's ladders runs out, and what the player goes back to afterwards.
+ */
+public class RankExpiry {
+
+    /*
+     * Fields & Constants
+     */
+
+    // The temporary rank. If the player's rank on the ladder is no longer this, the expiry no longer applies.
+    public int rankId;
+
+    // When the rank runs out, in milliseconds since the epoch.
+    public long expiresAt;
+
+    // The rank the player had on the ladder before, to go back to. Null if they weren't on the ladder.
+    public Integer previousRankId;
+
+    /*
+     * Constructor
+     */
+
+    public RankExpiry() {
+    }
+
+    public RankExpiry(int rankId, long expiresAt, Integer previousRankId) {
+        this.rankId = rankId;
+        this.expiresAt = expiresAt;
+        this.previousRankId = previousRankId;
+    }
+
+}
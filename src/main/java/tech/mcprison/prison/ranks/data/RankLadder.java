@@ -23,7 +23,6 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import tech.mcprison.prison.ranks.PrisonRanks;
 import tech.mcprison.prison.ranks.RankUtil;
 import tech.mcprison.prison.store.Document;
@@ -142,7 +141,12 @@ public class RankLadder {
      * @return True if the rank was found, false otherwise.
      */
     public boolean containsRank(int rankId) {
-        return ranks.stream().anyMatch(rank -> rank.getRankId() == rankId);
+        for (PositionRank rank : ranks) {
+            if (rank.getRankId() == rankId) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -169,16 +173,31 @@ public class RankLadder {
      * empty if there isn't or if the rank does not exist anymore.
      */
     public Optional<Rank> getNext(int after) {
-        List<Integer> positions =
-            ranks.stream().map(PositionRank::getPosition).sorted().collect(Collectors.toList());
+        return Optional.ofNullable(getNextOrNull(after));
+    }
 
-        int newIndex = positions.indexOf(after) + 1;
-        if (newIndex >= positions.size()) {
-            return Optional.empty();
+    /**
+     * Returns the next highest rank in the ladder, as {@link #getNext(int)} does, but without wrapping it.
+     *
+     * @param after The position of the current rank.
+     * @return The rank, or null if there isn't a next rank in the ladder or if the rank does not exist anymore.
+     */
+    public Rank getNextOrNull(int after) {
+        // A single pass for the closest position above, rather than sorting a boxed copy of every position
+        boolean found = false;
+        int nextPosition = 0;
+        for (PositionRank posRank : ranks) {
+            int position = posRank.getPosition();
+            if (position > after && (!found || position < nextPosition)) {
+                nextPosition = position;
+                found = true;
+            }
         }
 
-        int nextPosition = positions.get(newIndex);
-        return getByPosition(nextPosition);
+        if (!found) {
+            return null;
+        }
+        return getByPositionOrNull(nextPosition);
     }
 
     /**
@@ -189,15 +208,19 @@ public class RankLadder {
      * empty if there isn't or if the rank does not exist anymore.
      */
     public Optional<Rank> getPrevious(int before) {
-        List<Integer> positions =
-            ranks.stream().map(PositionRank::getPosition).sorted().collect(Collectors.toList());
+        boolean found = false;
+        int previousPosition = 0;
+        for (PositionRank posRank : ranks) {
+            int position = posRank.getPosition();
+            if (position < before && (!found || position > previousPosition)) {
+                previousPosition = position;
+                found = true;
+            }
+        }
 
-        int newIndex = positions.indexOf(before) - 1;
-        if (newIndex >= positions.size()) {
+        if (!found) {
             return Optional.empty();
         }
-
-        int previousPosition = positions.get(newIndex);
         return getByPosition(previousPosition);
     }
 
@@ -208,13 +231,23 @@ public class RankLadder {
      * @return An optional containing the rank if it was found, or empty if it wasn't.
      */
     public Optional<Rank> getByPosition(int position) {
+        return Optional.ofNullable(getByPositionOrNull(position));
+    }
+
+    /**
+     * Returns the rank at a position in the ladder, as {@link #getByPosition(int)} does, but without wrapping it.
+     *
+     * @param position The position to search for.
+     * @return The rank, or null if it wasn't found.
+     */
+    public Rank getByPositionOrNull(int position) {
         for (PositionRank posRank : ranks) {
             if (posRank.getPosition() == position) {
-                return PrisonRanks.getInstance().getRankManager().getRank(posRank.getRankId());
+                return PrisonRanks.getInstance().getRankManager().getRankOrNull(posRank.getRankId());
             }
         }
 
-        return Optional.empty();
+        return null;
     }
 
     /**
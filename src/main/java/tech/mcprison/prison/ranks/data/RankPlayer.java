@@ -40,6 +40,7 @@ public class RankPlayer {
 
     public UUID uid;
     public HashMap<String, Integer> ranks; // <Ladder Name, Rank ID>
+    public HashMap<String, RankExpiry> expiries = new HashMap<>(); // <Ladder Name, Expiry>, for temporary ranks
 
     /*
      * Document-related
@@ -57,12 +58,35 @@ public class RankPlayer {
         for (String key : ranksLocal.keySet()) {
             ranks.put(key, RankUtil.doubleToInt(ranksLocal.get(key)));
         }
+
+        LinkedTreeMap<String, LinkedTreeMap<String, Object>> expiriesLocal =
+            (LinkedTreeMap<String, LinkedTreeMap<String, Object>>) document.get("expiries");
+        if (expiriesLocal != null) {
+            for (String key : expiriesLocal.keySet()) {
+                LinkedTreeMap<String, Object> expiry = expiriesLocal.get(key);
+                Object previous = expiry.get("previous");
+                expiries.put(key, new RankExpiry(RankUtil.doubleToInt(expiry.get("rank")),
+                    ((Number) expiry.get("at")).longValue(),
+                    previous == null ? null : RankUtil.doubleToInt(previous)));
+            }
+        }
     }
 
     public Document toDocument() {
         Document ret = new Document();
         ret.put("uid", this.uid);
         ret.put("ranks", this.ranks);
+        if (!expiries.isEmpty()) {
+            Map<String, Map<String, Object>> expiriesLocal = new HashMap<>();
+            for (Map.Entry<String, RankExpiry> entry : expiries.entrySet()) {
+                Map<String, Object> expiry = new HashMap<>();
+                expiry.put("rank", entry.getValue().rankId);
+                expiry.put("at", entry.getValue().expiresAt);
+                expiry.put("previous", entry.getValue().previousRankId);
+                expiriesLocal.put(entry.getKey(), expiry);
+            }
+            ret.put("expiries", expiriesLocal);
+        }
         return ret;
     }
 
@@ -89,6 +113,30 @@ public class RankPlayer {
         }
 
         ranks.put(ladder.name, rank.id);
+        // A new rank replaces a temporary one, expiry and all.
+        expiries.remove(ladder.name);
+    }
+
+    /**
+     * Add a rank to this player which runs out after a while. When it does, the player goes back to the rank
+     * they had on the ladder before. The expiry itself is carried out by the
+     * {@link tech.mcprison.prison.ranks.expiry.RankExpiryService}.
+     *
+     * @param ladder    The {@link RankLadder} that this rank belongs to.
+     * @param rank      The {@link Rank} to add.
+     * @param expiresAt When the rank runs out, in milliseconds since the epoch.
+     * @return The expiry that was set.
+     * @throws IllegalArgumentException If the rank specified is not on this ladder.
+     */
+    public RankExpiry addTemporaryRank(RankLadder ladder, Rank rank, long expiresAt) {
+        // If this replaces another temporary rank, still go back to what was there before that.
+        RankExpiry current = expiries.get(ladder.name);
+        Integer previous = current != null ? current.previousRankId : ranks.get(ladder.name);
+
+        addRank(ladder, rank);
+        RankExpiry expiry = new RankExpiry(rank.id, expiresAt, previous);
+        expiries.put(ladder.name, expiry);
+        return expiry;
     }
 
     /**
@@ -110,6 +158,7 @@ public class RankPlayer {
 
         // ... and then remove it!
         ranks.remove(ladderName);
+        expiries.remove(ladderName);
     }
 
     /**
@@ -122,6 +171,34 @@ public class RankPlayer {
             return;
         }
         ranks.remove(ladderName);
+        expiries.remove(ladderName);
+    }
+
+    /**
+     * @return A copy of this player, which can be changed or read elsewhere without affecting this one.
+     */
+    public RankPlayer copy() {
+        RankPlayer copy = new RankPlayer();
+        copy.uid = uid;
+        copy.ranks = new HashMap<>(ranks);
+        for (Map.Entry<String, RankExpiry> entry : expiries.entrySet()) {
+            RankExpiry expiry = entry.getValue();
+            copy.expiries.put(entry.getKey(),
+                new RankExpiry(expiry.rankId, expiry.expiresAt, expiry.previousRankId));
+        }
+        return copy;
+    }
+
+    /**
+     * Puts back the ranks and expiries this player had when a copy was made, such as when a change to them
+     * couldn't be saved.
+     *
+     * @param snapshot A copy of this player, from {@link #copy()}.
+     */
+    public void restore(RankPlayer snapshot) {
+        RankPlayer restored = snapshot.copy();
+        ranks = restored.ranks;
+        expiries = restored.expiries;
     }
 
     /*
@@ -135,11 +212,22 @@ public class RankPlayer {
      * @return An optional containing the {@link Rank} if found, or empty if there isn't a rank by that ladder for this player.
      */
     public Optional<Rank> getRank(RankLadder ladder) {
-        if (!ranks.containsKey(ladder.name)) {
-            return Optional.empty();
+        return Optional.ofNullable(getRankOrNull(ladder));
+    }
+
+    /**
+     * Returns the rank that this player has on a ladder, as {@link #getRank(RankLadder)} does, but without
+     * wrapping it.
+     *
+     * @param ladder The ladder to check.
+     * @return The {@link Rank}, or null if the player has no rank on the ladder.
+     */
+    public Rank getRankOrNull(RankLadder ladder) {
+        Integer id = ranks.get(ladder.name);
+        if (id == null) {
+            return null;
         }
-        int id = ranks.get(ladder.name);
-        return PrisonRanks.getInstance().getRankManager().getRank(id);
+        return PrisonRanks.getInstance().getRankManager().getRankOrNull(id);
     }
 
     /**
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.data;
+
+import tech.mcprison.prison.store.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The settings for the ranks module. These are stored in the {@code config} collection of the ranks database,
+ * and any setting that's missing there takes its default value.
+ */
+public class RanksConfig {
+
+    /*
+     * Fields & Constants
+     */
+
+    // Where the ranks data is kept: "collection" for Prison's document storage, "sql" for the embedded database,
+    // or "segments" for document storage with players packed into compressed segment files.
+    public String storage = "collection";
+
+    // When true, players who only have the starting rank aren't saved; their records are rebuilt when they're
+    // next needed. The UUIDs of everyone who has joined are kept in ranks-known-players.dat, so a player whose
+    // record was pruned doesn't get a FirstJoinEvent again.
+    public boolean sparsePlayers = false;
+
+    // How often, in seconds, to write the ranks stats to ranks-stats.json. Zero turns this off.
+    public int metricsDumpInterval = 0;
+
+    // Storage calls that block the server thread for longer than this many milliseconds are logged. Zero turns this off.
+    public int watchdogThreshold = 20;
+
+    // How many rank changes to keep in each player's history, in the ranks-history folder. Zero, the default,
+    // turns the history off.
+    public int historyLimit = 0;
+
+    // How many seconds to remember players' balances for, when showing whether they can afford a rank. Rank-ups
+    // always check the real balance. Zero turns this off.
+    public int balanceCacheSeconds = 5;
+
+    // How often each player may try to rank up, by ladder: how many tries they may make at once, and how many
+    // tries per second they get back. "*" applies to ladders not listed. A burst of zero turns the limit off,
+    // which is the default; set "*" to a burst of 5 at 2 per second, say, to turn it on.
+    public Map<String, RateLimit> rankupLimits = defaultRankupLimits();
+
+    // The storage backends whose players have all been moved to full-UUID keys. This is kept up to date by the
+    // module, and shouldn't need editing.
+    public List<String> migratedPlayerKeys = new ArrayList<>();
+
+    /*
+     * Document-related
+     */
+
+    public RanksConfig() {
+    }
+
+    public RanksConfig(Document document) {
+        this.storage = getString(document, "storage", storage);
+        this.sparsePlayers = getBoolean(document, "sparse-players", sparsePlayers);
+        this.metricsDumpInterval = getInt(document, "metrics-dump-interval", metricsDumpInterval);
+        this.watchdogThreshold = getInt(document, "watchdog-threshold", watchdogThreshold);
+        this.historyLimit = getInt(document, "history-limit", historyLimit);
+        this.balanceCacheSeconds = getInt(document, "balance-cache-seconds", balanceCacheSeconds);
+        this.migratedPlayerKeys = getStringList(document, "migrated-player-keys");
+        this.rankupLimits = getRateLimits(document, "rankup-limits", rankupLimits);
+    }
+
+    public Document toDocument() {
+        Document ret = new Document();
+        ret.put("storage", this.storage);
+        ret.put("sparse-players", this.sparsePlayers);
+        ret.put("metrics-dump-interval", this.metricsDumpInterval);
+        ret.put("watchdog-threshold", this.watchdogThreshold);
+        ret.put("history-limit", this.historyLimit);
+        ret.put("balance-cache-seconds", this.balanceCacheSeconds);
+        ret.put("migrated-player-keys", this.migratedPlayerKeys);
+        Map<String, Map<String, Object>> limits = new LinkedHashMap<>();
+        for (Map.Entry<String, RateLimit> entry : rankupLimits.entrySet()) {
+            Map<String, Object> limit = new LinkedHashMap<>();
+            limit.put("burst", entry.getValue().burst);
+            limit.put("per-second", entry.getValue().perSecond);
+            limits.put(entry.getKey(), limit);
+        }
+        ret.put("rankup-limits", limits);
+        return ret;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @return The rank-up limit for the given ladder, or the "*" limit if it has none of its own. This may be null
+     * if neither is set.
+     */
+    public RateLimit getRankupLimit(String ladderName) {
+        RateLimit limit = rankupLimits.get(ladderName);
+        return limit != null ? limit : rankupLimits.get("*");
+    }
+
+    private static Map<String, RateLimit> defaultRankupLimits() {
+        Map<String, RateLimit> ret = new LinkedHashMap<>();
+        // Off, but written out so the setting shows up in the config.
+        ret.put("*", new RateLimit(0, 2));
+        return ret;
+    }
+
+    private static Map<String, RateLimit> getRateLimits(Document document, String key,
+        Map<String, RateLimit> def) {
+        Object value = document.get(key);
+        if (!(value instanceof Map)) {
+            return def;
+        }
+
+        Map<String, RateLimit> ret = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> limit = (Map<?, ?>) entry.getValue();
+            Object burst = limit.get("burst");
+            Object perSecond = limit.get("per-second");
+            if (burst instanceof Number && perSecond instanceof Number) {
+                ret.put(String.valueOf(entry.getKey()),
+                    new RateLimit((int) Math.round(((Number) burst).doubleValue()),
+                        ((Number) perSecond).doubleValue()));
+            }
+        }
+        return ret;
+    }
+
+    private static String getString(Document document, String key, String def) {
+        Object value = document.get(key);
+        return value instanceof String ? (String) value : def;
+    }
+
+    private static List<String> getStringList(Document document, String key) {
+        List<String> ret = new ArrayList<>();
+        Object value = document.get(key);
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element instanceof String) {
+                    ret.add((String) element);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static int getInt(Document document, String key, int def) {
+        Object value = document.get(key);
+        return value instanceof Number ? (int) Math.round(((Number) value).doubleValue()) : def;
+    }
+
+    private static boolean getBoolean(Document document, String key, boolean def) {
+        Object value = document.get(key);
+        return value instanceof Boolean ? (Boolean) value : def;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * A token bucket: up to {@code burst} tries at once, refilled at {@code perSecond} tries a second.
+     */
+    public static class RateLimit {
+
+        public final int burst;
+        public final double perSecond;
+
+        public RateLimit(int burst, double perSecond) {
+            this.burst = burst;
+            this.perSecond = perSecond;
+        }
+
+    }
+
+}
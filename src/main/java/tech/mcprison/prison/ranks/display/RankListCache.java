@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.display;
+
+import tech.mcprison.prison.chat.FancyMessage;
+import tech.mcprison.prison.output.BulletedListComponent;
+import tech.mcprison.prison.output.FancyMessageComponent;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rendered pages of the rank lists shown by {@code /ranks list} and {@code /ranks ladder listranks}, so that
+ * players paging through a long ladder don't have every line built again on each command. A ladder's pages
+ * are all rendered the first time one is asked for, and thrown away whenever a rank or ladder is created,
+ * removed, saved or reloaded.
+ */
+public class RankListCache {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final int PAGE_SIZE = 15;
+
+    private final Map<String, Page[]> pages = new ConcurrentHashMap<>();
+
+    // The "you may also try" lines of /ranks list, by the commands in them. These differ with permissions.
+    private final Map<String, FancyMessageComponent> footers = new ConcurrentHashMap<>();
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Returns a page of a ladder's rank list, rendering the ladder's pages if they aren't already.
+     *
+     * @param ladder The ladder.
+     * @param view   Which list the page is for.
+     * @param number The page number, beginning at 1. Numbers past the end give the last page.
+     * @return The page.
+     */
+    public Page getPage(RankLadder ladder, View view, int number) {
+        String key = view.name() + ':' + ladder.id;
+        Page[] rendered = pages.get(key);
+        int index = Math.max(0, number - 1);
+        if (rendered != null) {
+            index = Math.min(index, rendered.length - 1);
+        }
+
+        // Ranks' public fields may have been changed without anything being saved, so check what was shown.
+        if (rendered == null || !rendered[index].isCurrent()) {
+            rendered = render(ladder, view);
+            pages.put(key, rendered);
+            index = Math.min(index, rendered.length - 1);
+        }
+        return rendered[index];
+    }
+
+    /**
+     * Returns the line suggesting other rank lists, as shown at the bottom of {@code /ranks list}.
+     *
+     * @param commands The commands to suggest, which depend on the sender's permissions.
+     * @return The line, or null if there are no commands.
+     */
+    public FancyMessageComponent getFooter(List<String> commands) {
+        if (commands.isEmpty()) {
+            return null;
+        }
+        return footers.computeIfAbsent(String.join("\n", commands), key -> {
+            FancyMessage msg = new FancyMessage("&8You may also try ");
+            int i = 0;
+            for (String other : commands) {
+                i++;
+                if (i == commands.size() && commands.size() > 1) {
+                    msg.then(" &8and ");
+                }
+                msg.then("&7" + other).tooltip("&7Click to view.").command(other);
+                msg.then(i == commands.size() ? "&8." : "&8,");
+            }
+            return new FancyMessageComponent(msg);
+        });
+    }
+
+    /**
+     * Forgets every rendered page. This is called whenever ranks or ladders change.
+     */
+    public void invalidate() {
+        pages.clear();
+        footers.clear();
+    }
+
+    private Page[] render(RankLadder ladder, View view) {
+        // One pass over the ranks, rather than a search through them for every line.
+        Map<Integer, Rank> ranksById = new HashMap<>();
+        for (Rank rank : PrisonRanks.getInstance().getRankManager().getRanks()) {
+            ranksById.put(rank.id, rank);
+        }
+
+        List<RankLadder.PositionRank> positions = new ArrayList<>(ladder.ranks);
+        positions.sort(Comparator.comparingInt(RankLadder.PositionRank::getPosition));
+        List<RankLadder.PositionRank> shown = new ArrayList<>(positions.size());
+        for (RankLadder.PositionRank position : positions) {
+            if (ranksById.containsKey(position.getRankId())) {
+                shown.add(position);
+            }
+        }
+
+        int count = Math.max(1, (shown.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        Page[] ret = new Page[count];
+        for (int i = 0; i < count; i++) {
+            List<RankLadder.PositionRank> slice =
+                shown.subList(i * PAGE_SIZE, Math.min(shown.size(), (i + 1) * PAGE_SIZE));
+            Rank[] ranks = new Rank[slice.size()];
+            int[] rankPositions = new int[slice.size()];
+            for (int j = 0; j < ranks.length; j++) {
+                ranks[j] = ranksById.get(slice.get(j).getRankId());
+                rankPositions[j] = slice.get(j).getPosition();
+            }
+            ret[i] = new Page(ladder.name, view, i + 1, count, ranks, rankPositions);
+        }
+        return ret;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * The lists which are cached.
+     */
+    public enum View {
+
+        /**
+         * {@code /ranks list}: each rank's tag and cost, which can be clicked for its info.
+         */
+        RANKS("/ranks list "),
+
+        /**
+         * {@code /ranks ladder listranks}: each rank's position and name.
+         */
+        LADDER("/ranks ladder listranks ");
+
+        private final String command;
+
+        View(String command) {
+            this.command = command;
+        }
+
+    }
+
+    /**
+     * One rendered page of a rank list. Its components can be sent any number of times.
+     */
+    public static class Page {
+
+        private final View view;
+        private final int number;
+        private final int count;
+        private final Rank[] ranks;
+        private final int[] positions;
+        private final String[] sources;
+        private final FancyMessage[] lines;
+        private final BulletedListComponent list;
+        private final FancyMessageComponent navigation;
+
+        private Page(String ladderName, View view, int number, int count, Rank[] ranks,
+            int[] positions) {
+            this.view = view;
+            this.number = number;
+            this.count = count;
+            this.ranks = ranks;
+            this.positions = positions;
+            this.sources = new String[ranks.length];
+            this.lines = new FancyMessage[ranks.length];
+
+            BulletedListComponent.BulletedListBuilder builder =
+                new BulletedListComponent.BulletedListBuilder();
+            for (int i = 0; i < ranks.length; i++) {
+                sources[i] = source(i);
+                lines[i] = line(i, sources[i]);
+                builder.add(lines[i]);
+            }
+            this.list = builder.build();
+            this.navigation = count > 1 ? navigation(ladderName) : null;
+        }
+
+        private String source(int i) {
+            return view == View.RANKS ? ranks[i].getListLine() : ranks[i].name;
+        }
+
+        private FancyMessage line(int i, String text) {
+            if (view == View.RANKS) {
+                return new FancyMessage(text).command("/ranks info " + ranks[i].name)
+                    .tooltip("&7Click to view info.");
+            }
+            return new FancyMessage(String.format("&3#%d &8- &3%s", positions[i], text));
+        }
+
+        private FancyMessageComponent navigation(String ladderName) {
+            FancyMessage msg = new FancyMessage(String.format("&8Page %d of %d ", number, count));
+            if (number > 1) {
+                msg.then("&7[&a<&7]").tooltip("&7Previous page.")
+                    .command(view.command + ladderName + " " + (number - 1));
+            }
+            if (number < count) {
+                msg.then(" &7[&a>&7]").tooltip("&7Next page.")
+                    .command(view.command + ladderName + " " + (number + 1));
+            }
+            return new FancyMessageComponent(msg);
+        }
+
+        private boolean isCurrent() {
+            for (int i = 0; i < ranks.length; i++) {
+                // The display strings are only made again when their rank changes.
+                if (source(i) != sources[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return The page's lines.
+         */
+        public BulletedListComponent getList() {
+            return list;
+        }
+
+        /**
+         * Returns the page's lines, with some text added to one rank's line.
+         *
+         * @param marked The rank to add to, or null for none.
+         * @param suffix What to add to the end of its line.
+         * @return The page's lines. This is the cached list if the rank isn't on this page.
+         */
+        public BulletedListComponent getList(Rank marked, String suffix) {
+            int markedIndex = -1;
+            for (int i = 0; i < ranks.length; i++) {
+                if (ranks[i] == marked) {
+                    markedIndex = i;
+                    break;
+                }
+            }
+            if (markedIndex == -1) {
+                return list;
+            }
+
+            BulletedListComponent.BulletedListBuilder builder =
+                new BulletedListComponent.BulletedListBuilder();
+            for (int i = 0; i < lines.length; i++) {
+                builder.add(i == markedIndex ? line(i, sources[i] + suffix) : lines[i]);
+            }
+            return builder.build();
+        }
+
+        /**
+         * @return Links to the previous and next pages, or null if there's only one page.
+         */
+        public FancyMessageComponent getNavigation() {
+            return navigation;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+    }
+
+}
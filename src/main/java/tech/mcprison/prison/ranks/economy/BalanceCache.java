@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.economy;
+
+import tech.mcprison.prison.integration.EconomyIntegration;
+import tech.mcprison.prison.internal.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers players' balances for a few seconds, for showing whether they can afford something. Economy
+ * plugins are often backed by a slow database, and displays like rank lists ask far more often than anyone
+ * actually buys.
+ * <p>
+ * This is for display only. Rank-ups still ask the economy plugin at the moment of purchase, and invalidate the
+ * player's balance here once they've paid.
+ */
+public class BalanceCache {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private final EconomyIntegration economy;
+    private final long ttlNanos;
+    private final Map<UUID, Entry> balances = new ConcurrentHashMap<>();
+    private volatile long lastSweep = System.nanoTime();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param economy    The economy to ask for balances.
+     * @param ttlSeconds How long a balance is remembered for. Zero asks the economy every time.
+     */
+    public BalanceCache(EconomyIntegration economy, int ttlSeconds) {
+        this.economy = economy;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @param player The online player.
+     * @return The player's balance, as of at most the cache's lifetime ago.
+     */
+    public double getBalance(Player player) {
+        long now = System.nanoTime();
+        if (now - lastSweep > SWEEP_INTERVAL) {
+            lastSweep = now;
+            balances.values().removeIf(entry -> now - entry.fetched > ttlNanos);
+        }
+
+        Entry entry = balances.get(player.getUUID());
+        if (entry != null && now - entry.fetched <= ttlNanos) {
+            hits.incrementAndGet();
+            return entry.balance;
+        }
+
+        misses.incrementAndGet();
+        double balance = economy.getBalance(player);
+        if (ttlNanos > 0) {
+            balances.put(player.getUUID(), new Entry(balance, now));
+        }
+        return balance;
+    }
+
+    /**
+     * Whether the player looks able to afford an amount, for display. Don't use this to decide a purchase.
+     *
+     * @param player The online player.
+     * @param amount The amount to check.
+     * @return true if the player's remembered balance covers the amount.
+     */
+    public boolean canAfford(Player player, double amount) {
+        return getBalance(player) >= amount;
+    }
+
+    /**
+     * Forgets a player's balance, so the next check asks the economy again. Call this when their balance is
+     * known to have changed.
+     *
+     * @param uid The player's UUID.
+     */
+    public void invalidate(UUID uid) {
+        balances.remove(uid);
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The fraction of lookups answered from the cache, between 0 and 1.
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    private static class Entry {
+
+        final double balance;
+        final long fetched;
+
+        Entry(double balance, long fetched) {
+            this.balance = balance;
+            this.fetched = fetched;
+        }
+
+    }
+
+}
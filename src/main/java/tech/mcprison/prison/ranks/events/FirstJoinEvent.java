@@ -21,7 +21,8 @@ import tech.mcprison.prison.ranks.data.RankPlayer;
 
 /**
  * An event that fires when a player joins the server for the first time.
- * In reality, this is posted when a player's files are created in the {@link tech.mcprison.prison.ranks.managers.PlayerManager}.
+ * In reality, this is posted when a player's record is created in the {@link tech.mcprison.prison.ranks.managers.PlayerManager}.
+ * The record hasn't been saved yet at this point; any changes listeners make are written along with it.
  *
  * @author Faizaan A. Datoo
  */
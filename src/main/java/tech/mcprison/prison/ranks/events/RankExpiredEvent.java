@@ -0,0 +1,71 @@
+package tech.mcprison.prison.ranks.events;
+
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+/**
+ * An event that fires when a player's temporary rank runs out.
+ */
+public class RankExpiredEvent {
+
+    /*
+     * Fields & Constants
+     */
+
+    private RankPlayer player;
+    private RankLadder ladder;
+    private Rank expiredRank;
+    private Rank newRank;
+
+    /*
+     * Constructor
+     */
+
+    public RankExpiredEvent(RankPlayer player, RankLadder ladder, Rank expiredRank, Rank newRank) {
+        this.player = player;
+        this.ladder = ladder;
+        this.expiredRank = expiredRank;
+        this.newRank = newRank;
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public RankPlayer getPlayer() {
+        return player;
+    }
+
+    public void setPlayer(RankPlayer player) {
+        this.player = player;
+    }
+
+    public RankLadder getLadder() {
+        return ladder;
+    }
+
+    public void setLadder(RankLadder ladder) {
+        this.ladder = ladder;
+    }
+
+    public Rank getExpiredRank() {
+        return expiredRank;
+    }
+
+    public void setExpiredRank(Rank expiredRank) {
+        this.expiredRank = expiredRank;
+    }
+
+    /**
+     * @return The rank the player went back to, or null if they were taken off the ladder.
+     */
+    public Rank getNewRank() {
+        return newRank;
+    }
+
+    public void setNewRank(Rank newRank) {
+        this.newRank = newRank;
+    }
+
+}
@@ -1,6 +1,7 @@
 package tech.mcprison.prison.ranks.events;
 
 import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
 
 /**
@@ -15,6 +16,7 @@ public class RankUpEvent {
      */
 
     private RankPlayer player;
+    private RankLadder ladder;
     private Rank oldRank;
     private Rank newRank;
     private double cost;
@@ -24,7 +26,13 @@ public class RankUpEvent {
      */
 
     public RankUpEvent(RankPlayer player, Rank oldRank, Rank newRank, double cost) {
+        this(player, null, oldRank, newRank, cost);
+    }
+
+    public RankUpEvent(RankPlayer player, RankLadder ladder, Rank oldRank, Rank newRank,
+        double cost) {
         this.player = player;
+        this.ladder = ladder;
         this.oldRank = oldRank;
         this.newRank = newRank;
         this.cost = cost;
@@ -42,6 +50,17 @@ public class RankUpEvent {
         this.player = player;
     }
 
+    /**
+     * @return The ladder the player ranked up on. This may be null if the event was posted by another plugin.
+     */
+    public RankLadder getLadder() {
+        return ladder;
+    }
+
+    public void setLadder(RankLadder ladder) {
+        this.ladder = ladder;
+    }
+
     public Rank getOldRank() {
         return oldRank;
     }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.expiry;
+
+import tech.mcprison.prison.Prison;
+import tech.mcprison.prison.PrisonAPI;
+import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankExpiry;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.events.RankExpiredEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Takes temporary ranks away again once they run out.
+ * <p>
+ * The expiries themselves are saved with each {@link RankPlayer}, so they survive restarts. This service only
+ * keeps a {@link TimingWheel} of them, rebuilt from the players on start and whenever players are reloaded,
+ * and checks it once a second on the server thread. When a rank is extended or replaced, the old wheel entry
+ * is simply left behind; it's recognised as stale when it comes out, because the player's expiry no longer
+ * has the same rank and time.
+ */
+public class RankExpiryService {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long TICK_INTERVAL = 20; // In server ticks
+
+    private final TimingWheel<Pending> wheel;
+    private int taskId = -1;
+
+    /*
+     * Constructor
+     */
+
+    public RankExpiryService() {
+        this.wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Schedules the expiries of every loaded player, and starts checking the wheel.
+     */
+    public void start() {
+        reschedule();
+        taskId = PrisonAPI.getScheduler().runTaskTimer(this::tick, TICK_INTERVAL, TICK_INTERVAL);
+    }
+
+    /**
+     * Empties the wheel and schedules the expiries of every loaded player again. This must be called on the
+     * server thread whenever the loaded players are replaced.
+     */
+    public void reschedule() {
+        wheel.clear();
+        for (RankPlayer player : PrisonRanks.getInstance().getPlayerManager().getPlayers()) {
+            for (Map.Entry<String, RankExpiry> entry : player.expiries.entrySet()) {
+                wheel.schedule(new Pending(player.uid, entry.getKey(), entry.getValue()),
+                    entry.getValue().expiresAt);
+            }
+        }
+    }
+
+    public void stop() {
+        if (taskId != -1) {
+            PrisonAPI.getScheduler().cancelTask(taskId);
+            taskId = -1;
+        }
+    }
+
+    /**
+     * Gives a player a rank for a while. If the player already has this rank temporarily, it's extended
+     * instead; otherwise, the player goes back to the rank they had before once it runs out.
+     *
+     * @param player   The {@link RankPlayer} to give the rank to.
+     * @param ladder   The {@link RankLadder} the rank is on.
+     * @param rank     The {@link Rank} to give.
+     * @param duration How long the rank should last, in milliseconds.
+     * @param actor    The name of whoever gave the rank, for the audit log.
+     * @return When the rank runs out, in milliseconds since the epoch.
+     * @throws IOException If the player could not be saved.
+     */
+    public long setTemporaryRank(RankPlayer player, RankLadder ladder, Rank rank, long duration,
+        String actor) throws IOException {
+        RankExpiry current = player.expiries.get(ladder.name);
+        long expiresAt;
+        if (current != null && current.rankId == rank.id) {
+            expiresAt = current.expiresAt + duration;
+        } else {
+            expiresAt = System.currentTimeMillis() + duration;
+        }
+
+        String oldRank = player.getRank(ladder).map(found -> found.name).orElse(null);
+        RankExpiry expiry = player.addTemporaryRank(ladder, rank, expiresAt);
+        PrisonRanks.getInstance().getPlayerManager().savePlayer(player);
+        PrisonRanks.getInstance().audit(
+            new AuditEntry(actor, player.uid, ladder.name, oldRank, rank.name, 0,
+                "temporary rank"));
+        wheel.schedule(new Pending(player.uid, ladder.name, expiry), expiresAt);
+        return expiresAt;
+    }
+
+    private void tick() {
+        List<Pending> expired = wheel.advance(System.currentTimeMillis());
+        for (Pending pending : expired) {
+            try {
+                expire(pending);
+            } catch (RuntimeException e) {
+                Output.get().logError("Could not take away an expired temporary rank.", e);
+            }
+        }
+    }
+
+    private void expire(Pending pending) {
+        RankPlayer player =
+            PrisonRanks.getInstance().getPlayerManager().getPlayer(pending.uid).orElse(null);
+        RankExpiry current = player == null ? null : player.expiries.get(pending.ladder);
+        if (current == null || current.rankId != pending.rankId
+            || current.expiresAt != pending.expiresAt) {
+            return; // Extended, replaced or removed since this was scheduled
+        }
+        player.expiries.remove(pending.ladder);
+
+        RankLadder ladder =
+            PrisonRanks.getInstance().getLadderManager().getLadder(pending.ladder).orElse(null);
+        Integer currentRankId = player.ranks.get(pending.ladder);
+        if (ladder == null || currentRankId == null || currentRankId != current.rankId) {
+            save(player); // The rank is gone already; only the expiry was left.
+            return;
+        }
+
+        Rank expiredRank =
+            PrisonRanks.getInstance().getRankManager().getRank(currentRankId).orElse(null);
+        Rank newRank = null;
+        Integer previousRankId = current.previousRankId;
+        if (previousRankId != null && ladder.containsRank(previousRankId)) {
+            newRank = PrisonRanks.getInstance().getRankManager().getRank(previousRankId).orElse(null);
+        }
+        if (newRank == null && ladder.name.equals("default")) {
+            // Everyone has a rank on the default ladder, so fall back to the one new players get.
+            newRank = PrisonRanks.getInstance().getPlayerManager().getStartingRank().orElse(null);
+        }
+
+        if (newRank != null) {
+            player.addRank(ladder, newRank);
+        } else {
+            player.ranks.remove(ladder.name);
+        }
+        save(player);
+        PrisonRanks.getInstance().audit(
+            new AuditEntry("server", player.uid, ladder.name,
+                expiredRank == null ? null : expiredRank.name, newRank == null ? null : newRank.name, 0,
+                "temporary rank expired"));
+
+        Prison.get().getEventBus().post(new RankExpiredEvent(player, ladder, expiredRank, newRank));
+        String message = newRank == null ?
+            String.format("Your temporary rank on the ladder &b%s &7has run out.", ladder.name) :
+            String.format("Your temporary rank has run out. You are now rank &b%s&7.", newRank.name);
+        PrisonAPI.getPlayer(player.uid).ifPresent(online -> Output.get().sendInfo(online, message));
+    }
+
+    private void save(RankPlayer player) {
+        try {
+            PrisonRanks.getInstance().getPlayerManager().savePlayer(player);
+        } catch (IOException e) {
+            Output.get().logError("An error occurred while saving player files.", e);
+        }
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @return The number of expiries waiting in the wheel, including any which have since been
+     * extended or replaced.
+     */
+    public int getPending() {
+        return wheel.size();
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * An expiry as it was scheduled. It's matched against the player's expiry by value, since the player's
+     * objects are replaced when players are reloaded.
+     */
+    private static class Pending {
+
+        final UUID uid;
+        final String ladder;
+        final int rankId;
+        final long expiresAt;
+
+        Pending(UUID uid, String ladder, RankExpiry expiry) {
+            this.uid = uid;
+            this.ladder = ladder;
+            this.rankId = expiry.rankId;
+            this.expiresAt = expiry.expiresAt;
+        }
+
+    }
+
+}
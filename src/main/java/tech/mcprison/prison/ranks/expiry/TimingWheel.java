@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.expiry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel, for keeping track of a large number of deadlines which mostly lie far ahead.
+ * Scheduling is constant time, and advancing the wheel only touches the entries which are due, or which
+ * move down a level because their deadline has come closer. Nothing is sorted and nothing is scanned.
+ * <p>
+ * Time is split into ticks. The wheel has {@value #LEVELS} levels of {@value #SLOTS} slots, and each level
+ * covers {@value #SLOTS} times the span of the one below it, so with one-second ticks the wheel reaches
+ * just over 34 years ahead. Deadlines beyond that are kept aside until the top level comes round.
+ * <p>
+ * Entries can't be cancelled. Owners are expected to check that an entry still applies when it comes out
+ * of the wheel, and to ignore it otherwise. This class isn't thread safe.
+ *
+ * @param <T> The type of value scheduled.
+ */
+public class TimingWheel<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 5;
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final long tickMillis;
+    // Level by level, slot by slot.
+    private final List<List<Entry<T>>> slots;
+    private List<Entry<T>> overflow = new ArrayList<>();
+    // Entries scheduled at or before the current tick, handed out on the next advance.
+    private List<Entry<T>> due = new ArrayList<>();
+
+    private long currentTick;
+    private int size;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param tickMillis The length of one tick. Deadlines are rounded up to a whole tick.
+     * @param nowMillis  The current time, which the wheel starts at.
+     */
+    public TimingWheel(long tickMillis, long nowMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("The tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+        this.slots = new ArrayList<>(LEVELS * SLOTS);
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Schedules a value to come out of the wheel once the given time has passed.
+     *
+     * @param value          The value to schedule.
+     * @param deadlineMillis When the value is due, in milliseconds since the epoch.
+     */
+    public void schedule(T value, long deadlineMillis) {
+        // Round up, so a value never comes out before its deadline.
+        long deadline = Math.floorDiv(deadlineMillis, tickMillis);
+        if (deadline * tickMillis < deadlineMillis) {
+            deadline++;
+        }
+
+        Entry<T> entry = new Entry<>(value, deadline);
+        if (deadline <= currentTick) {
+            due.add(entry);
+            return;
+        }
+        place(entry);
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward to the given time.
+     *
+     * @param nowMillis The current time, in milliseconds since the epoch.
+     * @return Every value whose deadline has now passed, in the order they fell due.
+     */
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        if (!due.isEmpty()) {
+            List<Entry<T>> ready = due;
+            due = new ArrayList<>();
+            for (Entry<T> entry : ready) {
+                expired.add(entry.value);
+            }
+        }
+
+        long target = Math.floorDiv(nowMillis, tickMillis);
+        while (currentTick < target) {
+            if (size == 0) {
+                currentTick = target; // Nothing to move or fire; skip straight there.
+                break;
+            }
+            currentTick++;
+
+            if ((currentTick & (SPAN - 1)) == 0 && !overflow.isEmpty()) {
+                List<Entry<T>> waiting = overflow;
+                overflow = new ArrayList<>();
+                waiting.forEach(this::place);
+            }
+
+            // Bring entries down from the levels above, largest first, so they can keep falling
+            // through the lower levels within the same tick.
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = SLOT_BITS * level;
+                if ((currentTick & ((1L << shift) - 1)) == 0) {
+                    List<Entry<T>> cascading = take(level, (int) ((currentTick >> shift) & SLOT_MASK));
+                    cascading.forEach(this::place);
+                }
+            }
+
+            List<Entry<T>> firing = take(0, (int) (currentTick & SLOT_MASK));
+            for (Entry<T> entry : firing) {
+                expired.add(entry.value);
+            }
+            size -= firing.size();
+        }
+        return expired;
+    }
+
+    /**
+     * Puts an entry in the slot for its deadline, at the lowest level which still covers it.
+     */
+    private void place(Entry<T> entry) {
+        // The level is the highest group of bits in which the deadline differs from now.
+        long differing = entry.deadline ^ currentTick;
+        if (differing == 0) {
+            slots.get((int) (currentTick & SLOT_MASK)).add(entry);
+            return;
+        }
+        if (differing >= SPAN) {
+            overflow.add(entry);
+            return;
+        }
+
+        int level = (63 - Long.numberOfLeadingZeros(differing)) / SLOT_BITS;
+        int slot = (int) ((entry.deadline >> (SLOT_BITS * level)) & SLOT_MASK);
+        slots.get(level * SLOTS + slot).add(entry);
+    }
+
+    private List<Entry<T>> take(int level, int slot) {
+        int index = level * SLOTS + slot;
+        List<Entry<T>> ret = slots.get(index);
+        if (!ret.isEmpty()) {
+            slots.set(index, new ArrayList<>());
+        }
+        return ret;
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * Drops every value in the wheel. The wheel keeps its current time.
+     */
+    public void clear() {
+        for (List<Entry<T>> slot : slots) {
+            slot.clear();
+        }
+        overflow = new ArrayList<>();
+        due = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * @return The number of values waiting in the wheel, including any which no longer apply.
+     */
+    public int size() {
+        return size + due.size();
+    }
+
+    /*
+     * Member Classes
+     */
+
+    private static class Entry<T> {
+
+        final T value;
+        final long deadline; // In ticks
+
+        Entry(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.history;
+
+/**
+ * One entry in a player's rank history: the rank they were given on a ladder, and when.
+ */
+public class RankChange {
+
+    /*
+     * Fields & Constants
+     */
+
+    // When the change happened, in milliseconds since the epoch. History is kept to the second.
+    public final long time;
+
+    // The ID of the ladder the change happened on. IDs are used so that history survives renames.
+    public final int ladderId;
+
+    // The ID of the rank the player was given, or null if they were taken off the ladder.
+    public final Integer rankId;
+
+    /*
+     * Constructor
+     */
+
+    public RankChange(long time, int ladderId, Integer rankId) {
+        this.time = time;
+        this.ladderId = ladderId;
+        this.rankId = rankId;
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.history;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import tech.mcprison.prison.output.Output;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps a history of every player's rank changes, in one small binary file per player.
+ * <p>
+ * Each file starts with a magic number, followed by one record per change: the seconds since the previous
+ * record, the ladder ID and the rank ID plus one (zero meaning the player left the ladder), each as a
+ * variable-length integer. Most records take four to six bytes. Only the last {@code limit} changes are kept;
+ * once a file holds twice that many, it's rewritten without the oldest.
+ * <p>
+ * Nothing is held in memory besides a small cache of where each recently changed file ends. All file access
+ * happens on one background thread, so reads always see the writes queued before them.
+ */
+public class RankHistory {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final int MAGIC = 0x50524831; // PRH1
+    private static final int MAX_CACHED_TAILS = 4096;
+
+    private final File folder;
+    private final int limit;
+    private final ExecutorService executor;
+
+    // The last record time and record count of recently written files. Only used on the history thread.
+    private final Map<UUID, Tail> tails = new LinkedHashMap<UUID, Tail>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<UUID, Tail> eldest) {
+            return size() > MAX_CACHED_TAILS;
+        }
+    };
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param folder The folder to keep the history files in. It's created if it doesn't exist.
+     * @param limit  How many changes to keep for each player.
+     */
+    public RankHistory(File folder, int limit) {
+        this.folder = folder;
+        this.limit = limit;
+        this.executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-history").setDaemon(true)
+                .build());
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Adds a change to a player's history in the background.
+     *
+     * @param uid    The player's UUID.
+     * @param change The change to add.
+     */
+    public void record(UUID uid, RankChange change) {
+        executor.execute(() -> {
+            try {
+                append(uid, change);
+            } catch (IOException e) {
+                Output.get().logError("Could not write the rank history of " + uid + ".", e);
+            }
+        });
+    }
+
+    /**
+     * Reads a player's history in the background.
+     *
+     * @param uid The player's UUID.
+     * @return The player's changes, oldest first, completed on the history thread.
+     */
+    public CompletableFuture<List<RankChange>> read(UUID uid) {
+        CompletableFuture<List<RankChange>> ret = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                ret.complete(readAll(getFile(uid)));
+            } catch (IOException | RuntimeException e) {
+                ret.completeExceptionally(e);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Writes out any queued changes and stops the history thread.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Output.get().logWarn("Gave up waiting for the rank history to be written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void append(UUID uid, RankChange change) throws IOException {
+        File file = getFile(uid);
+        Tail tail = tails.get(uid);
+        if (tail == null) {
+            tail = scan(file);
+            tails.put(uid, tail);
+        }
+
+        // Clocks can step backwards; keep the history in order regardless.
+        long seconds = Math.max(TimeUnit.MILLISECONDS.toSeconds(change.time), tail.lastSeconds);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(16);
+        if (tail.count == 0 && file.length() == 0) {
+            file.getParentFile().mkdirs();
+            writeInt(record, MAGIC);
+        }
+        writeRecord(record, seconds - tail.lastSeconds, change);
+
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            record.writeTo(out);
+        }
+        tail.lastSeconds = seconds;
+        tail.count++;
+
+        if (tail.count >= limit * 2) {
+            trim(file, tail);
+        }
+    }
+
+    /**
+     * Rewrites a file with only its last {@code limit} changes.
+     */
+    private void trim(File file, Tail tail) throws IOException {
+        List<RankChange> changes = readAll(file);
+        List<RankChange> kept = changes.subList(Math.max(0, changes.size() - limit), changes.size());
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        long lastSeconds = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+            writeInt(out, MAGIC);
+            for (RankChange change : kept) {
+                long seconds = TimeUnit.MILLISECONDS.toSeconds(change.time);
+                writeRecord(out, seconds - lastSeconds, change);
+                lastSeconds = seconds;
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+
+        tail.lastSeconds = lastSeconds;
+        tail.count = kept.size();
+    }
+
+    private List<RankChange> readAll(File file) throws IOException {
+        List<RankChange> ret = new ArrayList<>();
+        read(file, ret::add);
+        return ret;
+    }
+
+    private Tail scan(File file) throws IOException {
+        Tail tail = new Tail();
+        long end = read(file, change -> {
+            tail.lastSeconds = TimeUnit.MILLISECONDS.toSeconds(change.time);
+            tail.count++;
+        });
+
+        // Drop a record or header cut short by a crash, or the next append would be read along with it.
+        if (file.length() > end) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(end);
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Streams the records of a file to a consumer. A record cut short at the end of the file, as a crash
+     * mid-write would leave, is ignored.
+     *
+     * @return Where the last whole record ends, or 0 if the file has no header.
+     */
+    private long read(File file, Consumer<RankChange> consumer) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        try (CountingInputStream counting = new CountingInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+            DataInputStream in = new DataInputStream(counting)) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a rank history file: " + file.getName());
+            }
+
+            long seconds = 0;
+            while (true) {
+                long end = counting.getCount();
+                long delta;
+                int ladderId;
+                long rank;
+                try {
+                    delta = readVarLong(in);
+                    ladderId = (int) readVarLong(in);
+                    rank = readVarLong(in);
+                } catch (EOFException e) {
+                    return end;
+                }
+                seconds += delta;
+                consumer.accept(new RankChange(TimeUnit.SECONDS.toMillis(seconds), ladderId,
+                    rank == 0 ? null : (int) (rank - 1)));
+            }
+        } catch (EOFException e) {
+            return 0; // Shorter than its header
+        }
+    }
+
+    private File getFile(UUID uid) {
+        String name = uid.toString();
+        // Spread over 256 folders, so no single folder holds every player.
+        return new File(new File(folder, name.substring(0, 2)), name + ".hist");
+    }
+
+    private static void writeRecord(OutputStream out, long delta, RankChange change)
+        throws IOException {
+        writeVarLong(out, delta);
+        writeVarLong(out, change.ladderId);
+        writeVarLong(out, change.rankId == null ? 0 : change.rankId + 1L);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    private static class Tail {
+
+        long lastSeconds;
+        int count;
+
+    }
+
+}
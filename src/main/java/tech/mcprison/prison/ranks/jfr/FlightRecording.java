@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.jfr;
+
+/**
+ * Emits Java Flight Recorder events for rank-ups, storage reads and writes, and startup phases.
+ * <p>
+ * Each operation calls a {@code begin} method, which hands back a token, and later passes that token on to be
+ * committed. The token is null whenever the event isn't being recorded (or the JVM has no flight recorder),
+ * and every method here does nothing with a null token, so the cost with recording off is a single check.
+ * For events with a threshold, call {@link #shouldCommit(Object)} before working out any expensive fields.
+ */
+public class FlightRecording {
+
+    /*
+     * Fields & Constants
+     */
+
+    // Null if this JVM doesn't have the jdk.jfr API.
+    private static final JfrRecorder RECORDER = createRecorder();
+
+    /*
+     * Constructor
+     */
+
+    private FlightRecording() {
+    }
+
+    /*
+     * Methods
+     */
+
+    private static JfrRecorder createRecorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return new JfrRecorder();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public static Object beginRankUp() {
+        return RECORDER == null ? null : RECORDER.beginRankUp();
+    }
+
+    public static Object beginLoad() {
+        return RECORDER == null ? null : RECORDER.beginLoad();
+    }
+
+    public static Object beginSave() {
+        return RECORDER == null ? null : RECORDER.beginSave();
+    }
+
+    public static Object beginPhase() {
+        return RECORDER == null ? null : RECORDER.beginPhase();
+    }
+
+    /**
+     * Ends the timing of an event, and checks whether it passed its threshold.
+     *
+     * @param token The token from the matching {@code begin} call.
+     * @return true if the event should be committed, false if it can be dropped.
+     */
+    public static boolean shouldCommit(Object token) {
+        return token != null && RECORDER.end(token);
+    }
+
+    public static void commitRankUp(Object token, String player, String ladder, String result,
+        double cost) {
+        if (shouldCommit(token)) {
+            RECORDER.commitRankUp(token, player, ladder, result, cost);
+        }
+    }
+
+    /**
+     * Commits a storage event. Unlike the other commit methods, this expects {@link #shouldCommit(Object)}
+     * to have been checked already, so the byte count is only worked out when it's needed.
+     */
+    public static void commitStorage(Object token, String collection, String key, int count,
+        long bytes) {
+        if (token != null) {
+            RECORDER.commitStorage(token, collection, key, count, bytes);
+        }
+    }
+
+    public static void commitPhase(Object token, String phase) {
+        if (shouldCommit(token)) {
+            RECORDER.commitPhase(token, phase);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+/**
+ * Creates and commits the module's flight recorder events. This is the only class that
+ * {@link FlightRecording} touches directly, so it's only loaded when the JVM has the flight recorder.
+ */
+class JfrRecorder {
+
+    /*
+     * Fields & Constants
+     */
+
+    // Checked before an event is created, so nothing is allocated while its type isn't being recorded.
+    private final EventType rankUpType = EventType.getEventType(RankUpJfrEvent.class);
+    private final EventType loadType = EventType.getEventType(StorageLoadJfrEvent.class);
+    private final EventType saveType = EventType.getEventType(StorageSaveJfrEvent.class);
+    private final EventType phaseType = EventType.getEventType(StartupPhaseJfrEvent.class);
+
+    /*
+     * Methods
+     */
+
+    Object beginRankUp() {
+        return rankUpType.isEnabled() ? begin(new RankUpJfrEvent()) : null;
+    }
+
+    Object beginLoad() {
+        return loadType.isEnabled() ? begin(new StorageLoadJfrEvent()) : null;
+    }
+
+    Object beginSave() {
+        return saveType.isEnabled() ? begin(new StorageSaveJfrEvent()) : null;
+    }
+
+    Object beginPhase() {
+        return phaseType.isEnabled() ? begin(new StartupPhaseJfrEvent()) : null;
+    }
+
+    private static Object begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    boolean end(Object token) {
+        Event event = (Event) token;
+        event.end();
+        return event.shouldCommit();
+    }
+
+    void commitRankUp(Object token, String player, String ladder, String result, double cost) {
+        RankUpJfrEvent event = (RankUpJfrEvent) token;
+        event.player = player;
+        event.ladder = ladder;
+        event.result = result;
+        event.cost = cost;
+        event.commit();
+    }
+
+    void commitStorage(Object token, String collection, String key, int count, long bytes) {
+        if (token instanceof StorageLoadJfrEvent) {
+            StorageLoadJfrEvent event = (StorageLoadJfrEvent) token;
+            event.collection = collection;
+            event.key = key;
+            event.count = count;
+            event.bytes = bytes;
+            event.commit();
+        } else {
+            StorageSaveJfrEvent event = (StorageSaveJfrEvent) token;
+            event.collection = collection;
+            event.key = key;
+            event.count = count;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    void commitPhase(Object token, String phase) {
+        StartupPhaseJfrEvent event = (StartupPhaseJfrEvent) token;
+        event.phase = phase;
+        event.commit();
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded for every rank-up attempt made through {@link tech.mcprison.prison.ranks.RankUtil}.
+ */
+@Name("tech.mcprison.prison.ranks.RankUp") @Label("Rank-up Attempt") @Category({"Prison", "Ranks"})
+@Description("A player tried to rank up.") @Threshold("0 ms") @StackTrace(false)
+class RankUpJfrEvent extends Event {
+
+    @Label("Player") String player;
+
+    @Label("Ladder") String ladder;
+
+    @Label("Result") String result;
+
+    @Label("Cost") double cost;
+
+}
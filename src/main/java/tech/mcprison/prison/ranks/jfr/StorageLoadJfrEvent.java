@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded when reading ranks data from storage takes longer than the threshold. The stack trace shows what asked for it.
+ */
+@Name("tech.mcprison.prison.ranks.StorageLoad") @Label("Ranks Storage Load") @Category({"Prison", "Ranks"})
+@Description("Ranks data was read from storage.") @Threshold("10 ms") @StackTrace(true)
+class StorageLoadJfrEvent extends Event {
+
+    @Label("Collection") String collection;
+
+    @Label("Key") String key;
+
+    @Label("Objects") int count;
+
+    @Label("Bytes") @DataAmount long bytes;
+
+}
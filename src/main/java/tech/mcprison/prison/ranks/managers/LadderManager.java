@@ -17,15 +17,20 @@
 
 package tech.mcprison.prison.ranks.managers;
 
+import tech.mcprison.prison.output.Output;
 import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
 import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
-import tech.mcprison.prison.store.Collection;
-import tech.mcprison.prison.store.Document;
+import tech.mcprison.prison.ranks.storage.DataStore;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -40,8 +45,11 @@ public class LadderManager {
      * Fields & Constants
      */
 
-    private Collection collection;
+    private DataStore<RankLadder> store;
     private List<RankLadder> loadedLadders;
+    // The loaded ladders by name and by ID, for the lookups made on every rank-up and chat message.
+    private Map<String, RankLadder> laddersByName;
+    private Map<Integer, RankLadder> laddersById;
 
     /*
      * Constructor
@@ -50,9 +58,11 @@ public class LadderManager {
     /**
      * Instantiate this {@link LadderManager}.
      */
-    public LadderManager(Collection collection) {
-        this.collection = collection;
+    public LadderManager(DataStore<RankLadder> store) {
+        this.store = store;
         this.loadedLadders = new ArrayList<>();
+        this.laddersByName = new HashMap<>();
+        this.laddersById = new HashMap<>();
     }
 
     /*
@@ -67,9 +77,8 @@ public class LadderManager {
      * @throws IOException If the file could not be read or does not exist.
      */
     public void loadLadder(String fileKey) throws IOException {
-        Document doc = collection.get(fileKey).orElseThrow(IOException::new);
-        RankLadder ladder = new RankLadder(doc);
-        loadedLadders.add(ladder);
+        loadedLadders.add(store.load(fileKey).orElseThrow(IOException::new));
+        indexLadders();
     }
 
     /**
@@ -78,8 +87,121 @@ public class LadderManager {
      * @throws IOException If the folder could not be found, or if a file could not be read or does not exist.
      */
     public void loadLadders() throws IOException {
-        List<Document> documents = collection.getAll();
-        documents.forEach(document -> loadedLadders.add(new RankLadder(document)));
+        loadedLadders.addAll(store.loadAll());
+        indexLadders();
+    }
+
+    /**
+     * Reads every ladder from storage without touching the loaded ones. This may be called off the main
+     * thread.
+     *
+     * @return The stored ladders.
+     * @throws IOException If one of the ladders could not be read.
+     * @see #applyLadders(List)
+     */
+    public List<RankLadder> readStoredLadders() throws IOException {
+        return store.loadAll();
+    }
+
+    /**
+     * Brings the loaded ladders in line with a fresh set read from storage. Ladders are matched by ID, and
+     * changed ones are updated in place. Nothing is saved.
+     * <p>
+     * Players' ranks are stored by ladder name, so a ladder renamed in storage leaves its players' ranks
+     * under the old name. A warning is logged if that happens.
+     *
+     * @param stored The ladders as they are in storage.
+     * @return What was changed.
+     */
+    public ReloadChanges applyLadders(List<RankLadder> stored) {
+        ReloadChanges changes = new ReloadChanges();
+
+        Map<Integer, RankLadder> storedById = new HashMap<>();
+        for (RankLadder ladder : stored) {
+            storedById.put(ladder.id, ladder);
+        }
+
+        Iterator<RankLadder> iterator = loadedLadders.iterator();
+        while (iterator.hasNext()) {
+            RankLadder loaded = iterator.next();
+            RankLadder fresh = storedById.remove(loaded.id);
+            if (fresh == null) {
+                iterator.remove();
+                changes.removed();
+                continue;
+            }
+
+            if (!loaded.name.equals(fresh.name)) {
+                Output.get().logWarn("The ladder '" + loaded.name + "' was renamed to '" + fresh.name
+                    + "' in storage. Players' ranks on it are still stored under the old name.");
+            }
+            if (!loaded.name.equals(fresh.name) || !samePositions(loaded, fresh)) {
+                loaded.name = fresh.name;
+                loaded.ranks = new ArrayList<>(fresh.ranks.size());
+                for (RankLadder.PositionRank positionRank : fresh.ranks) {
+                    loaded.ranks.add(loaded.new PositionRank(positionRank.getPosition(),
+                        positionRank.getRankId()));
+                }
+                changes.changed();
+            }
+        }
+
+        // Whatever is left wasn't loaded before.
+        for (RankLadder ladder : stored) {
+            if (storedById.containsKey(ladder.id)) {
+                loadedLadders.add(ladder);
+                changes.added();
+            }
+        }
+        indexLadders();
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        return changes;
+    }
+
+    private void indexLadders() {
+        // Rebuilt rather than patched, since a reload may rename ladders as well as add and remove them.
+        // The first of two ladders with the same name wins, as it did when they were looked up in order.
+        Map<String, RankLadder> byName = new HashMap<>();
+        Map<Integer, RankLadder> byId = new HashMap<>();
+        for (RankLadder ladder : loadedLadders) {
+            byName.putIfAbsent(ladder.name, ladder);
+            byId.putIfAbsent(ladder.id, ladder);
+        }
+        laddersByName = byName;
+        laddersById = byId;
+    }
+
+    private boolean samePositions(RankLadder a, RankLadder b) {
+        if (a.ranks.size() != b.ranks.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.ranks.size(); i++) {
+            RankLadder.PositionRank x = a.ranks.get(i);
+            RankLadder.PositionRank y = b.ranks.get(i);
+            if (x.getPosition() != y.getPosition() || x.getRankId() != y.getRankId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads every ladder from storage and applies it to the loaded ladders.
+     *
+     * @return What was changed.
+     * @throws IOException If one of the ladders could not be read.
+     * @see #applyLadders(List)
+     */
+    public ReloadChanges reloadLadders() throws IOException {
+        return applyLadders(readStoredLadders());
+    }
+
+    /**
+     * @param ladder The {@link RankLadder}.
+     * @return The key that the ladder is stored as.
+     */
+    public String getLadderKey(RankLadder ladder) {
+        return "ladder_" + ladder.id;
     }
 
     /**
@@ -90,7 +212,8 @@ public class LadderManager {
      * @throws IOException If the ladder could not be serialized, or if the ladder could not be saved to the file.
      */
     public void saveLadder(RankLadder ladder, String fileKey) throws IOException {
-        collection.insert(fileKey, ladder.toDocument());
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        store.save(fileKey, ladder);
     }
 
     /**
@@ -100,7 +223,7 @@ public class LadderManager {
      * @throws IOException If the ladder could not be serialized, or if the ladder could not be saved to the file.
      */
     public void saveLadder(RankLadder ladder) throws IOException {
-        this.saveLadder(ladder, "ladder_" + ladder.id);
+        this.saveLadder(ladder, getLadderKey(ladder));
     }
 
     /**
@@ -110,9 +233,12 @@ public class LadderManager {
      * @throws IOException If the ladderFolder does not exist, or if one of the ladders could not be saved.
      */
     public void saveLadders() throws IOException {
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        Map<String, RankLadder> batch = new LinkedHashMap<>();
         for (RankLadder ladder : loadedLadders) {
-            saveLadder(ladder);
+            batch.put(getLadderKey(ladder), ladder);
         }
+        store.saveAll(batch);
     }
 
     /**
@@ -132,6 +258,8 @@ public class LadderManager {
 
         // ... add it to the list...
         loadedLadders.add(newLadder);
+        indexLadders();
+        PrisonRanks.getInstance().getRankListCache().invalidate();
 
         // ...and return it.
         return Optional.of(newLadder);
@@ -166,21 +294,52 @@ public class LadderManager {
      * @return true if the ladder was removed successfully, false otherwise.
      */
     public boolean removeLadder(RankLadder ladder) {
+        return removeLadder(ladder, "server");
+    }
+
+    /**
+     * Removes the provided ladder, as {@link #removeLadder(RankLadder)} does, noting who removed it in the
+     * audit log.
+     *
+     * @param ladder The {@link RankLadder} to be removed.
+     * @param actor  The name of whoever removed the ladder.
+     * @return true if the ladder was removed successfully, false otherwise.
+     */
+    public boolean removeLadder(RankLadder ladder, String actor) {
 
-        // Remove the players from the ladder
+        // Remove the players from the ladder, keeping copies to put back if this can't be saved
+        PlayerManager playerManager = PrisonRanks.getInstance().getPlayerManager();
         List<RankPlayer> playersWithLadder =
-            PrisonRanks.getInstance().getPlayerManager().getPlayers().stream()
-                .filter(rankPlayer -> rankPlayer.ranks.containsKey(ladder.name))
-                .collect(Collectors.toList());
+            playerManager.getPlayersOnLadder(ladder.name).collect(Collectors.toList());
+        List<RankPlayer> snapshots = new ArrayList<>(playersWithLadder.size());
+        List<AuditEntry> audit = new ArrayList<>();
         for (RankPlayer player : playersWithLadder) {
+            snapshots.add(player.copy());
+            String oldRank = player.getRank(ladder).map(rank -> rank.name).orElse(null);
             player.removeLadder(ladder.name);
+            audit.add(new AuditEntry(actor, player.uid, ladder.name, oldRank, null, 0,
+                "ladder deleted"));
         }
 
-        // Remove it from the list...
-        loadedLadders.remove(ladder);
+        // ... save the affected players and remove the ladder's save files, all in one go.
+        try {
+            playerManager.transaction(() -> {
+                playerManager.savePlayers(playersWithLadder);
+                store.remove(getLadderKey(ladder));
+            });
+        } catch (IOException e) {
+            Output.get().logError("Could not remove ladder " + ladder.name + ".", e);
+            for (int i = 0; i < playersWithLadder.size(); i++) {
+                playerManager.restore(playersWithLadder.get(i), snapshots.get(i));
+            }
+            return false;
+        }
+        audit.forEach(PrisonRanks.getInstance()::audit);
 
-        // ... and remove the ladder's save files.
-        collection.remove("ladder_" + ladder.id);
+        // Remove it from the list.
+        loadedLadders.remove(ladder);
+        indexLadders();
+        PrisonRanks.getInstance().getRankListCache().invalidate();
         return true;
     }
 
@@ -191,7 +350,18 @@ public class LadderManager {
      * @return An optional containing either the {@link RankLadder} if it could be found, or empty if it does not exist by the specified name.
      */
     public Optional<RankLadder> getLadder(String name) {
-        return loadedLadders.stream().filter(ladder -> ladder.name.equals(name)).findFirst();
+        return Optional.ofNullable(laddersByName.get(name));
+    }
+
+    /**
+     * Returns the ladder with the specified name, as {@link #getLadder(String)} does, but without wrapping it.
+     * This is for the rank-up and chat paths, which look ladders up often enough for the wrapper to show.
+     *
+     * @param name The ladder's name, case-sensitive.
+     * @return The {@link RankLadder}, or null if it does not exist by the specified name.
+     */
+    public RankLadder getLadderOrNull(String name) {
+        return laddersByName.get(name);
     }
 
     /**
@@ -201,7 +371,7 @@ public class LadderManager {
      * @return An optional containing either the {@link RankLadder} if it could be found, or empty if it does not exist by the specified id.
      */
     public Optional<RankLadder> getLadder(int id) {
-        return loadedLadders.stream().filter(ladder -> ladder.id == id).findFirst();
+        return Optional.ofNullable(laddersById.get(id));
     }
 
     /**
@@ -18,16 +18,35 @@
 package tech.mcprison.prison.ranks.managers;
 
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import tech.mcprison.prison.Prison;
 import tech.mcprison.prison.internal.events.player.PlayerJoinEvent;
 import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
 import tech.mcprison.prison.ranks.data.RankPlayer;
 import tech.mcprison.prison.ranks.events.FirstJoinEvent;
-import tech.mcprison.prison.store.Collection;
-import tech.mcprison.prison.store.Document;
+import tech.mcprison.prison.ranks.expiry.RankExpiryService;
+import tech.mcprison.prison.ranks.history.RankChange;
+import tech.mcprison.prison.ranks.history.RankHistory;
+import tech.mcprison.prison.ranks.metrics.RanksMetrics;
+import tech.mcprison.prison.ranks.storage.DataStore;
+import tech.mcprison.prison.ranks.storage.KnownPlayers;
+import tech.mcprison.prison.ranks.storage.PlayerKeys;
+import tech.mcprison.prison.ranks.storage.StorageBackend;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Manages all the players in the records.
@@ -40,18 +59,65 @@ public class PlayerManager {
      * Fields & Constants
      */
 
-    private Collection collection;
+    private DataStore<RankPlayer> store;
     private List<RankPlayer> players;
+    private Map<UUID, RankPlayer> playersByUid;
+
+    // New players are written off the main thread, coalesced into batches during join storms. Every player
+    // write holds writeLock, and takes it before the storage backend's own lock; anything which saves players
+    // inside a storage transaction has to come through transaction() to keep that order.
+    private ExecutorService writer;
+    private final Map<String, RankPlayer> pendingSaves = new LinkedHashMap<>();
+    private final Object writeLock = new Object();
+    private boolean flushScheduled;
+    // While an import writes players, other player writes are held back in pendingSaves instead, since they
+    // would land on top of imported players. Guarded by writeLock.
+    private boolean importing;
+
+    // The keys of the players which have a saved file, so sparse mode knows what to remove.
+    private Set<String> storedKeys;
+    // Keys queued to be pruned by the writer. Saving a player takes their key back out.
+    private final Set<String> pruning = ConcurrentHashMap.newKeySet();
+
+    // Everyone who has had a record, in sparse mode, so a pruned player isn't mistaken for a new one.
+    private KnownPlayers known;
+
+    // Ladder name -> rank ID -> the players holding that rank, for the player queries. Updated when a player
+    // is added or saved. Access is synchronized on the index.
+    private final Map<String, Map<Integer, Set<RankPlayer>>> rankIndex = new HashMap<>();
+    // The ranks each player was last indexed under, so their old entries can be found again.
+    private final Map<RankPlayer, Map<String, Integer>> indexedRanks = new HashMap<>();
+
+    // Where rank changes found while indexing are recorded, or null to not record them.
+    private RankHistory history;
+    // The changes found while the current thread runs a transaction. They're recorded once it commits, and
+    // dropped if it fails, since its changes are put back then.
+    private final ThreadLocal<List<Runnable>> uncommittedChanges = new ThreadLocal<>();
 
     /*
      * Constructor
      */
 
-    public PlayerManager(Collection collection) {
-        this.collection = collection;
+    public PlayerManager(DataStore<RankPlayer> store) {
+        this(store, true);
+    }
+
+    /**
+     * @param store  The store to load and save players with.
+     * @param listen Whether to listen for joining players. Only the module's own manager should do this.
+     */
+    public PlayerManager(DataStore<RankPlayer> store, boolean listen) {
+        this.store = store;
         this.players = new ArrayList<>();
+        this.playersByUid = new HashMap<>();
+        this.storedKeys = ConcurrentHashMap.newKeySet();
+        this.writer = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-writer").setDaemon(true)
+                .build());
 
-        Prison.get().getEventBus().register(this);
+        if (listen) {
+            Prison.get().getEventBus().register(this);
+        }
     }
 
     /*
@@ -65,8 +131,8 @@ public class PlayerManager {
      * @throws IOException If the file could not be read, or if the file does not exist.
      */
     public void loadPlayer(String playerFile) throws IOException {
-        Document document = collection.get(playerFile).orElseThrow(IOException::new);
-        players.add(new RankPlayer(document));
+        addPlayer(store.load(playerFile).orElseThrow(IOException::new));
+        storedKeys.add(playerFile);
     }
 
     /**
@@ -75,8 +141,142 @@ public class PlayerManager {
      * @throws IOException If one of the files could not be read, or if the playerFolder does not exist.
      */
     public void loadPlayers() throws IOException {
-        List<Document> players = collection.getAll();
-        players.forEach(document -> this.players.add(new RankPlayer(document)));
+        long start = System.nanoTime();
+        for (RankPlayer player : store.loadAll()) {
+            addPlayer(player);
+            storedKeys.add(getPlayerKey(player));
+            if (known != null) {
+                known.add(player.uid);
+            }
+        }
+        if (known != null) {
+            scheduleFlush();
+        }
+        PrisonRanks.getInstance().getMetrics().histogram(RanksMetrics.PLAYERS_LOAD)
+            .recordSince(start);
+    }
+
+    /**
+     * Creates a record for a new player, with no ranks, and adds it to the registry. It isn't saved.
+     *
+     * @param uid The player's UUID.
+     * @return The new {@link RankPlayer}.
+     */
+    public RankPlayer createPlayer(UUID uid) {
+        RankPlayer newPlayer = new RankPlayer();
+        newPlayer.uid = uid;
+        newPlayer.ranks = new HashMap<>();
+
+        addPlayer(newPlayer);
+        return newPlayer;
+    }
+
+    /**
+     * Rebuilds the record of a player who was pruned by sparse storage: exactly what a new player is given,
+     * without the first join listeners being run again. It isn't saved.
+     */
+    private RankPlayer createDefaultPlayer(UUID uid) {
+        RankPlayer player = new RankPlayer();
+        player.uid = uid;
+        player.ranks = new HashMap<>();
+        getStartingRank()
+            .ifPresent(rank -> player.addRank(PrisonRanks.getInstance().getDefaultLadder(), rank));
+
+        addPlayer(player);
+        return player;
+    }
+
+    private void addPlayer(RankPlayer player) {
+        players.add(player);
+        playersByUid.put(player.uid, player);
+        index(player);
+    }
+
+    /**
+     * Updates the query indexes for a player whose ranks have changed. Saving a player does this already, so
+     * this is only needed when a player is changed but not saved.
+     *
+     * @param player The {@link RankPlayer} to re-index.
+     */
+    public void index(RankPlayer player) {
+        index(player, true);
+    }
+
+    /**
+     * Puts a player back as they were before a change which couldn't be saved, and re-indexes them. Going back
+     * isn't a change of rank, so nothing is recorded in their history.
+     *
+     * @param player   The {@link RankPlayer} to put back.
+     * @param snapshot A copy of the player from before the change.
+     */
+    public void restore(RankPlayer player, RankPlayer snapshot) {
+        player.restore(snapshot);
+        index(player, false);
+    }
+
+    private void index(RankPlayer player, boolean record) {
+        synchronized (rankIndex) {
+            Map<String, Integer> previous = indexedRanks.get(player);
+            if (player.ranks.equals(previous)) {
+                return;
+            }
+            if (record && history != null && previous != null) {
+                recordChanges(player, previous);
+            }
+
+            if (previous != null) {
+                for (Map.Entry<String, Integer> entry : previous.entrySet()) {
+                    Map<Integer, Set<RankPlayer>> byRank = rankIndex.get(entry.getKey());
+                    Set<RankPlayer> holders = byRank.get(entry.getValue());
+                    holders.remove(player);
+                    if (holders.isEmpty()) {
+                        byRank.remove(entry.getValue());
+                        if (byRank.isEmpty()) {
+                            rankIndex.remove(entry.getKey());
+                        }
+                    }
+                }
+            }
+
+            for (Map.Entry<String, Integer> entry : player.ranks.entrySet()) {
+                rankIndex.computeIfAbsent(entry.getKey(), ladder -> new HashMap<>())
+                    .computeIfAbsent(entry.getValue(), rankId -> new HashSet<>()).add(player);
+            }
+            indexedRanks.put(player, new HashMap<>(player.ranks));
+        }
+    }
+
+    /**
+     * Adds every ladder on which a player's rank differs from when they were last indexed to their history.
+     * Since every change is saved, and every save indexes, this sees them all.
+     */
+    private void recordChanges(RankPlayer player, Map<String, Integer> previous) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Integer> entry : player.ranks.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                recordChange(player, entry.getKey(), entry.getValue(), now);
+            }
+        }
+        for (String ladderName : previous.keySet()) {
+            if (!player.ranks.containsKey(ladderName)) {
+                recordChange(player, ladderName, null, now);
+            }
+        }
+    }
+
+    private void recordChange(RankPlayer player, String ladderName, Integer rankId, long time) {
+        RankLadder ladder = PrisonRanks.getInstance().getLadderManager().getLadderOrNull(ladderName);
+        if (ladder == null) {
+            return;
+        }
+        RankHistory history = this.history;
+        RankChange change = new RankChange(time, ladder.id, rankId);
+        List<Runnable> uncommitted = uncommittedChanges.get();
+        if (uncommitted != null) {
+            uncommitted.add(() -> history.record(player.uid, change));
+        } else {
+            history.record(player.uid, change);
+        }
     }
 
     /**
@@ -88,11 +288,219 @@ public class PlayerManager {
      * @see #savePlayer(RankPlayer) To save with the default conventional filename.
      */
     public void savePlayer(RankPlayer player, String playerFile) throws IOException {
-        collection.insert(playerFile, player.toDocument());
+        index(player);
+        long start = System.nanoTime();
+        try {
+            savePlayerNow(player, playerFile);
+        } finally {
+            PrisonRanks.getInstance().getMetrics().histogram(RanksMetrics.PLAYER_SAVE)
+                .recordSince(start);
+        }
+    }
+
+    private void savePlayerNow(RankPlayer player, String playerFile) throws IOException {
+        synchronized (writeLock) {
+            if (importing) {
+                synchronized (pendingSaves) {
+                    pendingSaves.put(playerFile, player.copy());
+                }
+                return;
+            }
+
+            // This write supersedes any queued one, so make sure the queued one can't land after it.
+            synchronized (pendingSaves) {
+                pendingSaves.remove(playerFile);
+            }
+            pruning.remove(playerFile);
+
+            if (isSparse() && isDefaultState(player)) {
+                // Nothing worth keeping; drop the file if the player had diverged before.
+                if (storedKeys.remove(playerFile)) {
+                    store.remove(playerFile);
+                }
+                return;
+            }
+
+            store.save(playerFile, player);
+            storedKeys.add(playerFile);
+        }
+    }
+
+    /**
+     * Queues a {@link RankPlayer} to be saved off the main thread. A copy of the player is taken now, so later
+     * changes won't race with the write. Queued saves are written together in one batch.
+     *
+     * @param player The {@link RankPlayer} to save.
+     */
+    public void savePlayerAsync(RankPlayer player) {
+        index(player);
+        String key = getPlayerKey(player);
+        if (isSparse() && isDefaultState(player) && !storedKeys.contains(key)) {
+            return; // Nothing to write, and nothing to remove.
+        }
+        storedKeys.add(key);
+        pruning.remove(key);
+
+        RankPlayer copy = player.copy();
+
+        synchronized (pendingSaves) {
+            pendingSaves.put(key, copy);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        synchronized (pendingSaves) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        writer.execute(this::flushPendingSaves);
+    }
+
+    private void flushPendingSaves() {
+        synchronized (writeLock) {
+            Map<String, RankPlayer> batch;
+            synchronized (pendingSaves) {
+                if (importing) {
+                    flushScheduled = false;
+                    return; // Held back until the import is done.
+                }
+                batch = new LinkedHashMap<>(pendingSaves);
+                pendingSaves.clear();
+                flushScheduled = false;
+            }
+
+            if (!batch.isEmpty()) {
+                try {
+                    store.saveAll(batch);
+                } catch (IOException e) {
+                    Output.get().logError("Could not save " + batch.size() + " new players.", e);
+                }
+            }
+            if (known != null) {
+                try {
+                    known.flush();
+                } catch (IOException e) {
+                    Output.get().logError("Could not save the list of known players.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes any queued saves now, on the calling thread.
+     */
+    public void flushSaves() {
+        flushPendingSaves();
+    }
+
+    /**
+     * Drops every loaded player and loads them again from storage, picking up changes written there
+     * directly. Queued saves are written first, so they aren't lost. Temporary ranks are scheduled again from
+     * the reloaded players. This must be called on the server thread.
+     *
+     * @throws IOException If one of the players could not be read.
+     */
+    public void reloadPlayers() throws IOException {
+        synchronized (writeLock) {
+            flushPendingSaves();
+            players.clear();
+            playersByUid.clear();
+            storedKeys.clear();
+            synchronized (rankIndex) {
+                rankIndex.clear();
+                indexedRanks.clear();
+            }
+            loadPlayers();
+        }
+
+        RankExpiryService expiryService = PrisonRanks.getInstance().getExpiryService();
+        if (expiryService != null) {
+            expiryService.reschedule();
+        }
+    }
+
+    /**
+     * Starts importing players straight into storage. Queued saves are written first; from then until the
+     * import is finished or aborted, every other player write is held back, so that no copy of a player from
+     * before the import can land on top of an imported one.
+     */
+    public void beginImport() {
+        synchronized (writeLock) {
+            flushPendingSaves();
+            importing = true;
+        }
+    }
+
+    /**
+     * Writes a batch of imported players, replacing any stored under the same keys. This may be called from
+     * any thread between {@link #beginImport()} and {@link #finishImport()}. The loaded players aren't
+     * touched.
+     *
+     * @param batch The players, by key.
+     * @throws IOException If the players could not be written.
+     */
+    public void importPlayers(Map<String, RankPlayer> batch) throws IOException {
+        synchronized (writeLock) {
+            store.saveAll(batch);
+        }
+    }
+
+    /**
+     * Ends a successful import. The saves held back during it are dropped, since they're of players from
+     * before the import, and the players are reloaded from storage. In sparse mode, imported players who
+     * only have the starting rank are then pruned. This must be called on the server thread.
+     *
+     * @throws IOException If the players could not be reloaded.
+     */
+    public void finishImport() throws IOException {
+        synchronized (writeLock) {
+            importing = false;
+            synchronized (pendingSaves) {
+                pendingSaves.clear();
+            }
+        }
+        reloadPlayers();
+
+        if (isSparse()) {
+            pruneDefaultPlayers().whenComplete((pruned, error) -> {
+                if (error != null) {
+                    Output.get().logError("Could not prune imported player files.", error);
+                }
+            });
+        }
+    }
+
+    /**
+     * Ends a failed import. The saves held back during it are written, so the loaded players and storage
+     * agree again for everyone who changed in the meantime.
+     */
+    public void abortImport() {
+        synchronized (writeLock) {
+            importing = false;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Writes any queued saves and stops the writer thread. Called when the module is disabled.
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(30, TimeUnit.SECONDS)) {
+                Output.get().logWarn("Timed out while waiting for player files to be written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushPendingSaves();
     }
 
     public void savePlayer(RankPlayer player) throws IOException {
-        this.savePlayer(player, "player_" + player.uid.getLeastSignificantBits());
+        this.savePlayer(player, getPlayerKey(player));
     }
 
     /**
@@ -102,9 +510,251 @@ public class PlayerManager {
      * @see #savePlayer(RankPlayer, String)
      */
     public void savePlayers() throws IOException {
+        savePlayers(players);
+    }
+
+    /**
+     * Saves a group of players in a single batch.
+     *
+     * @param toSave The players to save.
+     * @throws IOException If one of the players could not be saved.
+     */
+    public void savePlayers(Collection<RankPlayer> toSave) throws IOException {
+        synchronized (writeLock) {
+            if (importing) {
+                for (RankPlayer player : toSave) {
+                    savePlayerNow(player, getPlayerKey(player));
+                }
+                return;
+            }
+
+            Map<String, RankPlayer> batch = new LinkedHashMap<>();
+            for (RankPlayer player : toSave) {
+                index(player);
+                if (isSparse() && isDefaultState(player)) {
+                    savePlayer(player);
+                    continue;
+                }
+                batch.put(getPlayerKey(player), player);
+            }
+            synchronized (pendingSaves) {
+                pendingSaves.keySet().removeAll(batch.keySet());
+            }
+            store.saveAll(batch);
+            storedKeys.addAll(batch.keySet());
+        }
+    }
+
+    /**
+     * Runs a storage transaction which saves players, such as removing a rank or a ladder. The player write
+     * lock is taken first, in the same order as every other player write, so the transaction can't deadlock
+     * with the writer thread. Rank changes saved by the transaction go into the players' history only once it
+     * has committed.
+     *
+     * @param transaction The work to do.
+     * @throws IOException If the work failed.
+     * @see tech.mcprison.prison.ranks.storage.StorageBackend#transaction(StorageBackend.Transaction)
+     */
+    public void transaction(StorageBackend.Transaction transaction) throws IOException {
+        synchronized (writeLock) {
+            if (uncommittedChanges.get() != null) {
+                // Part of a transaction already running on this thread, which records the changes.
+                PrisonRanks.getInstance().getStorage().transaction(transaction);
+                return;
+            }
+
+            List<Runnable> changes = new ArrayList<>();
+            uncommittedChanges.set(changes);
+            try {
+                PrisonRanks.getInstance().getStorage().transaction(transaction);
+            } finally {
+                uncommittedChanges.remove();
+            }
+            changes.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Removes the saved files of every player who only has the starting rank. Their records are rebuilt
+     * from the defaults when they're next needed. This is only safe when sparse player storage is enabled.
+     * <p>
+     * The players are picked out on the calling thread, which must be the server thread, and their files are
+     * removed by the writer thread. A player who is saved again before the writer gets to them is kept.
+     *
+     * @return The number of files that were removed. The future fails with an
+     * {@link java.io.UncheckedIOException} if one of the files could not be removed.
+     */
+    public CompletableFuture<Integer> pruneDefaultPlayers() {
+        List<String> candidates = new ArrayList<>();
         for (RankPlayer player : players) {
-            savePlayer(player);
+            String key = getPlayerKey(player);
+            if (isDefaultState(player) && storedKeys.contains(key)) {
+                candidates.add(key);
+                if (known != null) {
+                    known.add(player.uid);
+                }
+            }
+        }
+        pruning.addAll(candidates);
+
+        return CompletableFuture.supplyAsync(() -> {
+            int pruned = 0;
+            for (String key : candidates) {
+                // One player at a time, so saves from the server thread aren't held up for the whole run.
+                synchronized (writeLock) {
+                    // An import may be replacing the file with something worth keeping.
+                    if (importing || !pruning.remove(key) || !storedKeys.remove(key)) {
+                        continue;
+                    }
+                    try {
+                        store.remove(key);
+                    } catch (IOException e) {
+                        storedKeys.add(key);
+                        throw new UncheckedIOException(e);
+                    }
+                    pruned++;
+                }
+            }
+            return pruned;
+        }, writer);
+    }
+
+    /**
+     * Returns whether a player's ranks are exactly what a new player would be given, i.e. only the
+     * starting rank of the default ladder (or nothing at all, if there is no starting rank).
+     *
+     * @param player The {@link RankPlayer} to check.
+     * @return true if the player is in the default state, false otherwise.
+     */
+    public boolean isDefaultState(RankPlayer player) {
+        if (!player.expiries.isEmpty()) {
+            return false; // The expiry has to survive a restart.
+        }
+        RankLadder defaultLadder = PrisonRanks.getInstance().getDefaultLadder();
+        Optional<Rank> startingRank = getStartingRank();
+        if (!startingRank.isPresent()) {
+            return player.ranks.isEmpty();
+        }
+
+        Integer rankId = player.ranks.get(defaultLadder.name);
+        return player.ranks.size() == 1 && rankId != null && rankId == startingRank.get().id;
+    }
+
+    /**
+     * @return The rank that new players are given on the default ladder, if there is one.
+     */
+    public Optional<Rank> getStartingRank() {
+        return PrisonRanks.getInstance().getDefaultLadder().getByPosition(1);
+    }
+
+    private boolean isSparse() {
+        return PrisonRanks.getInstance().getConfig().sparsePlayers;
+    }
+
+    /**
+     * @param player The {@link RankPlayer}.
+     * @return The key that the player is stored as.
+     */
+    public String getPlayerKey(RankPlayer player) {
+        return PlayerKeys.key(player.uid);
+    }
+
+    /*
+     * Queries
+     *
+     * These are answered from the rank index where possible. The returned streams are lazy: each rank's
+     * players are copied out of the index only when the stream reaches them, and are checked against their
+     * current ranks on the way out. Use skip() and limit() to page through them.
+     */
+
+    /**
+     * @param ladderName The name of the ladder.
+     * @return Every player with a rank on the ladder.
+     */
+    public Stream<RankPlayer> getPlayersOnLadder(String ladderName) {
+        List<Integer> rankIds;
+        synchronized (rankIndex) {
+            Map<Integer, Set<RankPlayer>> byRank = rankIndex.get(ladderName);
+            rankIds = byRank == null ? Collections.emptyList() : new ArrayList<>(byRank.keySet());
         }
+        return rankIds.stream().flatMap(rankId -> getIndexed(ladderName, rankId));
+    }
+
+    /**
+     * @param rank The rank.
+     * @return Every player holding the rank, on any ladder.
+     */
+    public Stream<RankPlayer> getPlayersWithRank(Rank rank) {
+        List<String> ladderNames;
+        synchronized (rankIndex) {
+            ladderNames = new ArrayList<>(rankIndex.keySet());
+        }
+        return ladderNames.stream().flatMap(ladderName -> getIndexed(ladderName, rank.id))
+            .distinct();
+    }
+
+    /**
+     * @param ladder      The ladder.
+     * @param minPosition The lowest position to include.
+     * @return Every player on the ladder whose rank is at the given position or above.
+     */
+    public Stream<RankPlayer> getPlayersFromPosition(RankLadder ladder, int minPosition) {
+        return new ArrayList<>(ladder.ranks).stream()
+            .filter(positionRank -> positionRank.getPosition() >= minPosition)
+            .flatMap(positionRank -> getIndexed(ladder.name, positionRank.getRankId()));
+    }
+
+    /**
+     * Counts the players on each rank of a ladder. This is read straight from the index, without visiting
+     * any players.
+     *
+     * @param ladderName The name of the ladder.
+     * @return The number of players holding each rank, by rank ID. Ranks nobody holds are left out.
+     */
+    public Map<Integer, Integer> countByRank(String ladderName) {
+        Map<Integer, Integer> ret = new HashMap<>();
+        synchronized (rankIndex) {
+            Map<Integer, Set<RankPlayer>> byRank = rankIndex.get(ladderName);
+            if (byRank != null) {
+                for (Map.Entry<Integer, Set<RankPlayer>> entry : byRank.entrySet()) {
+                    ret.put(entry.getKey(), entry.getValue().size());
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Finds players matching a condition the index can't answer, by scanning every player in parallel.
+     * Players aren't thread-safe, so each is copied here, and the condition is tested on the copies on the
+     * pool's threads. This has to be called on the server thread, where players are changed.
+     *
+     * @param filter The condition. It's given copies of the players, which it mustn't change.
+     * @return Every player matching the condition. These are the live players, not the copies.
+     */
+    public Stream<RankPlayer> findPlayers(Predicate<RankPlayer> filter) {
+        List<RankPlayer> live = new ArrayList<>(players);
+        List<RankPlayer> copies = new ArrayList<>(live.size());
+        for (RankPlayer player : live) {
+            copies.add(player.copy());
+        }
+        return IntStream.range(0, live.size()).parallel().filter(i -> filter.test(copies.get(i)))
+            .mapToObj(live::get);
+    }
+
+    private Stream<RankPlayer> getIndexed(String ladderName, int rankId) {
+        List<RankPlayer> holders;
+        synchronized (rankIndex) {
+            Map<Integer, Set<RankPlayer>> byRank = rankIndex.get(ladderName);
+            Set<RankPlayer> indexed = byRank == null ? null : byRank.get(rankId);
+            if (indexed == null) {
+                return Stream.empty();
+            }
+            holders = new ArrayList<>(indexed);
+        }
+        // A player may have been changed since they were last indexed.
+        return holders.stream()
+            .filter(player -> Integer.valueOf(rankId).equals(player.ranks.get(ladderName)));
     }
 
     /*
@@ -115,8 +765,36 @@ public class PlayerManager {
         return players;
     }
 
+    /**
+     * Returns a player's record. In sparse mode, a player whose record was pruned has it rebuilt from the
+     * defaults, so this must then be called on the server thread.
+     *
+     * @param uid The player's UUID.
+     * @return The player, or empty if they have never joined.
+     */
     public Optional<RankPlayer> getPlayer(UUID uid) {
-        return players.stream().filter(player -> player.uid.equals(uid)).findFirst();
+        RankPlayer player = playersByUid.get(uid);
+        if (player == null && known != null && known.contains(uid)) {
+            player = createDefaultPlayer(uid);
+        }
+        return Optional.ofNullable(player);
+    }
+
+    /**
+     * Sets the players known to have had a record, for sparse mode. This must be set before the players are
+     * loaded, so that everyone loaded is added to it.
+     *
+     * @param known The known players, or null if sparse mode is off.
+     */
+    public void setKnownPlayers(KnownPlayers known) {
+        this.known = known;
+    }
+
+    /**
+     * @param history Where to record the rank changes of players, or null to not record them.
+     */
+    public void setHistory(RankHistory history) {
+        this.history = history;
     }
 
     /*
@@ -124,25 +802,27 @@ public class PlayerManager {
      */
 
     @Subscribe public void onPlayerJoin(PlayerJoinEvent event) {
-        if (!getPlayer(event.getPlayer().getUUID()).isPresent()) {
-            // We need to create a new player data file.
-            RankPlayer newPlayer = new RankPlayer();
-            newPlayer.uid = event.getPlayer().getUUID();
-            newPlayer.ranks = new HashMap<>();
+        UUID uid = event.getPlayer().getUUID();
+        if (playersByUid.containsKey(uid)) {
+            return;
+        }
+        if (known != null && known.contains(uid)) {
+            // Pruned by sparse storage. They've joined before, so this isn't a first join.
+            createDefaultPlayer(uid);
+            return;
+        }
 
-            players.add(newPlayer);
+        // Build the new player entirely in memory. The first join listeners fill in the starting
+        // state, and then the finished record is written once, off the main thread.
+        RankPlayer newPlayer = createPlayer(uid);
 
-            try {
-                savePlayer(newPlayer);
-            } catch (IOException e) {
-                Output.get().logError(
-                    "Failed to create new player data file for player " + event.getPlayer()
-                        .getName(), e);
-                return;
-            }
+        Prison.get().getEventBus().post(new FirstJoinEvent(newPlayer));
 
-            Prison.get().getEventBus().post(new FirstJoinEvent(newPlayer));
+        if (known != null) {
+            known.add(uid);
+            scheduleFlush();
         }
+        savePlayerAsync(newPlayer);
     }
 
 }
@@ -20,14 +20,21 @@ package tech.mcprison.prison.ranks.managers;
 import tech.mcprison.prison.PrisonAPI;
 import tech.mcprison.prison.output.Output;
 import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.audit.AuditEntry;
 import tech.mcprison.prison.ranks.data.Rank;
 import tech.mcprison.prison.ranks.data.RankLadder;
-import tech.mcprison.prison.store.Collection;
-import tech.mcprison.prison.store.Document;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.storage.DataStore;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -41,8 +48,10 @@ public class RankManager {
      * Fields & Constants
      */
 
-    private Collection collection;
+    private DataStore<Rank> store;
     private List<Rank> loadedRanks;
+    // The loaded ranks by ID, for the lookups made on every rank-up and chat message.
+    private Map<Integer, Rank> ranksById;
 
     /*
      * Constructor
@@ -51,9 +60,10 @@ public class RankManager {
     /**
      * Instantiate this {@link RankManager}.
      */
-    public RankManager(Collection collection) {
-        this.collection = collection;
+    public RankManager(DataStore<Rank> store) {
+        this.store = store;
         this.loadedRanks = new ArrayList<>();
+        this.ranksById = new HashMap<>();
     }
 
     /*
@@ -68,8 +78,9 @@ public class RankManager {
      * @throws IOException If the file could not be read or does not exist.
      */
     public void loadRank(String rankFile) throws IOException {
-        Document document = collection.get(rankFile).orElseThrow(IOException::new);
-        loadedRanks.add(new Rank(document));
+        Rank rank = store.load(rankFile).orElseThrow(IOException::new);
+        loadedRanks.add(rank);
+        ranksById.putIfAbsent(rank.id, rank);
     }
 
     /**
@@ -79,8 +90,92 @@ public class RankManager {
      * @throws IOException If the folder could not be found, or if a file could not be read or does not exist.
      */
     public void loadRanks() throws IOException {
-        List<Document> ranks = collection.getAll();
-        ranks.forEach(document -> loadedRanks.add(new Rank(document)));
+        loadedRanks.addAll(store.loadAll());
+        indexRanks();
+    }
+
+    /**
+     * Reads every rank from storage without touching the loaded ones. This may be called off the main thread.
+     *
+     * @return The stored ranks.
+     * @throws IOException If one of the ranks could not be read.
+     * @see #applyRanks(List)
+     */
+    public List<Rank> readStoredRanks() throws IOException {
+        return store.loadAll();
+    }
+
+    /**
+     * Brings the loaded ranks in line with a fresh set read from storage. Ranks are matched by ID, and
+     * changed ones are updated in place, so anything holding a loaded {@link Rank} sees the new values.
+     * Nothing is saved.
+     *
+     * @param stored The ranks as they are in storage.
+     * @return What was changed.
+     */
+    public ReloadChanges applyRanks(List<Rank> stored) {
+        ReloadChanges changes = new ReloadChanges();
+
+        Map<Integer, Rank> storedById = new HashMap<>();
+        for (Rank rank : stored) {
+            storedById.put(rank.id, rank);
+        }
+
+        Iterator<Rank> iterator = loadedRanks.iterator();
+        while (iterator.hasNext()) {
+            Rank loaded = iterator.next();
+            Rank fresh = storedById.remove(loaded.id);
+            if (fresh == null) {
+                iterator.remove();
+                changes.removed();
+            } else if (!loaded.equals(fresh) || !Objects
+                .equals(loaded.rankUpCommands, fresh.rankUpCommands)) {
+                loaded.name = fresh.name;
+                loaded.tag = fresh.tag;
+                loaded.cost = fresh.cost;
+                loaded.rankUpCommands = fresh.rankUpCommands;
+                loaded.updateDisplay();
+                changes.changed();
+            }
+        }
+
+        // Whatever is left wasn't loaded before.
+        for (Rank rank : stored) {
+            if (storedById.containsKey(rank.id)) {
+                loadedRanks.add(rank);
+                changes.added();
+            }
+        }
+        indexRanks();
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        return changes;
+    }
+
+    private void indexRanks() {
+        Map<Integer, Rank> byId = new HashMap<>();
+        for (Rank rank : loadedRanks) {
+            byId.putIfAbsent(rank.id, rank);
+        }
+        ranksById = byId;
+    }
+
+    /**
+     * Reads every rank from storage and applies it to the loaded ranks.
+     *
+     * @return What was changed.
+     * @throws IOException If one of the ranks could not be read.
+     * @see #applyRanks(List)
+     */
+    public ReloadChanges reloadRanks() throws IOException {
+        return applyRanks(readStoredRanks());
+    }
+
+    /**
+     * @param rank The {@link Rank}.
+     * @return The key that the rank is stored as.
+     */
+    public String getRankKey(Rank rank) {
+        return "rank_" + rank.id;
     }
 
     /**
@@ -91,7 +186,8 @@ public class RankManager {
      * @throws IOException If the rank could not be serialized, or if the rank could not be saved to the file.
      */
     public void saveRank(Rank rank, String saveFile) throws IOException {
-        collection.insert(saveFile, rank.toDocument());
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        store.save(saveFile, rank);
     }
 
     /**
@@ -101,7 +197,7 @@ public class RankManager {
      * @throws IOException If the rank could not be serialized, or if the rank could not be saved to the file.
      */
     public void saveRank(Rank rank) throws IOException {
-        this.saveRank(rank, "rank_" + rank.id);
+        this.saveRank(rank, getRankKey(rank));
     }
 
     /**
@@ -110,9 +206,12 @@ public class RankManager {
      * @throws IOException If the rankFolder does not exist, or if one of the ranks could not be saved.
      */
     public void saveRanks() throws IOException {
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        Map<String, Rank> batch = new LinkedHashMap<>();
         for (Rank rank : loadedRanks) {
-            saveRank(rank);
+            batch.put(getRankKey(rank), rank);
         }
+        store.saveAll(batch);
     }
 
     /**
@@ -133,9 +232,12 @@ public class RankManager {
         newRank.tag = tag;
         newRank.cost = cost;
         newRank.rankUpCommands = new ArrayList<>();
+        newRank.updateDisplay();
 
         // ... add it to the list...
         loadedRanks.add(newRank);
+        ranksById.put(newRank.id, newRank);
+        PrisonRanks.getInstance().getRankListCache().invalidate();
 
         // ...and return it.
         return Optional.of(newRank);
@@ -168,7 +270,12 @@ public class RankManager {
      * @return An optional containing either the {@link Rank} if it could be found, or empty if it does not exist by the specified name.
      */
     public Optional<Rank> getRank(String name) {
-        return loadedRanks.stream().filter(rank -> rank.name.equals(name)).findFirst();
+        for (Rank rank : loadedRanks) {
+            if (rank.name.equals(name)) {
+                return Optional.of(rank);
+            }
+        }
+        return Optional.empty();
     }
 
     /**
@@ -181,7 +288,19 @@ public class RankManager {
      * @return true if the rank was removed successfully, false otherwise.
      */
     public boolean removeRank(Rank rank) {
-        // ... remove it from each user, bumping them down to the next lowest rank...
+        return removeRank(rank, "server");
+    }
+
+    /**
+     * Removes the provided rank, as {@link #removeRank(Rank)} does, noting who removed it in the audit log.
+     *
+     * @param rank  The {@link Rank} to be removed.
+     * @param actor The name of whoever removed the rank.
+     * @return true if the rank was removed successfully, false otherwise.
+     */
+    public boolean removeRank(Rank rank, String actor) {
+        // Work out where each ladder's players go first, so that nothing is changed if one has nowhere to go.
+        Map<RankLadder, Rank> fallbacks = new LinkedHashMap<>();
         for (RankLadder ladder : PrisonRanks.getInstance().getLadderManager()
             .getLaddersWithRank(rank.id)) {
             int next =
@@ -192,45 +311,76 @@ public class RankManager {
                 // TODO Do something here ... default rank!
                 return false;
             }
+            fallbacks.put(ladder, newRank.get());
+        }
 
-            // Move each player in this ladder to the new rank
-            PrisonRanks.getInstance().getPlayerManager().getPlayers().forEach(rankPlayer -> {
-                if (rankPlayer.getRank(ladder).isPresent()) {
-                    rankPlayer.removeRank(rankPlayer.getRank(ladder).get());
-                    rankPlayer.addRank(ladder, newRank.get());
-                    try {
-                        PrisonRanks.getInstance().getPlayerManager().savePlayer(rankPlayer);
-                    } catch (IOException e) {
-                        Output.get().logError("Couldn't save player file.", e);
-                    }
-                    PrisonAPI.debug("Player %s is now %s", rankPlayer.uid.getLeastSignificantBits(),
-                        newRank.get().name);
-                }
-            });
+        // Copies of everything that's about to change, to put back if it can't be saved.
+        PlayerManager playerManager = PrisonRanks.getInstance().getPlayerManager();
+        Map<RankPlayer, RankPlayer> players = new LinkedHashMap<>();
+        Map<RankLadder, List<RankLadder.PositionRank>> ladders = new LinkedHashMap<>();
+        Map<RankLadder.PositionRank, Integer> positions = new HashMap<>();
+        playerManager.getPlayersWithRank(rank)
+            .forEach(player -> players.putIfAbsent(player, player.copy()));
+        for (RankLadder ladder : fallbacks.keySet()) {
+            ladders.put(ladder, new ArrayList<>(ladder.ranks));
+            ladder.ranks.forEach(
+                positionRank -> positions.put(positionRank, positionRank.getPosition()));
         }
 
-        // ... remove it from each ladder it was in...
-        final boolean[] success = {true};
-        PrisonRanks.getInstance().getLadderManager().getLaddersWithRank(rank.id)
-            .forEach(rankLadder -> {
-                rankLadder.removeRank(rankLadder.getPositionOfRank(rank));
-                try {
-                    PrisonRanks.getInstance().getLadderManager().saveLadder(rankLadder);
-                } catch (IOException e) {
-                    success[0] = false;
-                    Output.get().logError("Could not save ladder.", e);
-                }
+        // The players, ladders and the rank itself are all written together, so that a failure part-way
+        // doesn't leave players on a rank which no longer exists.
+        List<AuditEntry> audit = new ArrayList<>();
+        try {
+            playerManager.transaction(
+                () -> removeRankAndSave(rank, fallbacks, players.keySet(), actor, audit));
+        } catch (IOException e) {
+            Output.get().logError("Could not remove rank " + rank.name + ".", e);
+            players.forEach(playerManager::restore);
+            ladders.forEach((ladder, ranks) -> {
+                ranks.forEach(positionRank -> positionRank.setPosition(positions.get(positionRank)));
+                ladder.ranks = ranks;
             });
-        if(!success[0]) {
             return false;
         }
+        audit.forEach(PrisonRanks.getInstance()::audit);
 
         // Remove it from the list...
         loadedRanks.remove(rank);
+        ranksById.remove(rank.id);
+        PrisonRanks.getInstance().getRankListCache().invalidate();
+        return true;
+    }
+
+    private void removeRankAndSave(Rank rank, Map<RankLadder, Rank> fallbacks,
+        Collection<RankPlayer> holders, String actor, List<AuditEntry> audit) throws IOException {
+        // ... take it from each player holding it, bumping them down to the next lowest rank of that ladder...
+        for (Map.Entry<RankLadder, Rank> fallback : fallbacks.entrySet()) {
+            RankLadder ladder = fallback.getKey();
+            Rank newRank = fallback.getValue();
+
+            for (RankPlayer rankPlayer : holders) {
+                // Players on this ladder with some other rank stay where they are.
+                Integer current = rankPlayer.ranks.get(ladder.name);
+                if (current == null || current != rank.id) {
+                    continue;
+                }
+                rankPlayer.addRank(ladder, newRank);
+                PrisonRanks.getInstance().getPlayerManager().savePlayer(rankPlayer);
+                audit.add(new AuditEntry(actor, rankPlayer.uid, ladder.name, rank.name,
+                    newRank.name, 0, "rank deleted"));
+                PrisonAPI.debug("Player %s is now %s", rankPlayer.uid.getLeastSignificantBits(),
+                    newRank.name);
+            }
+        }
+
+        // ... remove it from each ladder it was in...
+        for (RankLadder rankLadder : fallbacks.keySet()) {
+            rankLadder.removeRank(rankLadder.getPositionOfRank(rank));
+            PrisonRanks.getInstance().getLadderManager().saveLadder(rankLadder);
+        }
 
         // ... and remove the rank's save files.
-        collection.remove("rank_" + rank.id);
-        return true;
+        store.remove(getRankKey(rank));
     }
 
     /**
@@ -240,7 +390,18 @@ public class RankManager {
      * @return An optional containing either the {@link Rank} if it could be found, or empty if it does not exist by the specified id.
      */
     public Optional<Rank> getRank(int id) {
-        return loadedRanks.stream().filter(rank -> rank.id == id).findFirst();
+        return Optional.ofNullable(ranksById.get(id));
+    }
+
+    /**
+     * Returns the rank with the specified ID, as {@link #getRank(int)} does, but without wrapping it. This is
+     * for the rank-up and chat paths, which look ranks up often enough for the wrapper to show.
+     *
+     * @param id The rank's ID.
+     * @return The {@link Rank}, or null if it does not exist by the specified id.
+     */
+    public Rank getRankOrNull(int id) {
+        return ranksById.get(id);
     }
 
     /**
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.managers;
+
+/**
+ * Counts what a reload changed in a manager's loaded objects.
+ */
+public class ReloadChanges {
+
+    /*
+     * Fields & Constants
+     */
+
+    private int added, changed, removed;
+
+    /*
+     * Methods
+     */
+
+    void added() {
+        added++;
+    }
+
+    void changed() {
+        changed++;
+    }
+
+    void removed() {
+        removed++;
+    }
+
+    /**
+     * @return true if the reload found nothing to change.
+     */
+    public boolean isEmpty() {
+        return added == 0 && changed == 0 && removed == 0;
+    }
+
+    @Override public String toString() {
+        return added + " added, " + changed + " changed, " + removed + " removed";
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations. Each bucket covers a power-of-two range of nanoseconds, which keeps
+ * the memory fixed and recording cheap, at the cost of percentiles being accurate only to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    /*
+     * Fields & Constants
+     */
+
+    // Bucket i holds durations in [2^(i-1), 2^i) nanoseconds; bucket 0 holds zero.
+    private static final int BUCKETS = 64;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /*
+     * Constructor
+     */
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos The reading taken when the operation began.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the approximate duration below which the given fraction of recordings fall.
+     *
+     * @param fraction The fraction, between 0 and 1 (e.g. 0.99 for the 99th percentile).
+     * @return The upper bound of the bucket containing that percentile, in nanoseconds.
+     */
+    public long getPercentileNanos(double fraction) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target && snapshot[i] > 0) {
+                return Math.min((1L << i) - 1, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) totalNanos.sum() / n;
+    }
+
+    /**
+     * Converts nanoseconds to fractional milliseconds, for display.
+     */
+    public static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+}
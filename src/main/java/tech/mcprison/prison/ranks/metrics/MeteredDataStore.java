@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import tech.mcprison.prison.ranks.codec.Codec;
+import tech.mcprison.prison.ranks.jfr.FlightRecording;
+import tech.mcprison.prison.ranks.storage.DataStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Wraps a {@link DataStore} and times every call into the storage histograms of {@link RanksMetrics}.
+ * Slow calls are also recorded as flight recorder events.
+ *
+ * @param <T> The type of object stored.
+ */
+public class MeteredDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final DataStore<T> delegate;
+    private final String name;
+    private final Codec<T> codec;
+    private final LatencyHistogram reads;
+    private final LatencyHistogram writes;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param delegate The store to wrap.
+     * @param name     The name of the store, as shown in flight recordings.
+     * @param codec    The codec for the stored type, used to report sizes in flight recordings.
+     * @param metrics  The metrics to record timings into.
+     */
+    public MeteredDataStore(DataStore<T> delegate, String name, Codec<T> codec,
+        RanksMetrics metrics) {
+        this.delegate = delegate;
+        this.name = name;
+        this.codec = codec;
+        this.reads = metrics.histogram(RanksMetrics.STORAGE_READ);
+        this.writes = metrics.histogram(RanksMetrics.STORAGE_WRITE);
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public Optional<T> load(String key) throws IOException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginLoad();
+        Optional<T> ret = Optional.empty();
+        try {
+            ret = delegate.load(key);
+            return ret;
+        } finally {
+            reads.recordSince(start);
+            if (FlightRecording.shouldCommit(event)) {
+                FlightRecording.commitStorage(event, name, key, ret.isPresent() ? 1 : 0,
+                    ret.isPresent() ? sizeOf(ret.get()) : 0);
+            }
+        }
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginLoad();
+        List<T> ret = null;
+        try {
+            ret = delegate.loadAll();
+            return ret;
+        } finally {
+            reads.recordSince(start);
+            if (FlightRecording.shouldCommit(event)) {
+                // Sizing every object in a bulk load would be too costly, even while recording.
+                FlightRecording.commitStorage(event, name, "*", ret == null ? 0 : ret.size(), -1);
+            }
+        }
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginSave();
+        try {
+            delegate.save(key, value);
+        } finally {
+            writes.recordSince(start);
+            if (FlightRecording.shouldCommit(event)) {
+                FlightRecording.commitStorage(event, name, key, 1, sizeOf(value));
+            }
+        }
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginSave();
+        try {
+            delegate.saveAll(values);
+        } finally {
+            writes.recordSince(start);
+            if (FlightRecording.shouldCommit(event)) {
+                FlightRecording.commitStorage(event, name, "*", values.size(), -1);
+            }
+        }
+    }
+
+    @Override public void remove(String key) throws IOException {
+        long start = System.nanoTime();
+        Object event = FlightRecording.beginSave();
+        try {
+            delegate.remove(key);
+        } finally {
+            writes.recordSince(start);
+            if (FlightRecording.shouldCommit(event)) {
+                FlightRecording.commitStorage(event, name, key, 0, 0);
+            }
+        }
+    }
+
+    private long sizeOf(T value) {
+        try {
+            return codec.toJson(value).getBytes(StandardCharsets.UTF_8).length;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+}
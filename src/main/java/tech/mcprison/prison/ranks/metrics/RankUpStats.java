@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import com.google.common.eventbus.Subscribe;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.ranks.events.RankUpEvent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts rank-ups, and the money they took out of the economy, over the last minute, hour and day, for every
+ * rank and ladder. It's fed by {@link RankUpEvent}s. Memory grows with the number of ranks, not players.
+ */
+public class RankUpStats {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final int MINUTE = 0, HOUR = 1, DAY = 2;
+    private static final String[] WINDOW_NAMES = {"1m", "1h", "24h"};
+
+    // Ladder name -> rank ID -> the windows for rank-ups to that rank.
+    private final Map<String, Map<Integer, Windows>> byRank = new ConcurrentHashMap<>();
+    private final Map<String, Windows> byLadder = new ConcurrentHashMap<>();
+
+    /*
+     * Methods
+     */
+
+    @Subscribe public void onRankUp(RankUpEvent event) {
+        if (event.getLadder() == null || event.getNewRank() == null) {
+            return;
+        }
+        record(event.getLadder().name, event.getNewRank().id, event.getNewRank().name,
+            event.getCost(), System.currentTimeMillis());
+    }
+
+    /**
+     * Records one rank-up.
+     *
+     * @param ladderName The name of the ladder.
+     * @param rankId     The ID of the rank ranked up to.
+     * @param rankName   The name of that rank, for the dumps.
+     * @param cost       The money taken for it.
+     * @param nowMillis  The current time.
+     */
+    public void record(String ladderName, int rankId, String rankName, double cost,
+        long nowMillis) {
+        long cents = Math.round(cost * 100);
+        Windows rank = byRank.computeIfAbsent(ladderName, name -> new ConcurrentHashMap<>())
+            .computeIfAbsent(rankId, id -> new Windows());
+        rank.name = rankName;
+        rank.record(nowMillis, cents);
+        byLadder.computeIfAbsent(ladderName, name -> new Windows()).record(nowMillis, cents);
+    }
+
+    /**
+     * Writes the rank-up counts and money taken in each window, by ladder and rank, as a single JSON object.
+     *
+     * @param out The {@link JsonWriter} to write to.
+     * @throws IOException If the writer fails.
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        long now = System.currentTimeMillis();
+        out.beginObject();
+        for (Map.Entry<String, Windows> ladder : byLadder.entrySet()) {
+            out.name(ladder.getKey()).beginObject();
+            out.name("total");
+            ladder.getValue().writeJson(out, now);
+
+            out.name("ranks").beginObject();
+            for (Map.Entry<Integer, Windows> rank : getRanks(ladder.getKey()).entrySet()) {
+                out.name(rank.getValue().name == null ? "#" + rank.getKey() : rank.getValue().name);
+                rank.getValue().writeJson(out, now);
+            }
+            out.endObject();
+
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @return The windows for the given ladder as a whole, or null if nothing has ranked up on it.
+     */
+    public Windows getLadder(String ladderName) {
+        return byLadder.get(ladderName);
+    }
+
+    /**
+     * @return The windows for each rank of the given ladder which has been ranked up to, by rank ID.
+     */
+    public Map<Integer, Windows> getRanks(String ladderName) {
+        return byRank.getOrDefault(ladderName, new ConcurrentHashMap<>());
+    }
+
+    public static String getWindowName(int window) {
+        return WINDOW_NAMES[window];
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * The minute, hour and day windows for one rank or ladder.
+     */
+    public static class Windows {
+
+        // The name of the rank as of its last rank-up, so dumps needn't look it up off the server thread.
+        private volatile String name;
+
+        // 1 minute of 1 second buckets, 1 hour of 1 minute buckets, and 1 day of 15 minute buckets.
+        private final RollingWindow[] windows = {
+            new RollingWindow(TimeUnit.SECONDS.toMillis(1), 60),
+            new RollingWindow(TimeUnit.MINUTES.toMillis(1), 60),
+            new RollingWindow(TimeUnit.MINUTES.toMillis(15), 96)};
+
+        void record(long nowMillis, long cents) {
+            for (RollingWindow window : windows) {
+                window.record(nowMillis, cents);
+            }
+        }
+
+        /**
+         * @param window One of {@link #MINUTE}, {@link #HOUR} or {@link #DAY}.
+         * @return How many rank-ups there were in the window.
+         */
+        public long getRankUps(int window) {
+            return windows[window].getCount(System.currentTimeMillis());
+        }
+
+        /**
+         * @param window One of {@link #MINUTE}, {@link #HOUR} or {@link #DAY}.
+         * @return How much money rank-ups took in the window.
+         */
+        public double getMoney(int window) {
+            return windows[window].getSum(System.currentTimeMillis()) / 100.0;
+        }
+
+        private void writeJson(JsonWriter out, long now) throws IOException {
+            out.beginObject();
+            for (int i = 0; i < windows.length; i++) {
+                out.name(WINDOW_NAMES[i]).beginObject();
+                out.name("rankups").value(windows[i].getCount(now));
+                out.name("money").value(windows[i].getSum(now) / 100.0);
+                out.endObject();
+            }
+            out.endObject();
+        }
+
+    }
+
+}
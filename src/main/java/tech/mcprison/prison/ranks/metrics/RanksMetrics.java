@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonWriter;
+import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.economy.BalanceCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps count of what the ranks module is doing: how long its main operations take, how rank-ups turn out,
+ * and how much data is loaded. These can be viewed with {@code /ranks stats}, and optionally dumped to a file.
+ */
+public class RanksMetrics {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final String RANKUP = "rankup", PLAYER_SAVE = "player-save",
+        PLAYERS_LOAD = "players-load", STORAGE_READ = "storage-read",
+        STORAGE_WRITE = "storage-write", CHAT = "chat";
+
+    // Indexed by the RankUtil.RANKUP_* status codes.
+    private static final String[] OUTCOME_NAMES =
+        {"success", "failure", "highest", "cant-afford", "no-ranks", "throttled"};
+
+    private final Map<String, LatencyHistogram> histograms;
+    private final AtomicLongArray rankUpOutcomes = new AtomicLongArray(OUTCOME_NAMES.length);
+    private final RankUpStats rankUpStats = new RankUpStats();
+
+    private ScheduledExecutorService dumper;
+
+    /*
+     * Constructor
+     */
+
+    public RanksMetrics() {
+        Map<String, LatencyHistogram> map = new LinkedHashMap<>();
+        for (String name : new String[] {RANKUP, PLAYER_SAVE, PLAYERS_LOAD, STORAGE_READ,
+            STORAGE_WRITE, CHAT}) {
+            map.put(name, new LatencyHistogram(name));
+        }
+        this.histograms = Collections.unmodifiableMap(map);
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Records the outcome of a rank-up attempt.
+     *
+     * @param status One of the {@code RankUtil.RANKUP_*} status codes.
+     * @param nanos  How long the attempt took.
+     */
+    public void recordRankUp(int status, long nanos) {
+        histogram(RANKUP).record(nanos);
+        if (status >= 0 && status < OUTCOME_NAMES.length) {
+            rankUpOutcomes.incrementAndGet(status);
+        }
+    }
+
+    /**
+     * Writes everything this tracks as a single JSON object.
+     *
+     * @param out The {@link JsonWriter} to write to.
+     * @throws IOException If the writer fails.
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("timestamp").value(System.currentTimeMillis());
+
+        out.name("latency").beginObject();
+        for (LatencyHistogram histogram : histograms.values()) {
+            out.name(histogram.getName()).beginObject();
+            out.name("count").value(histogram.getCount());
+            out.name("meanNanos").value(histogram.getMeanNanos());
+            out.name("p50Nanos").value(histogram.getPercentileNanos(0.5));
+            out.name("p99Nanos").value(histogram.getPercentileNanos(0.99));
+            out.name("maxNanos").value(histogram.getMaxNanos());
+            out.endObject();
+        }
+        out.endObject();
+
+        out.name("rankups").beginObject();
+        for (int i = 0; i < OUTCOME_NAMES.length; i++) {
+            out.name(OUTCOME_NAMES[i]).value(getRankUpOutcome(i));
+        }
+        out.endObject();
+
+        BalanceCache balanceCache = PrisonRanks.getInstance().getBalanceCache();
+        if (balanceCache != null) {
+            out.name("balanceCache").beginObject();
+            out.name("hits").value(balanceCache.getHits());
+            out.name("misses").value(balanceCache.getMisses());
+            out.endObject();
+        }
+
+        out.name("rankupWindows");
+        rankUpStats.writeJson(out);
+
+        out.name("loaded").beginObject();
+        out.name("players").value(getLoadedPlayers());
+        out.name("ranks").value(getLoadedRanks());
+        out.name("ladders").value(getLoadedLadders());
+        out.endObject();
+
+        out.endObject();
+    }
+
+    /**
+     * Starts dumping the metrics to a file at a fixed interval. Each dump replaces the last one.
+     *
+     * @param file            The file to write to.
+     * @param intervalSeconds How often to write, in seconds.
+     */
+    public void startDumping(File file, int intervalSeconds) {
+        dumper = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-metrics").setDaemon(true)
+                .build());
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                Output.get().logError("Could not write the ranks stats file.", e);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void dump(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp),
+            StandardCharsets.UTF_8); JsonWriter out = new JsonWriter(writer)) {
+            out.setIndent("  ");
+            writeJson(out);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Stops the periodic dumps, if they were started.
+     */
+    public void stop() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @param name One of the names declared in this class, e.g. {@link #RANKUP}.
+     * @return The histogram by that name.
+     * @throws IllegalArgumentException If there's no histogram by that name.
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            throw new IllegalArgumentException("No histogram named " + name);
+        }
+        return histogram;
+    }
+
+    public Collection<LatencyHistogram> getHistograms() {
+        return histograms.values();
+    }
+
+    /**
+     * @return The rank-up and money counts over the last minute, hour and day. It has to be registered on the
+     * event bus to be fed.
+     */
+    public RankUpStats getRankUpStats() {
+        return rankUpStats;
+    }
+
+    public long getRankUpOutcome(int status) {
+        return rankUpOutcomes.get(status);
+    }
+
+    public static String getOutcomeName(int status) {
+        return OUTCOME_NAMES[status];
+    }
+
+    public static int getOutcomeCount() {
+        return OUTCOME_NAMES.length;
+    }
+
+    public int getLoadedPlayers() {
+        PrisonRanks ranks = PrisonRanks.getInstance();
+        return ranks.getPlayerManager() == null ? 0 : ranks.getPlayerManager().getPlayers().size();
+    }
+
+    public int getLoadedRanks() {
+        PrisonRanks ranks = PrisonRanks.getInstance();
+        return ranks.getRankManager() == null ? 0 : ranks.getRankManager().getRanks().size();
+    }
+
+    public int getLoadedLadders() {
+        PrisonRanks ranks = PrisonRanks.getInstance();
+        return ranks.getLadderManager() == null ? 0 : ranks.getLadderManager().getLadders().size();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events, and sums an amount carried by each, over a sliding window of time. The window is a ring of
+ * fixed-length buckets, so its memory is fixed, and recording is lock-free: each bucket is stamped with the
+ * period it belongs to, and the first writer to find a stale stamp claims and clears the bucket.
+ * <p>
+ * A write racing with the clearing of its bucket can be lost, so totals may be very slightly low right at a
+ * bucket boundary. That's fine for statistics.
+ */
+public class RollingWindow {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final long bucketMillis;
+    private final int buckets;
+
+    // For each bucket: the period it holds (the time divided by bucketMillis), its count and its sum.
+    private final AtomicLongArray periods;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray sums;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param bucketMillis How much time each bucket covers.
+     * @param buckets      How many buckets the window spans.
+     */
+    public RollingWindow(long bucketMillis, int buckets) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = buckets;
+        this.periods = new AtomicLongArray(buckets);
+        this.counts = new AtomicLongArray(buckets);
+        this.sums = new AtomicLongArray(buckets);
+        for (int i = 0; i < buckets; i++) {
+            periods.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Records one event.
+     *
+     * @param nowMillis The current time.
+     * @param amount    The amount the event carries, added to the window's sum.
+     */
+    public void record(long nowMillis, long amount) {
+        long period = nowMillis / bucketMillis;
+        int index = (int) (period % buckets);
+
+        long held = periods.get(index);
+        if (held < period && periods.compareAndSet(index, held, period)) {
+            counts.set(index, 0);
+            sums.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+        sums.addAndGet(index, amount);
+    }
+
+    /**
+     * @return How many events were recorded within the window, up to the given time.
+     */
+    public long getCount(long nowMillis) {
+        return total(counts, nowMillis);
+    }
+
+    /**
+     * @return The sum of the amounts recorded within the window, up to the given time.
+     */
+    public long getSum(long nowMillis) {
+        return total(sums, nowMillis);
+    }
+
+    private long total(AtomicLongArray values, long nowMillis) {
+        long period = nowMillis / bucketMillis;
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            long held = periods.get(i);
+            if (held <= period && held > period - buckets) {
+                total += values.get(i);
+            }
+        }
+        return total;
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @return How much time the window spans, in milliseconds.
+     */
+    public long getSpanMillis() {
+        return bucketMillis * buckets;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.storage.DataStore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches for storage calls which block the server thread for longer than a threshold. Each slow call is
+ * counted against the code that made it, and logged (at most once a minute per call site) with its key and
+ * duration, so blocking I/O that creeps into the main thread shows up in the server log.
+ */
+public class StorageWatchdog {
+
+    /*
+     * Fields & Constants
+     */
+
+    // How many frames of the caller to show, starting at the first frame outside the storage wrappers.
+    private static final int CALL_SITE_DEPTH = 3;
+    // Frames in these packages are the wrappers around a storage call, not the code that made it. Managers
+    // are included since every save goes through a few of their methods first.
+    private static final String[] WRAPPER_PACKAGES =
+        {"tech.mcprison.prison.ranks.metrics.", "tech.mcprison.prison.ranks.storage.",
+            "tech.mcprison.prison.ranks.managers."};
+    private static final long LOG_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Thread serverThread;
+    private final long thresholdNanos;
+    private final ConcurrentMap<String, CallSite> callSites = new ConcurrentHashMap<>();
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param serverThread    The server's main thread. Calls from any other thread are ignored.
+     * @param thresholdMillis Calls taking longer than this are reported.
+     */
+    public StorageWatchdog(Thread serverThread, long thresholdMillis) {
+        this.serverThread = serverThread;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Wraps a store so that its calls are watched.
+     *
+     * @param store The store to watch.
+     * @param name  The name of the store, as shown in the log.
+     * @return The watched store.
+     */
+    public <T> DataStore<T> watch(DataStore<T> store, String name) {
+        return new WatchedDataStore<>(store, name, this);
+    }
+
+    /**
+     * @return true if the current thread is the one being watched.
+     */
+    boolean isWatchedThread() {
+        return Thread.currentThread() == serverThread;
+    }
+
+    /**
+     * Reports a storage call which ran on the server thread.
+     *
+     * @param operation The name of the call, e.g. "save".
+     * @param store     The name of the store.
+     * @param key       The key involved, or a description of it for bulk calls.
+     * @param nanos     How long the call took.
+     */
+    void report(String operation, String store, String key, long nanos) {
+        if (nanos < thresholdNanos) {
+            return;
+        }
+
+        String location = findCallSite(new Throwable().getStackTrace());
+        CallSite site = callSites.computeIfAbsent(location, CallSite::new);
+        site.count.increment();
+        site.totalNanos.add(nanos);
+        site.maxNanos.accumulateAndGet(nanos, Math::max);
+
+        long now = System.currentTimeMillis();
+        long last = site.lastLogged.get();
+        if (now - last >= LOG_INTERVAL_MILLIS && site.lastLogged.compareAndSet(last, now)) {
+            Output.get().logWarn(String.format(
+                "Storage call blocked the server thread for %.1fms: %s %s '%s' at %s (%d slow calls from here so far)",
+                LatencyHistogram.toMillis(nanos), operation, store, key, location,
+                site.count.sum()));
+        }
+    }
+
+    /**
+     * Describes the code that made a storage call: the first few frames outside the storage wrappers and the
+     * managers.
+     *
+     * @param stack The stack at the storage call.
+     * @return The frames, innermost first.
+     */
+    static String findCallSite(StackTraceElement[] stack) {
+        StringBuilder builder = new StringBuilder();
+        int shown = 0;
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (shown == 0 && isWrapper(className)) {
+                continue;
+            }
+
+            if (shown > 0) {
+                builder.append(" <- ");
+            }
+            builder.append(className.substring(className.lastIndexOf('.') + 1)).append('.')
+                .append(frame.getMethodName()).append(':').append(frame.getLineNumber());
+            if (++shown == CALL_SITE_DEPTH) {
+                break;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean isWrapper(String className) {
+        for (String wrapper : WRAPPER_PACKAGES) {
+            if (className.startsWith(wrapper)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @return Every call site that has blocked the server thread, worst first (by total time blocked).
+     */
+    public List<CallSite> getCallSites() {
+        List<CallSite> ret = new ArrayList<>(callSites.values());
+        ret.sort(Comparator.comparingLong(CallSite::getTotalNanos).reversed());
+        return ret;
+    }
+
+    public long getThresholdNanos() {
+        return thresholdNanos;
+    }
+
+    /**
+     * The running totals for one place in the code that made slow storage calls.
+     */
+    public static class CallSite {
+
+        private final String location;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong lastLogged = new AtomicLong();
+
+        CallSite(String location) {
+            this.location = location;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+
+}
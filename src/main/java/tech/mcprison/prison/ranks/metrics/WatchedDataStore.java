@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import tech.mcprison.prison.ranks.storage.DataStore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Wraps a {@link DataStore} and reports calls made from the server thread to a {@link StorageWatchdog}.
+ * Calls from other threads pass straight through.
+ *
+ * @param <T> The type of object stored.
+ */
+class WatchedDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final DataStore<T> delegate;
+    private final String name;
+    private final StorageWatchdog watchdog;
+
+    /*
+     * Constructor
+     */
+
+    WatchedDataStore(DataStore<T> delegate, String name, StorageWatchdog watchdog) {
+        this.delegate = delegate;
+        this.name = name;
+        this.watchdog = watchdog;
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public Optional<T> load(String key) throws IOException {
+        if (!watchdog.isWatchedThread()) {
+            return delegate.load(key);
+        }
+
+        long start = System.nanoTime();
+        try {
+            return delegate.load(key);
+        } finally {
+            watchdog.report("load", name, key, System.nanoTime() - start);
+        }
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        if (!watchdog.isWatchedThread()) {
+            return delegate.loadAll();
+        }
+
+        long start = System.nanoTime();
+        try {
+            return delegate.loadAll();
+        } finally {
+            watchdog.report("loadAll", name, "*", System.nanoTime() - start);
+        }
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        if (!watchdog.isWatchedThread()) {
+            delegate.save(key, value);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            delegate.save(key, value);
+        } finally {
+            watchdog.report("save", name, key, System.nanoTime() - start);
+        }
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        if (!watchdog.isWatchedThread()) {
+            delegate.saveAll(values);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            delegate.saveAll(values);
+        } finally {
+            watchdog.report("saveAll", name, values.size() + " objects",
+                System.nanoTime() - start);
+        }
+    }
+
+    @Override public void remove(String key) throws IOException {
+        if (!watchdog.isWatchedThread()) {
+            delegate.remove(key);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            delegate.remove(key);
+        } finally {
+            watchdog.report("remove", name, key, System.nanoTime() - start);
+        }
+    }
+
+}
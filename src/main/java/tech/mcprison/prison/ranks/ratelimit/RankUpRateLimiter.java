@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.ratelimit;
+
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often each player may try to rank up, so that macros can't hammer the economy plugin and
+ * storage. Each player has a token bucket for each ladder, sized by the ranks config.
+ * <p>
+ * Once a player has a bucket, checking it allocates nothing: the buckets for all their ladders are kept in
+ * arrays indexed by ladder ID. Buckets which have had time to refill completely are swept out now and then.
+ */
+public class RankUpRateLimiter {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private final RanksConfig config;
+    private final Map<UUID, Buckets> players = new ConcurrentHashMap<>();
+    private final AtomicLong throttled = new AtomicLong();
+    private volatile long lastSweep = System.nanoTime();
+
+    /*
+     * Constructor
+     */
+
+    public RankUpRateLimiter(RanksConfig config) {
+        this.config = config;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Takes a token from a player's bucket for a ladder, if there's one to take.
+     *
+     * @param uid    The player's UUID.
+     * @param ladder The ladder they're trying to rank up on.
+     * @return true if the rank-up may go ahead, false if the player should be throttled.
+     */
+    public boolean tryAcquire(UUID uid, RankLadder ladder) {
+        return tryAcquire(uid, ladder, System.nanoTime());
+    }
+
+    /**
+     * As {@link #tryAcquire(UUID, RankLadder)}, at a given time from {@link System#nanoTime()}.
+     */
+    boolean tryAcquire(UUID uid, RankLadder ladder, long now) {
+        RanksConfig.RateLimit limit = config.getRankupLimit(ladder.name);
+        if (limit == null || limit.burst <= 0) {
+            return true;
+        }
+
+        if (now - lastSweep > SWEEP_INTERVAL) {
+            sweep(now);
+        }
+
+        Buckets buckets = players.get(uid);
+        if (buckets == null) {
+            buckets = players.computeIfAbsent(uid, key -> new Buckets());
+        }
+        if (buckets.tryAcquire(ladder.id, limit, now)) {
+            return true;
+        }
+        throttled.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Drops the buckets of players who haven't tried to rank up for long enough that every one of their buckets
+     * would be full anyway.
+     */
+    private void sweep(long now) {
+        lastSweep = now;
+        players.values().removeIf(buckets -> buckets.isIdle(now));
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    /**
+     * @return How many rank-ups have been throttled since the server started.
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * @return How many players currently have buckets.
+     */
+    public int getTrackedPlayers() {
+        return players.size();
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * One player's buckets, by ladder ID.
+     */
+    private static class Buckets {
+
+        private double[] tokens = new double[0];
+        private long[] updated = new long[0];
+        // How long after it was updated each bucket is full again, at the rate it was last used with.
+        private long[] refill = new long[0];
+        private boolean[] used = new boolean[0];
+
+        synchronized boolean tryAcquire(int ladderId, RanksConfig.RateLimit limit, long now) {
+            if (ladderId >= tokens.length) {
+                int length = Math.max(ladderId + 1, tokens.length * 2);
+                tokens = Arrays.copyOf(tokens, length);
+                updated = Arrays.copyOf(updated, length);
+                refill = Arrays.copyOf(refill, length);
+                used = Arrays.copyOf(used, length);
+            }
+
+            double available;
+            if (!used[ladderId]) {
+                used[ladderId] = true;
+                available = limit.burst;
+            } else {
+                double refilled = (now - updated[ladderId]) / 1e9 * limit.perSecond;
+                available = Math.min(limit.burst, tokens[ladderId] + refilled);
+            }
+            updated[ladderId] = now;
+
+            boolean acquired = available >= 1;
+            tokens[ladderId] = acquired ? available - 1 : available;
+            refill[ladderId] = refillTime(limit, tokens[ladderId]);
+            return acquired;
+        }
+
+        private static long refillTime(RanksConfig.RateLimit limit, double tokens) {
+            double missing = limit.burst - tokens;
+            if (missing <= 0) {
+                return 0;
+            }
+            if (limit.perSecond <= 0) {
+                return Long.MAX_VALUE; // It never refills, so it has to be kept.
+            }
+            // Saturates at Long.MAX_VALUE for rates so slow it makes no difference.
+            return (long) Math.ceil(missing / limit.perSecond * 1e9);
+        }
+
+        /**
+         * @return Whether every bucket the player has used has had time to refill completely, so that dropping
+         * them makes no difference.
+         */
+        synchronized boolean isIdle(long now) {
+            for (int i = 0; i < used.length; i++) {
+                if (used[i] && now - updated[i] < refill[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.simulation;
+
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulates a population of players earning money and ranking up a ladder, to see how long each rank takes
+ * to reach before any costs are changed on the live server.
+ * <p>
+ * Each player earns at their own hourly rate, drawn from a log-normal distribution around the median income,
+ * and their earnings vary from hour to hour around that rate. They rank up as soon as they can afford to.
+ * The ladder's ranks and costs are copied when the simulation is created, so it can run on any thread.
+ * Players are simulated in parallel on a fork-join pool; each has its own random generator seeded from the
+ * simulation's seed and their number, so the same seed always gives the same results. The pool leaves a core
+ * free for the server, and the hours are counted in at most {@link #HOUR_BUCKETS} buckets per rank, so the
+ * memory doesn't grow with the hours simulated.
+ */
+public class EconomySimulation {
+
+    /*
+     * Fields & Constants
+     */
+
+    // How much a player's earnings vary from one hour to the next, as the sigma of a log-normal.
+    private static final double HOURLY_VOLATILITY = 0.5;
+    // Players are split across tasks until there are at most this many in each.
+    private static final int MIN_PLAYERS_PER_TASK = 1024;
+
+    // The most players and hours a simulation may be asked for: a million players, over a year of play.
+    public static final int MAX_PLAYERS = 1_000_000;
+    public static final int MAX_HOURS = 24 * 365;
+    // How many buckets the hours are counted in, for each rank. Percentiles are accurate to a bucket's width.
+    public static final int HOUR_BUCKETS = 256;
+
+    private final String[] rankNames;
+    private final double[] costs;
+    private final int players;
+    private final double medianIncome;
+    private final double incomeSpread;
+    private final int maxHours;
+    private final int hoursPerBucket;
+    private final long seed;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Copies the ranks of a ladder to simulate. This has to be called on the server thread.
+     *
+     * @param ladder       The ladder to simulate. Players start on its first rank.
+     * @param costScale    What to multiply each rank's cost by, to try out new costs.
+     * @param players      How many players to simulate.
+     * @param medianIncome The median player's income per hour.
+     * @param incomeSpread How much incomes differ between players, as the sigma of a log-normal. 0 gives
+     *                     every player the median income.
+     * @param maxHours     How many hours of play to simulate at most.
+     * @param seed         The seed for the random generators.
+     * @throws IllegalArgumentException If there are more than {@link #MAX_PLAYERS} players or
+     *                                  {@link #MAX_HOURS} hours.
+     */
+    public EconomySimulation(RankLadder ladder, double costScale, int players, double medianIncome,
+        double incomeSpread, int maxHours, long seed) {
+        if (players > MAX_PLAYERS || maxHours > MAX_HOURS) {
+            throw new IllegalArgumentException(String
+                .format("At most %d players and %d hours can be simulated.", MAX_PLAYERS,
+                    MAX_HOURS));
+        }
+
+        // The ladder's list isn't kept in position order, so sort a copy to climb the ranks in order.
+        List<RankLadder.PositionRank> positions = new ArrayList<>(ladder.ranks);
+        positions.sort(Comparator.comparingInt(RankLadder.PositionRank::getPosition));
+
+        List<String> names = new ArrayList<>();
+        List<Double> rankCosts = new ArrayList<>();
+        for (RankLadder.PositionRank positionRank : positions) {
+            Rank rank = PrisonRanks.getInstance().getRankManager().getRank(positionRank.getRankId())
+                .orElse(null);
+            if (rank != null) {
+                names.add(rank.name);
+                rankCosts.add(rank.cost * costScale);
+            }
+        }
+
+        this.rankNames = names.toArray(new String[0]);
+        this.costs = rankCosts.stream().mapToDouble(Double::doubleValue).toArray();
+        this.players = players;
+        this.medianIncome = medianIncome;
+        this.incomeSpread = incomeSpread;
+        this.maxHours = maxHours;
+        this.hoursPerBucket = (maxHours + HOUR_BUCKETS) / HOUR_BUCKETS;
+        this.seed = seed;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Runs the simulation on a fork-join pool using every core but one, and blocks until it is finished.
+     *
+     * @return The results.
+     */
+    public Result run() {
+        long start = System.nanoTime();
+        ForkJoinPool pool =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        Tally tally;
+        try {
+            int perTask = Math.max(MIN_PLAYERS_PER_TASK, players / (pool.getParallelism() * 4) + 1);
+            tally = pool.invoke(new Simulate(0, players, perTask));
+        } finally {
+            pool.shutdown();
+        }
+
+        int ranks = rankNames.length;
+        long[] reached = new long[ranks];
+        double[][] percentiles = new double[ranks][];
+        for (int i = 0; i < ranks; i++) {
+            for (int count : tally.hoursToRank[i]) {
+                reached[i] += count;
+            }
+            percentiles[i] = new double[] {percentile(tally.hoursToRank[i], reached[i], 0.1),
+                percentile(tally.hoursToRank[i], reached[i], 0.5),
+                percentile(tally.hoursToRank[i], reached[i], 0.9)};
+        }
+
+        return new Result(rankNames, costs, players, tally.rankUps, reached, percentiles,
+            (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Plays one player from the first rank until they reach the top, or run out of hours.
+     */
+    private void simulatePlayer(int player, Tally tally) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + player);
+        double rate = medianIncome * Math.exp(incomeSpread * gaussian(random));
+        // Keeps the mean hourly earnings at the player's rate, whatever the volatility.
+        double drift = -HOURLY_VOLATILITY * HOURLY_VOLATILITY / 2;
+
+        double balance = 0;
+        int position = 0;
+        int top = costs.length - 1;
+        for (int hour = 1; hour <= maxHours && position < top; hour++) {
+            balance += rate * Math.exp(drift + HOURLY_VOLATILITY * gaussian(random));
+            while (position < top && balance >= costs[position + 1]) {
+                balance -= costs[position + 1];
+                position++;
+                tally.hoursToRank[position][hour / hoursPerBucket]++;
+                tally.rankUps++;
+            }
+        }
+    }
+
+    /**
+     * Draws from a standard normal distribution with the Box-Muller transform.
+     */
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble(); // In (0, 1], so the log is finite
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    /**
+     * @return The number of hours by which the given fraction of the players who reached a rank had reached it,
+     * or -1 if nobody did. This is the last hour of the bucket the fraction falls in.
+     */
+    private double percentile(int[] buckets, long total, double fraction) {
+        if (total == 0) {
+            return -1;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= target) {
+                return Math.min(maxHours, (bucket + 1) * hoursPerBucket - 1);
+            }
+        }
+        return maxHours;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * What a simulation found, for each rank of the ladder in order.
+     */
+    public static class Result {
+
+        public final String[] rankNames;
+        public final double[] costs;
+        public final int players;
+        public final long rankUps;
+        // How many players reached each rank within the simulated hours.
+        public final long[] reached;
+        // For each rank, the hours by which 10%, 50% and 90% of those who reached it had done so.
+        public final double[][] percentiles;
+        public final double elapsedSeconds;
+
+        public Result(String[] rankNames, double[] costs, int players, long rankUps, long[] reached,
+            double[][] percentiles, double elapsedSeconds) {
+            this.rankNames = rankNames;
+            this.costs = costs;
+            this.players = players;
+            this.rankUps = rankUps;
+            this.reached = reached;
+            this.percentiles = percentiles;
+            this.elapsedSeconds = elapsedSeconds;
+        }
+    }
+
+    /**
+     * Per rank, how many players reached it within each bucket of hours.
+     */
+    private class Tally {
+
+        final int[][] hoursToRank = new int[costs.length][(maxHours + hoursPerBucket) / hoursPerBucket];
+        long rankUps;
+
+        void add(Tally other) {
+            for (int i = 0; i < hoursToRank.length; i++) {
+                for (int bucket = 0; bucket < hoursToRank[i].length; bucket++) {
+                    hoursToRank[i][bucket] += other.hoursToRank[i][bucket];
+                }
+            }
+            rankUps += other.rankUps;
+        }
+
+    }
+
+    private class Simulate extends RecursiveTask<Tally> {
+
+        private final int from;
+        private final int to;
+        private final int perTask;
+
+        Simulate(int from, int to, int perTask) {
+            this.from = from;
+            this.to = to;
+            this.perTask = perTask;
+        }
+
+        @Override protected Tally compute() {
+            if (to - from <= perTask) {
+                Tally tally = new Tally();
+                for (int player = from; player < to; player++) {
+                    simulatePlayer(player, tally);
+                }
+                return tally;
+            }
+
+            int middle = (from + to) >>> 1;
+            Simulate left = new Simulate(from, middle, perTask);
+            left.fork();
+            Tally tally = new Simulate(middle, to, perTask).compute();
+            tally.add(left.join());
+            return tally;
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.store.Collection;
+import tech.mcprison.prison.store.Database;
+import tech.mcprison.prison.store.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A {@link DataStore} that keeps each object as a {@link Document} in one of Prison's {@link Collection}s.
+ * <p>
+ * The collection is only created when the first object is written to it. Until then it reads as empty, so
+ * stores which a server never writes to don't leave empty collections behind.
+ *
+ * @param <T> The type of object stored.
+ */
+public class CollectionDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final Database database;
+    private final String name;
+    private final Function<Document, T> reader;
+    private final Function<T, Document> writer;
+    private volatile Collection collection;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param database The database to keep the collection in.
+     * @param name     The name of the {@link Collection} to store objects in.
+     * @param reader   Converts a stored document back into an object.
+     * @param writer   Converts an object into a document to be stored.
+     */
+    public CollectionDataStore(Database database, String name, Function<Document, T> reader,
+        Function<T, Document> writer) {
+        this.database = database;
+        this.name = name;
+        this.reader = reader;
+        this.writer = writer;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @param create Whether to create the collection if it doesn't exist yet.
+     * @return The collection, or null if it doesn't exist and wasn't to be created.
+     */
+    private Collection getCollection(boolean create) {
+        Collection ret = collection;
+        if (ret != null) {
+            return ret;
+        }
+        synchronized (this) {
+            if (collection == null) {
+                Optional<Collection> existing = database.getCollection(name);
+                if (!existing.isPresent() && create) {
+                    database.createCollection(name);
+                    existing = database.getCollection(name);
+                    if (!existing.isPresent()) {
+                        throw new IllegalStateException("Could not create the collection " + name);
+                    }
+                }
+                collection = existing.orElse(null);
+            }
+            return collection;
+        }
+    }
+
+    @Override public Optional<T> load(String key) {
+        Collection collection = getCollection(false);
+        if (collection == null) {
+            return Optional.empty();
+        }
+        Optional<Document> document = collection.get(key);
+        if (!document.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(reader.apply(document.get()));
+    }
+
+    @Override public List<T> loadAll() {
+        Collection collection = getCollection(false);
+        if (collection == null) {
+            return new ArrayList<>();
+        }
+        List<Document> documents = collection.getAll();
+        List<T> ret = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            ret.add(reader.apply(document));
+        }
+        return ret;
+    }
+
+    @Override public void save(String key, T value) {
+        getCollection(true).insert(key, writer.apply(value));
+    }
+
+    @Override public void saveAll(Map<String, T> values) {
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            save(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override public void remove(String key) {
+        Collection collection = getCollection(false);
+        if (collection != null) {
+            collection.remove(key);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.store.Database;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the ranks data in Prison's own document storage, with one collection each for
+ * ranks and ladders. Players are spread over a set of sharded collections. This is the default backend.
+ */
+public class CollectionStorageBackend implements StorageBackend {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final String NAME = "collection";
+
+    // Players are spread over this many collections, so that no one directory holds them all.
+    private static final int PLAYER_SHARDS = 256;
+
+    private DataStore<Rank> ranks;
+    private DataStore<RankLadder> ladders;
+    private MigratingPlayerStore players;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Collections are only created once something is written to them, so a server using another backend,
+     * which only reads from here to copy its data over, doesn't gain any.
+     *
+     * @param database The database to keep the collections in.
+     */
+    public CollectionStorageBackend(Database database) {
+        this.ranks = new CollectionDataStore<>(database, "ranks", Rank::new, Rank::toDocument);
+        this.ladders =
+            new CollectionDataStore<>(database, "ladders", RankLadder::new, RankLadder::toDocument);
+
+        List<DataStore<RankPlayer>> shards = new ArrayList<>(PLAYER_SHARDS);
+        for (int i = 0; i < PLAYER_SHARDS; i++) {
+            shards.add(new CollectionDataStore<>(database, String.format("players_%02x", i),
+                RankPlayer::new, RankPlayer::toDocument));
+        }
+        // Older versions kept every player in the one "players" collection.
+        DataStore<RankPlayer> legacyPlayers =
+            new CollectionDataStore<>(database, "players", RankPlayer::new, RankPlayer::toDocument);
+        this.players = new MigratingPlayerStore(this, new ShardedDataStore<>(shards), legacyPlayers);
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public void transaction(Transaction transaction) throws IOException {
+        // Collections have no notion of transactions, so we just do the work.
+        transaction.run();
+    }
+
+    @Override public void close() {
+        // Prison manages the collections, so there's nothing for us to close.
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    @Override public String getName() {
+        return NAME;
+    }
+
+    @Override public DataStore<Rank> getRanks() {
+        return ranks;
+    }
+
+    @Override public DataStore<RankLadder> getLadders() {
+        return ladders;
+    }
+
+    @Override public MigratingPlayerStore getPlayers() {
+        return players;
+    }
+
+}
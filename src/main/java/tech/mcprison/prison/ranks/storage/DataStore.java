@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A keyed store for one type of ranks data (ranks, ladders or players).
+ * The managers talk to this rather than to a specific database, so the backing storage can be swapped out.
+ *
+ * @param <T> The type of object stored.
+ */
+public interface DataStore<T> {
+
+    /**
+     * Loads a single object.
+     *
+     * @param key The key that the object is stored as. Case-sensitive.
+     * @return An optional containing the object, or empty if nothing is stored by that key.
+     * @throws IOException If the object could not be read.
+     */
+    Optional<T> load(String key) throws IOException;
+
+    /**
+     * Loads every object in this store.
+     *
+     * @return A list of every stored object. This will be empty, rather than null, if there's nothing stored.
+     * @throws IOException If the objects could not be read.
+     */
+    List<T> loadAll() throws IOException;
+
+    /**
+     * Hands every object in this store to a visitor, one at a time. Backends that can will read the objects
+     * in pages rather than all at once, so this runs in constant memory however much is stored; others fall
+     * back to {@link #loadAll()}.
+     *
+     * @param visitor Called once for each stored object.
+     * @throws IOException If the objects could not be read, or if the visitor failed.
+     */
+    default void forEach(Visitor<T> visitor) throws IOException {
+        for (T value : loadAll()) {
+            visitor.visit(value);
+        }
+    }
+
+    /**
+     * Writes an object, replacing whatever was stored by the same key.
+     *
+     * @param key   The key to store the object as. Case-sensitive.
+     * @param value The object to store.
+     * @throws IOException If the object could not be written.
+     */
+    void save(String key, T value) throws IOException;
+
+    /**
+     * Writes many objects at once. Backends that support it will do this as a single batch.
+     *
+     * @param values The objects to store, mapped by their keys.
+     * @throws IOException If one of the objects could not be written.
+     */
+    void saveAll(Map<String, T> values) throws IOException;
+
+    /**
+     * Removes an object. Nothing happens if the key isn't stored.
+     *
+     * @param key The key of the object to remove.
+     * @throws IOException If the object could not be removed.
+     */
+    void remove(String key) throws IOException;
+
+    /**
+     * Receives objects from {@link #forEach(Visitor)}.
+     *
+     * @param <T> The type of object stored.
+     */
+    @FunctionalInterface interface Visitor<T> {
+
+        void visit(T value) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The UUIDs of every player who has had a record, so that sparse player storage can tell a returning player
+ * whose record was pruned from one who has never joined before.
+ * <p>
+ * The UUIDs are held in a flat open-addressed table, 16 bytes a player, and appended to a file of raw UUIDs
+ * by {@link #flush()}. A partly written UUID at the end of the file, left by a crash, is cut off on load.
+ */
+public class KnownPlayers {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final int UUID_BYTES = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final File file;
+
+    // Pairs of most and least significant bits. Two zeroes mark an empty slot, so the nil UUID is kept aside.
+    private long[] table = new long[INITIAL_CAPACITY * 2];
+    private int size;
+    private boolean containsNil;
+
+    private final List<UUID> unsaved = new ArrayList<>();
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param file The file to load from and append to. It's created if it doesn't exist.
+     * @throws IOException If the file could not be read.
+     */
+    public KnownPlayers(File file) throws IOException {
+        this.file = file;
+        if (!file.isFile()) {
+            return;
+        }
+
+        long complete = file.length() / UUID_BYTES * UUID_BYTES;
+        if (complete != file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(complete);
+            }
+        }
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+            for (long i = 0; i < complete / UUID_BYTES; i++) {
+                insert(in.readLong(), in.readLong());
+            }
+        }
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @param uid The player's UUID.
+     * @return true if the player has been added, false otherwise.
+     */
+    public synchronized boolean contains(UUID uid) {
+        long msb = uid.getMostSignificantBits(), lsb = uid.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            return containsNil;
+        }
+        int mask = table.length / 2 - 1;
+        for (int slot = hash(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            long slotMsb = table[slot * 2], slotLsb = table[slot * 2 + 1];
+            if (slotMsb == msb && slotLsb == lsb) {
+                return true;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds a player. They're written to the file on the next {@link #flush()}.
+     *
+     * @param uid The player's UUID.
+     * @return true if the player is new, false if they were already known.
+     */
+    public synchronized boolean add(UUID uid) {
+        if (!insert(uid.getMostSignificantBits(), uid.getLeastSignificantBits())) {
+            return false;
+        }
+        unsaved.add(uid);
+        return true;
+    }
+
+    /**
+     * Appends the players added since the last flush to the file. This does I/O, so it shouldn't be called on
+     * the server thread.
+     *
+     * @throws IOException If the file could not be written. The players are kept to be written next time.
+     */
+    public void flush() throws IOException {
+        List<UUID> batch;
+        synchronized (this) {
+            if (unsaved.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(unsaved);
+            unsaved.clear();
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (UUID uid : batch) {
+                out.writeLong(uid.getMostSignificantBits());
+                out.writeLong(uid.getLeastSignificantBits());
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                unsaved.addAll(0, batch);
+            }
+            throw e;
+        }
+    }
+
+    public synchronized int size() {
+        return size + (containsNil ? 1 : 0);
+    }
+
+    private boolean insert(long msb, long lsb) {
+        if (msb == 0 && lsb == 0) {
+            boolean added = !containsNil;
+            containsNil = true;
+            return added;
+        }
+        if (size + 1 > table.length / 2 * 3 / 4) {
+            grow();
+        }
+
+        int mask = table.length / 2 - 1;
+        for (int slot = hash(msb, lsb) & mask; ; slot = (slot + 1) & mask) {
+            long slotMsb = table[slot * 2], slotLsb = table[slot * 2 + 1];
+            if (slotMsb == msb && slotLsb == lsb) {
+                return false;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                table[slot * 2] = msb;
+                table[slot * 2 + 1] = lsb;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        size = 0;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i] != 0 || old[i + 1] != 0) {
+                insert(old[i], old[i + 1]);
+            }
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
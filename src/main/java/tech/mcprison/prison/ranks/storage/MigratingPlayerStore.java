@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The players store of a backend, which moves players from their old half-UUID keys
+ * ({@link PlayerKeys#legacyKey(UUID)}) to full-UUID keys ({@link PlayerKeys#key(UUID)}) while the server runs.
+ * <p>
+ * Until {@link #migrate(Progress)} has finished, reads fall back to the old key when the new one isn't
+ * there, and writes clear out the old key, so callers only ever deal in new keys. Afterwards every call goes
+ * straight to the backing store.
+ * <p>
+ * Writes and each step of the migration hold the backend's transaction lock and then this store's monitor,
+ * always in that order, since saves made within a backend transaction already hold the backend's lock.
+ */
+public class MigratingPlayerStore implements DataStore<RankPlayer> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final StorageBackend backend;
+    private final DataStore<RankPlayer> current;
+    private final DataStore<RankPlayer> legacy;
+    private volatile boolean migrated;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param backend The backend the stores belong to, whose transactions are used as the outer lock.
+     * @param current The store that players are kept in by their full-UUID keys.
+     * @param legacy  The store that players were kept in by their old keys. This may be the same store.
+     */
+    public MigratingPlayerStore(StorageBackend backend, DataStore<RankPlayer> current,
+        DataStore<RankPlayer> legacy) {
+        this.backend = backend;
+        this.current = current;
+        this.legacy = legacy;
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public Optional<RankPlayer> load(String key) throws IOException {
+        Optional<RankPlayer> player = current.load(key);
+        if (player.isPresent() || migrated) {
+            return player;
+        }
+
+        UUID uid = PlayerKeys.uidOf(key);
+        return uid == null ? player : legacy.load(PlayerKeys.legacyKey(uid));
+    }
+
+    /**
+     * This takes no lock. The old keys are read before the new ones, so a player moved part way through is
+     * still seen under one of them.
+     */
+    @Override public List<RankPlayer> loadAll() throws IOException {
+        if (migrated) {
+            return current.loadAll();
+        }
+
+        Map<UUID, RankPlayer> players = new LinkedHashMap<>();
+        if (legacy != current) {
+            for (RankPlayer player : legacy.loadAll()) {
+                players.put(player.uid, player);
+            }
+            for (RankPlayer player : current.loadAll()) {
+                players.put(player.uid, player);
+            }
+        } else {
+            for (RankPlayer player : current.loadAll()) {
+                if (players.put(player.uid, player) != null) {
+                    // Stored under both keys, which can only happen after a crash part way through a move.
+                    // Which copy is which can't be told from the values, so ask for the new key directly.
+                    current.load(PlayerKeys.key(player.uid))
+                        .ifPresent(newest -> players.put(newest.uid, newest));
+                }
+            }
+        }
+        return new ArrayList<>(players.values());
+    }
+
+    /**
+     * Until the migration has finished, this has to load every player at once to weed out duplicates.
+     */
+    @Override public void forEach(Visitor<RankPlayer> visitor) throws IOException {
+        if (migrated) {
+            current.forEach(visitor);
+            return;
+        }
+        for (RankPlayer player : loadAll()) {
+            visitor.visit(player);
+        }
+    }
+
+    @Override public void save(String key, RankPlayer value) throws IOException {
+        locked(() -> {
+            current.save(key, value);
+            if (!migrated) {
+                legacy.remove(PlayerKeys.legacyKey(value.uid));
+            }
+        });
+    }
+
+    @Override public void saveAll(Map<String, RankPlayer> values) throws IOException {
+        locked(() -> {
+            current.saveAll(values);
+            if (!migrated) {
+                for (RankPlayer player : values.values()) {
+                    legacy.remove(PlayerKeys.legacyKey(player.uid));
+                }
+            }
+        });
+    }
+
+    @Override public void remove(String key) throws IOException {
+        locked(() -> {
+            current.remove(key);
+            UUID uid = PlayerKeys.uidOf(key);
+            if (!migrated && uid != null) {
+                legacy.remove(PlayerKeys.legacyKey(uid));
+            }
+        });
+    }
+
+    /**
+     * Moves every player still stored under an old key to its new key. Players are moved one at a time, so
+     * saves from the server can carry on in between, and a player saved during the migration is never
+     * overwritten by their old record. Once this returns, the store stops looking at old keys.
+     *
+     * @param progress Told how many players have been checked, every so often.
+     * @return The number of players moved.
+     * @throws IOException If a player could not be read or moved. The migration can be run again.
+     */
+    public int migrate(Progress progress) throws IOException {
+        int[] counts = new int[2]; // checked, moved
+        legacy.forEach(player -> {
+            locked(() -> {
+                String key = PlayerKeys.key(player.uid);
+                if (!current.load(key).isPresent()) {
+                    current.save(key, player);
+                    counts[1]++;
+                }
+                legacy.remove(PlayerKeys.legacyKey(player.uid));
+            });
+            if (++counts[0] % 10000 == 0) {
+                progress.update(counts[0], counts[1]);
+            }
+        });
+        migrated = true;
+        return counts[1];
+    }
+
+    /**
+     * Runs work holding the backend's transaction lock and then this store's monitor.
+     */
+    private void locked(StorageBackend.Transaction work) throws IOException {
+        backend.transaction(() -> {
+            synchronized (this) {
+                work.run();
+            }
+        });
+    }
+
+    /**
+     * Marks the store as migrated without checking, e.g. when a previous run already finished.
+     */
+    public void setMigrated() {
+        this.migrated = true;
+    }
+
+    public boolean isMigrated() {
+        return migrated;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * Told how far along a migration is.
+     */
+    @FunctionalInterface public interface Progress {
+
+        void update(int checked, int moved);
+
+    }
+
+}
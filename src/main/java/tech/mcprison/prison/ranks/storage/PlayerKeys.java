@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import java.util.UUID;
+
+/**
+ * The keys that players are stored under.
+ */
+public class PlayerKeys {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final String PREFIX = "player_";
+
+    /*
+     * Constructor
+     */
+
+    private PlayerKeys() {
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * @param uid The player's UUID.
+     * @return The key the player is stored under.
+     */
+    public static String key(UUID uid) {
+        return PREFIX + uid;
+    }
+
+    /**
+     * Older versions kept only the low half of the UUID in the key, which is not guaranteed to be unique.
+     *
+     * @param uid The player's UUID.
+     * @return The key the player was stored under by older versions.
+     */
+    public static String legacyKey(UUID uid) {
+        return PREFIX + uid.getLeastSignificantBits();
+    }
+
+    /**
+     * @param key A key made by {@link #key(UUID)}.
+     * @return The UUID in the key, or null if it isn't a full-UUID player key.
+     */
+    public static UUID uidOf(String key) {
+        if (!key.startsWith(PREFIX)) {
+            return null;
+        }
+        try {
+            return UUID.fromString(key.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
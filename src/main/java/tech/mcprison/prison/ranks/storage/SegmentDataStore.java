@@ -0,0 +1,515 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.codec.Codec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link DataStore} which packs many small objects into a fixed number of segment files, rather than
+ * giving each its own file. Every object is encoded with its {@link Codec} and deflated against a preset
+ * dictionary of the text its records usually contain, which is what makes compressing records of a few dozen
+ * bytes worthwhile.
+ * <p>
+ * Segments are append-only logs. A save appends a new record and a removal appends a tombstone, and an
+ * in-memory index of each key's latest record gives random access to it. Superseded records are reclaimed in
+ * the background by rewriting a segment once most of it is dead.
+ *
+ * @param <T> The type of object stored.
+ */
+public class SegmentDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final int MAGIC = 0x50525331; // "PRS1"
+    private static final int HEADER_SIZE = 4;
+    private static final int TOMBSTONE = -1;
+
+    // A segment is compacted once it holds at least this much dead space, and more dead space than live.
+    private static final long COMPACT_MIN_DEAD_BYTES = 16 * 1024;
+
+    private final Codec<T> codec;
+    private final byte[] dictionary;
+    private final List<Segment> segments;
+    private final ScheduledExecutorService compactor;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Opens the segments in a folder, creating them if they don't exist, and indexes their contents.
+     *
+     * @param folder       The folder to keep the segment files in.
+     * @param codec        The codec used to encode objects.
+     * @param segmentCount How many segments to spread the objects over. This can't change once data is written.
+     * @param dictionary   Text that often appears in the encoded objects, to prime the compressor with.
+     * @throws IOException If a segment could not be opened or read.
+     */
+    public SegmentDataStore(File folder, Codec<T> codec, int segmentCount, byte[] dictionary)
+        throws IOException {
+        this.codec = codec;
+        this.dictionary = dictionary;
+
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder);
+        }
+        this.segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(new Segment(new File(folder, String.format("segment-%02x.dat", i))));
+        }
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("prison-ranks-compactor").setDaemon(true)
+                .build());
+        compactor.scheduleWithFixedDelay(this::compactAll, 5, 5, TimeUnit.MINUTES);
+    }
+
+    /*
+     * Methods
+     */
+
+    private Segment segmentFor(String key) {
+        return segments.get(Math.floorMod(key.hashCode(), segments.size()));
+    }
+
+    @Override public Optional<T> load(String key) throws IOException {
+        Segment segment = segmentFor(key);
+        String json;
+        synchronized (segment) {
+            json = segment.read(key);
+        }
+        return json == null ? Optional.empty() : Optional.of(codec.fromJson(json));
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        List<T> ret = new ArrayList<>();
+        forEach(ret::add);
+        return ret;
+    }
+
+    /**
+     * Reads one segment at a time, so only a segment's worth of objects is held at once, and the others can
+     * be used while the visitor works.
+     */
+    @Override public void forEach(Visitor<T> visitor) throws IOException {
+        for (Segment segment : segments) {
+            List<String> page;
+            synchronized (segment) {
+                page = segment.readAll();
+            }
+            for (String json : page) {
+                visitor.visit(codec.fromJson(json));
+            }
+        }
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        Segment segment = segmentFor(key);
+        byte[] json = codec.toJson(value).getBytes(StandardCharsets.UTF_8);
+        synchronized (segment) {
+            segment.append(Collections.singletonList(key), Collections.singletonList(json));
+        }
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        // Encode outside the locks, then append each segment's share in one write.
+        Map<Segment, List<String>> keys = new LinkedHashMap<>();
+        Map<Segment, List<byte[]>> data = new HashMap<>();
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            Segment segment = segmentFor(entry.getKey());
+            keys.computeIfAbsent(segment, s -> new ArrayList<>()).add(entry.getKey());
+            data.computeIfAbsent(segment, s -> new ArrayList<>())
+                .add(codec.toJson(entry.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (Map.Entry<Segment, List<String>> entry : keys.entrySet()) {
+            Segment segment = entry.getKey();
+            synchronized (segment) {
+                segment.append(entry.getValue(), data.get(segment));
+            }
+        }
+    }
+
+    @Override public void remove(String key) throws IOException {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.append(Collections.singletonList(key), Collections.singletonList(null));
+        }
+    }
+
+    /**
+     * @return The number of objects stored.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.index.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The total size of the segment files, in bytes.
+     */
+    public long getDiskBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return How many bytes of the segment files hold current records. The rest is awaiting compaction.
+     */
+    public long getLiveBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.liveBytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Compacts every segment with enough dead space to be worth it.
+     */
+    public void compactAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                long dead = segment.length - HEADER_SIZE - segment.liveBytes;
+                if (dead < COMPACT_MIN_DEAD_BYTES || dead < segment.liveBytes) {
+                    continue;
+                }
+                try {
+                    segment.compact();
+                } catch (IOException e) {
+                    Output.get().logError("Could not compact " + segment.file.getName() + ".", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops compaction, closes the segment files and frees each segment's compressor. The store can't be used
+     * afterwards.
+     */
+    public void close() {
+        compactor.shutdownNow();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                // The compressors hold native memory, which isn't freed until they're collected otherwise.
+                segment.deflater.end();
+                segment.inflater.end();
+                try {
+                    segment.raf.close();
+                } catch (IOException e) {
+                    Output.get().logWarn("Could not close " + segment.file.getName() + ".", e);
+                }
+            }
+        }
+    }
+
+    private byte[] compress(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setDictionary(dictionary);
+        deflater.setInput(raw);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+        byte[] buffer = new byte[256];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] decompress(Inflater inflater, byte[] data, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setDictionary(dictionary);
+        inflater.setInput(data);
+        byte[] raw = new byte[rawLength];
+        try {
+            if (inflater.inflate(raw) != rawLength) {
+                throw new IOException("Record is shorter than expected");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Record is corrupt", e);
+        }
+        return raw;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * Where a key's latest record is in its segment.
+     */
+    private static class Entry {
+
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * One segment file and its index. All access must be synchronized on the segment.
+     * <p>
+     * Each record is laid out as: key length, key (UTF-8), data length, and then, unless the data length
+     * is {@link #TOMBSTONE}, the uncompressed length followed by the compressed data.
+     */
+    private class Segment {
+
+        final File file;
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        final Inflater inflater = new Inflater(true);
+        RandomAccessFile raf;
+        Map<String, Entry> index = new HashMap<>();
+        long length;
+        long liveBytes;
+
+        Segment(File file) throws IOException {
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            if (raf.length() == 0) {
+                raf.writeInt(MAGIC);
+            }
+            scan();
+        }
+
+        /**
+         * Rebuilds the index by reading every record header. A record cut short by a crash is dropped.
+         */
+        private void scan() throws IOException {
+            index.clear();
+            liveBytes = 0;
+            long fileLength = raf.length();
+            long position = HEADER_SIZE;
+
+            try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException(file.getName() + " is not a ranks segment file");
+                }
+
+                while (position < fileLength) {
+                    long start = position;
+                    try {
+                        byte[] key = new byte[in.readInt()];
+                        in.readFully(key);
+                        int dataLength = in.readInt();
+                        int recordLength = 8 + key.length;
+                        if (dataLength != TOMBSTONE) {
+                            in.readInt();
+                            skipFully(in, dataLength);
+                            recordLength += 4 + dataLength;
+                        }
+                        position += recordLength;
+
+                        String keyString = new String(key, StandardCharsets.UTF_8);
+                        Entry previous = dataLength == TOMBSTONE ? index.remove(keyString)
+                            : index.put(keyString, new Entry(start, recordLength));
+                        if (previous != null) {
+                            liveBytes -= previous.length;
+                        }
+                        if (dataLength != TOMBSTONE) {
+                            liveBytes += recordLength;
+                        }
+                    } catch (EOFException | NegativeArraySizeException e) {
+                        Output.get().logWarn(file.getName() + " ends with an incomplete record, "
+                            + "probably from a crash. It will be dropped.");
+                        raf.setLength(start);
+                        position = start;
+                        break;
+                    }
+                }
+            }
+            length = position;
+        }
+
+        private void skipFully(DataInputStream in, int bytes) throws IOException {
+            if (bytes < 0) {
+                throw new EOFException();
+            }
+            int remaining = bytes;
+            while (remaining > 0) {
+                int skipped = in.skipBytes(remaining);
+                if (skipped <= 0) {
+                    throw new EOFException();
+                }
+                remaining -= skipped;
+            }
+        }
+
+        String read(String key) throws IOException {
+            Entry entry = index.get(key);
+            return entry == null ? null : decode(readRecord(entry));
+        }
+
+        List<String> readAll() throws IOException {
+            List<String> ret = new ArrayList<>(index.size());
+            for (Entry entry : index.values()) {
+                ret.add(decode(readRecord(entry)));
+            }
+            return ret;
+        }
+
+        private byte[] readRecord(Entry entry) throws IOException {
+            byte[] record = new byte[entry.length];
+            raf.seek(entry.offset);
+            raf.readFully(record);
+            return record;
+        }
+
+        private String decode(byte[] record) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            in.skipBytes(in.readInt());
+            byte[] data = new byte[in.readInt()];
+            int rawLength = in.readInt();
+            in.readFully(data);
+            return new String(decompress(inflater, data, rawLength), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Appends records in a single write. A null value appends a tombstone for its key.
+         */
+        void append(List<String> keys, List<byte[]> values) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(buffer);
+            List<Entry> entries = new ArrayList<>(keys.size());
+
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] raw = values.get(i);
+                if (raw == null && !index.containsKey(keys.get(i))) {
+                    entries.add(null); // Nothing to remove.
+                    continue;
+                }
+
+                int start = out.size();
+                byte[] key = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                if (raw == null) {
+                    out.writeInt(TOMBSTONE);
+                } else {
+                    byte[] data = compress(deflater, raw);
+                    out.writeInt(data.length);
+                    out.writeInt(raw.length);
+                    out.write(data);
+                }
+                entries.add(new Entry(length + start, out.size() - start));
+            }
+            if (out.size() == 0) {
+                return;
+            }
+
+            raf.seek(length);
+            raf.write(buffer.toByteArray());
+            length += out.size();
+
+            for (int i = 0; i < keys.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry == null) {
+                    continue;
+                }
+                Entry previous = values.get(i) == null ? index.remove(keys.get(i))
+                    : index.put(keys.get(i), entry);
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+                if (values.get(i) != null) {
+                    liveBytes += entry.length;
+                }
+            }
+        }
+
+        /**
+         * Rewrites the segment with only its live records, then swaps it in place of the old file.
+         */
+        void compact() throws IOException {
+            File temp = new File(file.getParentFile(), file.getName() + ".compact");
+            Map<String, Entry> newIndex = new HashMap<>(index.size());
+
+            try (RandomAccessFile out = new RandomAccessFile(temp, "rw")) {
+                out.setLength(0);
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(buffer);
+                data.writeInt(MAGIC);
+                for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                    newIndex.put(entry.getKey(), new Entry(data.size(), entry.getValue().length));
+                    data.write(readRecord(entry.getValue()));
+                }
+                out.write(buffer.toByteArray());
+                out.getFD().sync();
+            }
+
+            raf.close();
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+                index = newIndex;
+            } finally {
+                // If the move failed, the old file is still in place and still matches the old index.
+                raf = new RandomAccessFile(file, "rw");
+                length = raf.length();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps ranks and ladders in Prison's document storage, like the {@link CollectionStorageBackend}, but packs
+ * players into compressed segment files with a {@link SegmentDataStore}. Player records are tiny, so giving
+ * each its own file mostly wastes disk blocks; this keeps the player data to a few dozen files.
+ */
+public class SegmentStorageBackend implements StorageBackend {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final String NAME = "segments";
+
+    private static final int SEGMENT_COUNT = 64;
+
+    // The text every player record shares, so that the compressor only has to encode what's different.
+    static final byte[] PLAYER_DICTIONARY =
+        "{\"uid\":\"-4000-8000-9000-a000-b000-\",\"ranks\":{\"default\":1,\"donor\":2}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final CollectionStorageBackend documents;
+    private final SegmentDataStore<RankPlayer> segments;
+    private final MigratingPlayerStore players;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param documents The backend to keep ranks and ladders in.
+     * @param folder    The folder to keep the player segments in.
+     * @throws IOException If the player segments could not be opened.
+     */
+    public SegmentStorageBackend(CollectionStorageBackend documents, File folder)
+        throws IOException {
+        this.documents = documents;
+        this.segments =
+            new SegmentDataStore<>(folder, CodecUtil.PLAYER, SEGMENT_COUNT, PLAYER_DICTIONARY);
+        this.players = new MigratingPlayerStore(this, segments, segments);
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public void transaction(Transaction transaction) throws IOException {
+        // Neither side is transactional, so we just do the work.
+        transaction.run();
+    }
+
+    @Override public void close() {
+        segments.close();
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    @Override public String getName() {
+        return NAME;
+    }
+
+    @Override public DataStore<Rank> getRanks() {
+        return documents.getRanks();
+    }
+
+    @Override public DataStore<RankLadder> getLadders() {
+        return documents.getLadders();
+    }
+
+    @Override public MigratingPlayerStore getPlayers() {
+        return players;
+    }
+
+    public SegmentDataStore<RankPlayer> getPlayerSegments() {
+        return segments;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link DataStore} spread over several other stores, with each key always going to the same one by its
+ * hash. This keeps any one store from growing large enough to slow down, e.g. a directory with a huge
+ * number of files in it.
+ *
+ * @param <T> The type of object stored.
+ */
+public class ShardedDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final List<DataStore<T>> shards;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param shards The stores to spread objects over. Their order can't change once data is written.
+     */
+    public ShardedDataStore(List<DataStore<T>> shards) {
+        this.shards = shards;
+    }
+
+    /*
+     * Methods
+     */
+
+    private DataStore<T> shardFor(String key) {
+        return shards.get(Math.floorMod(key.hashCode(), shards.size()));
+    }
+
+    @Override public Optional<T> load(String key) throws IOException {
+        return shardFor(key).load(key);
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        List<T> ret = new ArrayList<>();
+        for (DataStore<T> shard : shards) {
+            ret.addAll(shard.loadAll());
+        }
+        return ret;
+    }
+
+    @Override public void forEach(Visitor<T> visitor) throws IOException {
+        for (DataStore<T> shard : shards) {
+            shard.forEach(visitor);
+        }
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        shardFor(key).save(key, value);
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        Map<DataStore<T>, Map<String, T>> batches = new HashMap<>();
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            batches.computeIfAbsent(shardFor(entry.getKey()), shard -> new HashMap<>())
+                .put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<DataStore<T>, Map<String, T>> batch : batches.entrySet()) {
+            batch.getKey().saveAll(batch.getValue());
+        }
+    }
+
+    @Override public void remove(String key) throws IOException {
+        shardFor(key).remove(key);
+    }
+
+}
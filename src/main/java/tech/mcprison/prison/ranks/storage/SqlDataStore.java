@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.codec.Codec;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link DataStore} backed by one table of an {@link SqlStorageBackend}. Each row holds the key and the
+ * object encoded with its {@link Codec}. Subclasses may add indexed columns or tables alongside it.
+ *
+ * @param <T> The type of object stored.
+ */
+public class SqlDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    // How many rows forEach reads at a time.
+    private static final int PAGE_SIZE = 500;
+
+    protected final SqlStorageBackend backend;
+    protected final String table;
+    protected final Codec<T> codec;
+
+    /*
+     * Constructor
+     */
+
+    public SqlDataStore(SqlStorageBackend backend, String table, Codec<T> codec) {
+        this.backend = backend;
+        this.table = table;
+        this.codec = codec;
+    }
+
+    /*
+     * Methods
+     */
+
+    /**
+     * Creates the tables and indexes used by this store, if they don't exist yet.
+     */
+    protected void createTables(Connection connection) throws SQLException {
+        backend.execute("CREATE TABLE IF NOT EXISTS " + table
+            + " (doc_key TEXT PRIMARY KEY NOT NULL, data TEXT NOT NULL)");
+    }
+
+    /**
+     * @return The statement used to insert or replace a row. Its parameters are bound by {@link #bind}.
+     */
+    protected String upsertSql() {
+        return "INSERT OR REPLACE INTO " + table + " (doc_key, data) VALUES (?, ?)";
+    }
+
+    protected void bind(PreparedStatement statement, String key, T value)
+        throws SQLException, IOException {
+        statement.setString(1, key);
+        statement.setString(2, codec.toJson(value));
+    }
+
+    @Override public Optional<T> load(String key) throws IOException {
+        synchronized (backend) {
+            try (PreparedStatement statement = backend.getConnection()
+                .prepareStatement("SELECT data FROM " + table + " WHERE doc_key = ?")) {
+                statement.setString(1, key);
+                try (ResultSet results = statement.executeQuery()) {
+                    if (!results.next()) {
+                        return Optional.empty();
+                    }
+                    return Optional.of(codec.fromJson(results.getString(1)));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not load '" + key + "' from " + table, e);
+            }
+        }
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        synchronized (backend) {
+            List<T> ret = new ArrayList<>();
+            try (PreparedStatement statement = backend.getConnection()
+                .prepareStatement("SELECT data FROM " + table);
+                ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    ret.add(codec.fromJson(results.getString(1)));
+                }
+            } catch (SQLException e) {
+                throw new IOException("Could not load " + table, e);
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Reads the table in pages ordered by key. The connection is only held while a page is read, so other
+     * reads and writes can carry on while the visitor works through a large table.
+     */
+    @Override public void forEach(Visitor<T> visitor) throws IOException {
+        String after = "";
+        List<T> page = new ArrayList<>(PAGE_SIZE);
+        do {
+            page.clear();
+            synchronized (backend) {
+                try (PreparedStatement statement = backend.getConnection().prepareStatement(
+                    "SELECT doc_key, data FROM " + table
+                        + " WHERE doc_key > ? ORDER BY doc_key LIMIT " + PAGE_SIZE)) {
+                    statement.setString(1, after);
+                    try (ResultSet results = statement.executeQuery()) {
+                        while (results.next()) {
+                            after = results.getString(1);
+                            page.add(codec.fromJson(results.getString(2)));
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IOException("Could not read " + table, e);
+                }
+            }
+
+            for (T value : page) {
+                visitor.visit(value);
+            }
+        } while (page.size() == PAGE_SIZE);
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        saveAll(Collections.singletonMap(key, value));
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        backend.transaction(() -> {
+            Connection connection = backend.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement(upsertSql())) {
+                for (Map.Entry<String, T> entry : values.entrySet()) {
+                    bind(statement, entry.getKey(), entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } catch (SQLException e) {
+                throw new IOException("Could not save to " + table, e);
+            }
+        });
+    }
+
+    @Override public void remove(String key) throws IOException {
+        backend.transaction(() -> {
+            Connection connection = backend.getConnection();
+            try (PreparedStatement statement = connection
+                .prepareStatement("DELETE FROM " + table + " WHERE doc_key = ?")) {
+                statement.setString(1, key);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new IOException("Could not remove '" + key + "' from " + table, e);
+            }
+        });
+    }
+
+    /**
+     * @return The number of rows in this store's table.
+     * @throws IOException If the table could not be read.
+     */
+    public int count() throws IOException {
+        synchronized (backend) {
+            try (PreparedStatement statement = backend.getConnection()
+                .prepareStatement("SELECT COUNT(*) FROM " + table);
+                ResultSet results = statement.executeQuery()) {
+                return results.next() ? results.getInt(1) : 0;
+            } catch (SQLException e) {
+                throw new IOException("Could not count " + table, e);
+            }
+        }
+    }
+
+}
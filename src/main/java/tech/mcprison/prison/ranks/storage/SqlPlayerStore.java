@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Stores players in an {@link SqlStorageBackend}. Alongside the data, the player's UUID is kept in its own
+ * column. Lookups by ladder and rank are answered from the player manager's index of the loaded players, so
+ * nothing else is kept here.
+ */
+public class SqlPlayerStore extends SqlDataStore<RankPlayer> {
+
+    /*
+     * Constructor
+     */
+
+    public SqlPlayerStore(SqlStorageBackend backend) {
+        super(backend, "players", CodecUtil.PLAYER);
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override protected void createTables(Connection connection) throws SQLException {
+        backend.execute("CREATE TABLE IF NOT EXISTS players"
+            + " (doc_key TEXT PRIMARY KEY NOT NULL, uid TEXT NOT NULL, data TEXT NOT NULL)");
+        // Earlier versions indexed players by UUID and by ladder/rank here, but nothing ever read them.
+        backend.execute("DROP INDEX IF EXISTS players_uid");
+        backend.execute("DROP TABLE IF EXISTS player_ranks");
+    }
+
+    @Override protected String upsertSql() {
+        return "INSERT OR REPLACE INTO players (doc_key, uid, data) VALUES (?, ?, ?)";
+    }
+
+    @Override protected void bind(PreparedStatement statement, String key, RankPlayer value)
+        throws SQLException, IOException {
+        statement.setString(1, key);
+        statement.setString(2, value.uid.toString());
+        statement.setString(3, codec.toJson(value));
+    }
+
+}
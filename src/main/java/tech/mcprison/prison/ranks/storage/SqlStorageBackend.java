@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.output.Output;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Stores the ranks data in an embedded SQLite database file. Batches are written in one go, and
+ * {@link #transaction(Transaction)} is atomic.
+ * <p>
+ * The SQLite JDBC driver is shaded into this module's jar, but not relocated, since its native library is bound
+ * to the {@code org.sqlite} package. A server that ships the driver itself loads its own copy first.
+ */
+public class SqlStorageBackend implements StorageBackend {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final String NAME = "sql";
+
+    private Connection connection;
+    private int transactionDepth;
+
+    private SqlDataStore<Rank> ranks;
+    private SqlDataStore<RankLadder> ladders;
+    private SqlPlayerStore playerTable;
+    private MigratingPlayerStore players;
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * Opens (or creates) the database file and makes sure the tables exist.
+     *
+     * @param file The database file.
+     * @throws IOException If the SQLite driver isn't available, or if the database could not be opened.
+     */
+    public SqlStorageBackend(File file) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new IOException("The SQLite driver is not available on this server.", e);
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create the folder for " + file);
+        }
+
+        this.ranks = new SqlDataStore<>(this, "ranks", CodecUtil.RANK);
+        this.ladders = new SqlDataStore<>(this, "ladders", CodecUtil.LADDER);
+        this.playerTable = new SqlPlayerStore(this);
+        this.players = new MigratingPlayerStore(this, playerTable, playerTable);
+
+        try {
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            execute("PRAGMA journal_mode=WAL");
+            execute("PRAGMA synchronous=NORMAL");
+
+            ranks.createTables(connection);
+            ladders.createTables(connection);
+            playerTable.createTables(connection);
+        } catch (SQLException e) {
+            close();
+            throw new IOException("Could not open the ranks database " + file, e);
+        }
+    }
+
+    /*
+     * Methods
+     */
+
+    synchronized void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    @Override public synchronized void transaction(Transaction transaction) throws IOException {
+        if (transactionDepth > 0) {
+            // Already inside a transaction, so this work just becomes part of it.
+            transactionDepth++;
+            try {
+                transaction.run();
+            } finally {
+                transactionDepth--;
+            }
+            return;
+        }
+
+        transactionDepth = 1;
+        try {
+            connection.setAutoCommit(false);
+            transaction.run();
+            connection.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw new IOException("Could not commit to the ranks database.", e);
+        } catch (IOException | RuntimeException e) {
+            rollback();
+            throw e;
+        } finally {
+            transactionDepth = 0;
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                Output.get().logError("Could not reset the ranks database connection.", e);
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            Output.get().logError("Could not roll back the ranks database.", e);
+        }
+    }
+
+    @Override public synchronized void close() {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            Output.get().logError("Could not close the ranks database.", e);
+        }
+        connection = null;
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    @Override public String getName() {
+        return NAME;
+    }
+
+    @Override public SqlDataStore<Rank> getRanks() {
+        return ranks;
+    }
+
+    @Override public SqlDataStore<RankLadder> getLadders() {
+        return ladders;
+    }
+
+    @Override public MigratingPlayerStore getPlayers() {
+        return players;
+    }
+
+    public SqlPlayerStore getPlayerTable() {
+        return playerTable;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+
+/**
+ * A place where the ranks module keeps its data. Each backend provides a {@link DataStore} for every type of
+ * object the module saves.
+ */
+public interface StorageBackend {
+
+    /**
+     * @return The name of this backend, as it is written in the configuration.
+     */
+    String getName();
+
+    DataStore<Rank> getRanks();
+
+    DataStore<RankLadder> getLadders();
+
+    /**
+     * @return The players store. Players are kept by {@link PlayerKeys#key(java.util.UUID)}; any still under
+     * their old keys are moved over by {@link MigratingPlayerStore#migrate}.
+     */
+    MigratingPlayerStore getPlayers();
+
+    /**
+     * Runs a group of saves and removals as one unit. On backends that support transactions, either
+     * everything within the unit is written or nothing is. Other backends simply run the unit as-is.
+     *
+     * @param transaction The work to do.
+     * @throws IOException If the work failed; on transactional backends it has been rolled back.
+     */
+    void transaction(Transaction transaction) throws IOException;
+
+    /**
+     * Releases anything this backend holds open. The backend can't be used afterwards.
+     */
+    void close();
+
+    /**
+     * A unit of storage work which may fail with an {@link IOException}.
+     */
+    @FunctionalInterface interface Transaction {
+
+        void run() throws IOException;
+
+    }
+
+}
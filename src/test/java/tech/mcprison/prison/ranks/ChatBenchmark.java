@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting a chat message for a player with a rank on each of three ladders, as a typical prison server
+ * has: the ranks, prestige and donor ladders.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class ChatBenchmark {
+
+    private static final String FORMAT = "{PRISON_RANK} &7%s&8: &f%s";
+
+    private RankPlayer player;
+
+    @Setup public void setUp() {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        player = ranks.getPlayerManager().createPlayer(UUID.randomUUID());
+
+        RankLadder[] ladders = {ranks.getDefaultLadder(),
+            ranks.getLadderManager().createLadder("prestige").orElseThrow(IllegalStateException::new),
+            ranks.getLadderManager().createLadder("donor").orElseThrow(IllegalStateException::new)};
+        for (RankLadder ladder : ladders) {
+            for (int i = 0; i < 30; i++) {
+                ladder.addRank(ranks.getRankManager()
+                    .createRank(ladder.name + i, "&7[&b" + ladder.name + i + "&7]", i * 100)
+                    .orElseThrow(IllegalStateException::new));
+            }
+            player.addRank(ladder, ladder.getByPosition(12).orElseThrow(IllegalStateException::new));
+        }
+    }
+
+    @Benchmark public String formatChat() {
+        return ChatHandler.formatChat(FORMAT, player);
+    }
+
+    @Benchmark public String formatChatWithoutPlaceholder() {
+        return ChatHandler.formatChat("&7%s&8: &f%s", player);
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks;
+
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how the {PRISON_RANK} placeholder is filled in from a player's ranks.
+ */
+public class ChatHandlerTest {
+
+    private PrisonRanks ranks;
+    private RankLadder ladder;
+    private Rank rank;
+    private RankPlayer player;
+
+    @Before public void setUp() {
+        ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        ladder = ranks.getDefaultLadder();
+        rank = ranks.getRankManager().createRank("A", "[A]", 0).get();
+        ladder.addRank(rank);
+        player = ranks.getPlayerManager().createPlayer(UUID.randomUUID());
+        player.addRank(ladder, rank);
+    }
+
+    @Test public void placeholderIsReplacedWithTags() {
+        assertEquals("[A] %s: %s", ChatHandler.formatChat("{PRISON_RANK} %s: %s", player));
+    }
+
+    @Test public void everyPlaceholderIsReplaced() {
+        assertEquals("[A] %s [A]: %s", ChatHandler.formatChat("{PRISON_RANK} %s {PRISON_RANK}: %s", player));
+    }
+
+    @Test public void tagsFromEveryLadderAreIncluded() {
+        RankLadder donor = ranks.getLadderManager().createLadder("donor").get();
+        Rank vip = ranks.getRankManager().createRank("vip", "[VIP]", 0).get();
+        donor.addRank(vip);
+        player.addRank(donor, vip);
+
+        String formatted = ChatHandler.formatChat("{PRISON_RANK}", player);
+        assertEquals("[A][VIP]".length(), formatted.length());
+        assertTrue(formatted.contains("[A]"));
+        assertTrue(formatted.contains("[VIP]"));
+    }
+
+    @Test public void ranksOnRemovedLaddersAreSkipped() {
+        Rank old = ranks.getRankManager().createRank("old", "[OLD]", 0).get();
+        player.ranks.put("removed", old.id);
+
+        assertEquals("[A]", ChatHandler.formatChat("{PRISON_RANK}", player));
+    }
+
+    @Test public void playersWithoutARecordHaveNoTags() {
+        assertEquals(" hi", ChatHandler.formatChat("{PRISON_RANK} hi", null));
+    }
+
+    @Test public void formatsWithoutThePlaceholderAreLeftAlone() {
+        String format = "<%s> %s";
+        assertSame(format, ChatHandler.formatChat(format, player));
+    }
+
+}
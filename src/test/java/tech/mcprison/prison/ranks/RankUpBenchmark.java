@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.internal.Player;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rank-up path on an offline module, for time and, with {@code gradle benchmark -Pjmh=RankUpBenchmark}
+ * (which adds {@code -prof gc}), bytes allocated per rank-up. Successful rank-ups include saving the player to
+ * an in-memory store; the player goes back to the bottom once they reach the top. {@link #highest()} is a player
+ * already on the top rank, who has nowhere to go.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class RankUpBenchmark {
+
+    private static final int RANKS = 50;
+
+    private static final RankUtil.Funds RICH = new RankUtil.Funds() {
+        @Override public boolean canAfford(RankPlayer player, Player prisonPlayer, double amount) {
+            return true;
+        }
+
+        @Override public void remove(RankPlayer player, Player prisonPlayer, double amount) {
+        }
+    };
+
+    private static final RankUtil.Funds BROKE = new RankUtil.Funds() {
+        @Override public boolean canAfford(RankPlayer player, Player prisonPlayer, double amount) {
+            return false;
+        }
+
+        @Override public void remove(RankPlayer player, Player prisonPlayer, double amount) {
+        }
+    };
+
+    private PlayerManager playerManager;
+    private RankLadder ladder;
+    private Rank bottom;
+    private RankPlayer player;
+    private RankPlayer topPlayer;
+
+    @Setup public void setUp() {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        playerManager = ranks.getPlayerManager();
+        ladder = ranks.getDefaultLadder();
+        for (int i = 0; i < RANKS; i++) {
+            ladder.addRank(ranks.getRankManager().createRank("rank" + i, "&7[" + i + "]", i * 100)
+                .orElseThrow(IllegalStateException::new));
+        }
+        bottom = ladder.getByPosition(0).orElseThrow(IllegalStateException::new);
+        player = playerManager.createPlayer(UUID.randomUUID());
+        player.addRank(ladder, bottom);
+        topPlayer = playerManager.createPlayer(UUID.randomUUID());
+        topPlayer.addRank(ladder, ladder.getByPosition(RANKS - 1).orElseThrow(IllegalStateException::new));
+    }
+
+    @Benchmark public RankUtil.RankUpResult rankUp() {
+        RankUtil.RankUpResult result =
+            RankUtil.rankUpPlayer(player, null, ladder, RICH, playerManager, false);
+        if (result.status == RankUtil.RANKUP_HIGHEST) {
+            player.addRank(ladder, bottom);
+        }
+        return result;
+    }
+
+    @Benchmark public RankUtil.RankUpResult cantAfford() {
+        return RankUtil.rankUpPlayer(player, null, ladder, BROKE, playerManager, false);
+    }
+
+    @Benchmark public RankUtil.RankUpResult highest() {
+        return RankUtil.rankUpPlayer(topPlayer, null, ladder, RICH, playerManager, false);
+    }
+
+}
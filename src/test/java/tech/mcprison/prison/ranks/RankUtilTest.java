@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks;
+
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.internal.Player;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the rank-up path on an offline module, and the lookups it goes through.
+ */
+public class RankUtilTest {
+
+    private static final RankUtil.Funds RICH = new RankUtil.Funds() {
+        @Override public boolean canAfford(RankPlayer player, Player prisonPlayer, double amount) {
+            return true;
+        }
+
+        @Override public void remove(RankPlayer player, Player prisonPlayer, double amount) {
+        }
+    };
+
+    private PrisonRanks ranks;
+    private RankLadder ladder;
+    private Rank first;
+    private Rank second;
+    private RankPlayer player;
+
+    @Before public void setUp() {
+        ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        ladder = ranks.getDefaultLadder();
+        first = ranks.getRankManager().createRank("A", "[A]", 0).get();
+        second = ranks.getRankManager().createRank("B", "[B]", 100).get();
+        ladder.addRank(first);
+        ladder.addRank(second);
+        player = ranks.getPlayerManager().createPlayer(UUID.randomUUID());
+        player.addRank(ladder, first);
+    }
+
+    @Test public void playersMoveUpToTheNextRank() {
+        RankUtil.RankUpResult result = rankUp();
+
+        assertEquals(RankUtil.RANKUP_SUCCESS, result.status);
+        assertSame(second, result.rank);
+        assertSame(second, player.getRankOrNull(ladder));
+    }
+
+    @Test public void playersOnTheTopRankGetTheSameResultEachTime() {
+        player.addRank(ladder, second);
+
+        RankUtil.RankUpResult result = rankUp();
+        assertEquals(RankUtil.RANKUP_HIGHEST, result.status);
+        assertSame(second, result.rank);
+        assertSame(result, rankUp());
+    }
+
+    @Test public void laddersAndRanksAreFoundByNameAndId() {
+        RankLadder donor = ranks.getLadderManager().createLadder("donor").get();
+
+        assertSame(donor, ranks.getLadderManager().getLadderOrNull("donor"));
+        assertSame(donor, ranks.getLadderManager().getLadder(donor.id).get());
+        assertSame(second, ranks.getRankManager().getRankOrNull(second.id));
+        assertNull(ranks.getLadderManager().getLadderOrNull("missing"));
+        assertNull(ranks.getRankManager().getRankOrNull(-1));
+    }
+
+    private RankUtil.RankUpResult rankUp() {
+        return RankUtil.rankUpPlayer(player, null, ladder, RICH, ranks.getPlayerManager(), false);
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.archive;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankExpiry;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+import tech.mcprison.prison.ranks.storage.PlayerKeys;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that an exported archive imports into empty storage as an exact copy, through the player manager,
+ * and that files which aren't archives are turned away.
+ */
+public class RanksArchiveTest {
+
+    // More than one import batch's worth.
+    private static final int PLAYERS = 1200;
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    /**
+     * Fills storage with two ladders of ranks and a crowd of players, and exports it.
+     */
+    private MemoryStorageBackend export(File file) throws IOException {
+        MemoryStorageBackend storage = new MemoryStorageBackend();
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), storage);
+        RankLadder ladder = ranks.getDefaultLadder();
+        RankLadder donor = ranks.getLadderManager().createLadder("donor").get();
+        for (int i = 0; i < 5; i++) {
+            ladder.addRank(ranks.getRankManager().createRank("R" + i, "[R" + i + "]", i * 100).get());
+        }
+        Rank vip = ranks.getRankManager().createRank("vip", "[VIP]", 0).get();
+        vip.rankUpCommands.add("give {player} diamond 1");
+        donor.addRank(vip);
+        ranks.getRankManager().saveRanks();
+        ranks.getLadderManager().saveLadders();
+
+        PlayerManager playerManager = ranks.getPlayerManager();
+        List<RankPlayer> players = new ArrayList<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            RankPlayer player = playerManager.createPlayer(new UUID(i, i));
+            player.addRank(ladder, ranks.getRankManager().getRank("R" + (i % 5)).get());
+            if (i % 100 == 0) {
+                player.addTemporaryRank(donor, vip, 1_500_000_000_000L + i);
+            }
+            players.add(player);
+        }
+        playerManager.savePlayers(players);
+        playerManager.shutdown();
+
+        RanksArchive archive = new RanksArchive(storage, message -> {
+        });
+        archive.export(file);
+        assertEquals(6, archive.getRanks());
+        assertEquals(2, archive.getLadders());
+        assertEquals(PLAYERS, archive.getPlayers());
+        return storage;
+    }
+
+    private static RanksArchive importInto(MemoryStorageBackend storage, File file) throws IOException {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), storage);
+        PlayerManager playerManager = ranks.getPlayerManager();
+        RanksArchive archive = new RanksArchive(storage, message -> {
+        });
+        playerManager.beginImport();
+        try {
+            archive.importFrom(file);
+            playerManager.finishImport();
+        } catch (IOException e) {
+            playerManager.abortImport();
+            throw e;
+        } finally {
+            playerManager.shutdown();
+        }
+        return archive;
+    }
+
+    private static File gzip(File file, String... lines) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            for (String line : lines) {
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return file;
+    }
+
+    @Test public void archiveImportsAsACopy() throws IOException {
+        File file = new File(temp.getRoot(), "ranks.gz");
+        MemoryStorageBackend source = export(file);
+        assertFalse(new File(temp.getRoot(), "ranks.gz.tmp").exists());
+
+        MemoryStorageBackend target = new MemoryStorageBackend();
+        RanksArchive archive = importInto(target, file);
+        assertEquals(6, archive.getRanks());
+        assertEquals(2, archive.getLadders());
+        assertEquals(PLAYERS, archive.getPlayers());
+
+        assertEquals(source.getRanks().loadAll().size(), target.getRanks().loadAll().size());
+        for (Rank rank : source.getRanks().loadAll()) {
+            Rank imported = target.getRanks().load("rank_" + rank.id).get();
+            assertEquals(CodecUtil.RANK.toJson(rank), CodecUtil.RANK.toJson(imported));
+        }
+        for (RankLadder ladder : source.getLadders().loadAll()) {
+            RankLadder imported = target.getLadders().load("ladder_" + ladder.id).get();
+            assertEquals(CodecUtil.LADDER.toJson(ladder), CodecUtil.LADDER.toJson(imported));
+        }
+
+        assertEquals(PLAYERS, target.getPlayerData().size());
+        for (RankPlayer player : source.getPlayers().loadAll()) {
+            RankPlayer imported = target.getPlayers().load(PlayerKeys.key(player.uid)).get();
+            assertEquals(player.ranks, imported.ranks);
+            assertEquals(player.expiries.keySet(), imported.expiries.keySet());
+            for (String ladder : player.expiries.keySet()) {
+                RankExpiry expiry = player.expiries.get(ladder);
+                RankExpiry importedExpiry = imported.expiries.get(ladder);
+                assertEquals(expiry.rankId, importedExpiry.rankId);
+                assertEquals(expiry.expiresAt, importedExpiry.expiresAt);
+                assertEquals(expiry.previousRankId, importedExpiry.previousRankId);
+            }
+        }
+
+        // Finishing the import reloaded the players from storage.
+        RankPlayer reloaded = PrisonRanks.getInstance().getPlayerManager().getPlayer(new UUID(300, 300)).get();
+        assertTrue(reloaded.expiries.containsKey("donor"));
+    }
+
+    @Test public void exportReplacesAnOldArchive() throws IOException {
+        File file = gzip(new File(temp.getRoot(), "ranks.gz"), "old");
+        export(file);
+        assertEquals(PLAYERS, importInto(new MemoryStorageBackend(), file).getPlayers());
+    }
+
+    @Test public void filesWhichArentArchivesAreRejected() throws IOException {
+        assertRejected(gzip(temp.newFile("empty.gz")));
+        assertRejected(gzip(temp.newFile("headless.gz"), "{\"type\":\"rank\",\"data\":{}}"));
+        assertRejected(gzip(temp.newFile("future.gz"), "{\"type\":\"header\",\"version\":99}"));
+        assertRejected(gzip(temp.newFile("unknown.gz"), "{\"type\":\"header\",\"version\":1}",
+            "{\"type\":\"mine\",\"data\":{}}"));
+
+        File plain = temp.newFile("plain.json");
+        try (OutputStream out = new FileOutputStream(plain)) {
+            out.write("{\"type\":\"header\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        assertRejected(plain);
+    }
+
+    private static void assertRejected(File file) {
+        MemoryStorageBackend storage = new MemoryStorageBackend();
+        try {
+            importInto(storage, file);
+            fail(file.getName() + " was imported");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.audit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that entries are found again across segments, after a restart from the segments' index files, and
+ * after those index files have been lost.
+ */
+public class AuditLogTest {
+
+    // Small enough that a few dozen entries fill several segments.
+    private static final long SEGMENT_BYTES = 1024;
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    private final UUID alice = new UUID(1, 1);
+    private final UUID bob = new UUID(2, 2);
+
+    private File folder;
+    private AuditLog log;
+
+    @Before public void setUp() throws IOException {
+        folder = temp.newFolder("audit");
+        log = new AuditLog(folder, SEGMENT_BYTES);
+    }
+
+    @After public void tearDown() {
+        log.close();
+    }
+
+    private void reopen() {
+        log.close();
+        log = new AuditLog(folder, SEGMENT_BYTES);
+    }
+
+    private File file(int segment, String extension) {
+        return new File(folder, String.format("audit-%06d", segment) + extension);
+    }
+
+    /**
+     * Records entries for two players in turn. Alice's entry {@code i} costs {@code i}.
+     */
+    private void recordEntries(int count) {
+        for (int i = 0; i < count; i++) {
+            log.record(new AuditEntry(1000L + i, "Console", alice, "default", "A" + i, "A" + (i + 1),
+                i, "rankup"));
+            log.record(new AuditEntry(1000L + i, "Console", bob, "donor", null, "B", 0, "promote"));
+        }
+    }
+
+    private static void assertEntries(int from, int to, List<AuditEntry> entries) {
+        assertEquals(to - from, entries.size());
+        for (int i = from; i < to; i++) {
+            AuditEntry entry = entries.get(i - from);
+            assertEquals(1000L + i, entry.time);
+            assertEquals("A" + i, entry.oldRank);
+            assertEquals("A" + (i + 1), entry.newRank);
+            assertEquals(i, entry.cost, 0);
+        }
+    }
+
+    @Test public void entriesReadBackAcrossSegments() throws Exception {
+        recordEntries(30);
+
+        assertEntries(0, 30, log.read(alice, 100).get());
+        assertEntries(25, 30, log.read(alice, 5).get());
+        AuditEntry entry = log.read(bob, 1).get().get(0);
+        assertEquals("Console", entry.actor);
+        assertEquals("donor", entry.ladder);
+        assertEquals(null, entry.oldRank);
+        assertEquals("promote", entry.cause);
+        assertTrue(log.read(new UUID(3, 3), 10).get().isEmpty());
+
+        log.close();
+        assertTrue(file(3, ".log").exists());
+        assertTrue(file(1, ".idx").exists());
+        assertTrue(file(2, ".idx").exists());
+        assertTrue(file(1, ".log").length() <= SEGMENT_BYTES + 200);
+    }
+
+    @Test public void indexIsReloadedOnRestart() throws Exception {
+        recordEntries(30);
+        reopen();
+
+        assertEntries(0, 30, log.read(alice, 100).get());
+        assertEquals(30, log.read(bob, 100).get().size());
+
+        // New entries carry on in the last segment, and are found along with the old.
+        recordEntries(5);
+        List<AuditEntry> entries = log.read(alice, 100).get();
+        assertEquals(35, entries.size());
+        assertEntries(0, 5, entries.subList(30, 35));
+    }
+
+    @Test public void lostIndexFilesAreRebuilt() throws Exception {
+        recordEntries(30);
+        log.close();
+        assertTrue(file(1, ".idx").delete());
+        long length = file(2, ".idx").length();
+        assertTrue(file(2, ".idx").delete());
+
+        log = new AuditLog(folder, SEGMENT_BYTES);
+        assertEntries(0, 30, log.read(alice, 100).get());
+
+        log.close();
+        assertTrue(file(1, ".idx").exists());
+        assertEquals(length, file(2, ".idx").length());
+    }
+
+    @Test public void halfWrittenLinesAreDropped() throws Exception {
+        recordEntries(2);
+        log.close();
+        try (OutputStream out = new FileOutputStream(file(1, ".log"), true)) {
+            out.write("{\"time\":1,\"player\":\"00000000-00".getBytes(StandardCharsets.UTF_8));
+        }
+
+        log = new AuditLog(folder, SEGMENT_BYTES);
+        recordEntries(1);
+        assertEquals(3, log.read(alice, 100).get().size());
+        assertFalse(file(2, ".log").exists());
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.ranks.data.RankExpiry;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.store.Document;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the player codec with the {@link Document} route it replaced, for speed and, with
+ * {@code gradle benchmark -Pjmh=CodecBenchmark} (which adds {@code -prof gc}), bytes allocated per operation.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class CodecBenchmark {
+
+    private final Gson gson = new Gson();
+    private RankPlayer player;
+    private String json;
+
+    @Setup public void setUp() throws IOException {
+        player = new RankPlayer();
+        player.uid = UUID.randomUUID();
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", 14);
+        player.ranks.put("donor", 3);
+        player.ranks.put("prestige", 22);
+        player.expiries.put("donor", new RankExpiry(3, System.currentTimeMillis(), 2));
+        json = CodecUtil.PLAYER.toJson(player);
+    }
+
+    @Benchmark public String encodeCodec() throws IOException {
+        return CodecUtil.PLAYER.toJson(player);
+    }
+
+    @Benchmark public String encodeDocument() {
+        return gson.toJson(player.toDocument());
+    }
+
+    @Benchmark public RankPlayer decodeCodec() throws IOException {
+        return CodecUtil.PLAYER.fromJson(json);
+    }
+
+    @Benchmark public RankPlayer decodeDocument() {
+        return new RankPlayer(gson.fromJson(json, Document.class));
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.codec;
+
+import com.google.gson.Gson;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankExpiry;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.store.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that each codec reads back what it writes, and that its JSON is interchangeable with the
+ * {@link Document} route used by the collection storage.
+ */
+public class CodecTest {
+
+    private final Gson gson = new Gson();
+
+    @Test public void rankRoundTrips() throws IOException {
+        Rank rank = rank();
+        assertRank(rank, CodecUtil.RANK.fromJson(CodecUtil.RANK.toJson(rank)));
+    }
+
+    @Test public void rankMatchesDocument() throws IOException {
+        Rank rank = rank();
+        assertRank(rank, new Rank(gson.fromJson(CodecUtil.RANK.toJson(rank), Document.class)));
+        assertRank(rank, CodecUtil.RANK.fromJson(gson.toJson(rank.toDocument())));
+    }
+
+    @Test public void rankWithoutCommandsReadsAsEmpty() throws IOException {
+        Rank rank = CodecUtil.RANK
+            .fromJson("{\"id\":3,\"name\":\"C\",\"tag\":null,\"cost\":10,\"commands\":null}");
+        assertEquals(3, rank.id);
+        assertNull(rank.tag);
+        assertTrue(rank.rankUpCommands.isEmpty());
+    }
+
+    @Test public void unknownFieldsAreSkipped() throws IOException {
+        Rank rank = CodecUtil.RANK
+            .fromJson("{\"extra\":{\"a\":[1,2]},\"id\":1,\"name\":\"A\",\"cost\":5.5}");
+        assertEquals(1, rank.id);
+        assertEquals("A", rank.name);
+        assertEquals(5.5, rank.cost, 0);
+    }
+
+    @Test public void ladderRoundTrips() throws IOException {
+        RankLadder ladder = ladder();
+        assertLadder(ladder, CodecUtil.LADDER.fromJson(CodecUtil.LADDER.toJson(ladder)));
+    }
+
+    @Test public void ladderMatchesDocument() throws IOException {
+        RankLadder ladder = ladder();
+        assertLadder(ladder,
+            new RankLadder(gson.fromJson(CodecUtil.LADDER.toJson(ladder), Document.class)));
+        assertLadder(ladder, CodecUtil.LADDER.fromJson(gson.toJson(ladder.toDocument())));
+    }
+
+    @Test public void playerRoundTrips() throws IOException {
+        RankPlayer player = player();
+        assertPlayer(player, CodecUtil.PLAYER.fromJson(CodecUtil.PLAYER.toJson(player)));
+    }
+
+    @Test public void playerMatchesDocument() throws IOException {
+        RankPlayer player = player();
+        assertPlayer(player,
+            new RankPlayer(gson.fromJson(CodecUtil.PLAYER.toJson(player), Document.class)));
+        assertPlayer(player, CodecUtil.PLAYER.fromJson(gson.toJson(player.toDocument())));
+    }
+
+    @Test public void playerWithoutExpiriesRoundTrips() throws IOException {
+        RankPlayer player = player();
+        player.expiries.clear();
+        RankPlayer read = CodecUtil.PLAYER.fromJson(CodecUtil.PLAYER.toJson(player));
+        assertPlayer(player, read);
+        assertTrue(read.expiries.isEmpty());
+    }
+
+    @Test(expected = IOException.class) public void playerWithoutUidFails() throws IOException {
+        CodecUtil.PLAYER.fromJson("{\"ranks\":{\"default\":1}}");
+    }
+
+    private static Rank rank() {
+        Rank rank = new Rank();
+        rank.id = 7;
+        rank.name = "Miner";
+        rank.tag = "&7[&bMiner&7]";
+        rank.cost = 12500.75;
+        rank.rankUpCommands = new ArrayList<>(Arrays.asList("say {player} ranked up", "give {player} 1"));
+        return rank;
+    }
+
+    private static RankLadder ladder() {
+        RankLadder ladder = new RankLadder();
+        ladder.id = 2;
+        ladder.name = "donor";
+        ladder.ranks = new ArrayList<>();
+        ladder.ranks.add(ladder.new PositionRank(0, 4));
+        ladder.ranks.add(ladder.new PositionRank(2, 9));
+        ladder.ranks.add(ladder.new PositionRank(1, 5));
+        return ladder;
+    }
+
+    private static RankPlayer player() {
+        RankPlayer player = new RankPlayer();
+        player.uid = UUID.fromString("3f1c2a9e-5b7d-4e1a-9c3b-8d2f6a4e0b17");
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", 3);
+        player.ranks.put("donor", 9);
+        player.expiries.put("donor", new RankExpiry(9, 1700000000123L, 4));
+        player.expiries.put("event", new RankExpiry(11, 1700000000456L, null));
+        return player;
+    }
+
+    private static void assertRank(Rank expected, Rank actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.tag, actual.tag);
+        assertEquals(expected.cost, actual.cost, 0);
+        assertEquals(expected.rankUpCommands, actual.rankUpCommands);
+    }
+
+    private static void assertLadder(RankLadder expected, RankLadder actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.ranks.size(), actual.ranks.size());
+        for (int i = 0; i < expected.ranks.size(); i++) {
+            assertEquals(expected.ranks.get(i).getPosition(), actual.ranks.get(i).getPosition());
+            assertEquals(expected.ranks.get(i).getRankId(), actual.ranks.get(i).getRankId());
+        }
+    }
+
+    private static void assertPlayer(RankPlayer expected, RankPlayer actual) {
+        assertEquals(expected.uid, actual.uid);
+        assertEquals(expected.ranks, actual.ranks);
+        assertEquals(expected.expiries.keySet(), actual.expiries.keySet());
+        for (String ladder : expected.expiries.keySet()) {
+            RankExpiry want = expected.expiries.get(ladder);
+            RankExpiry got = actual.expiries.get(ladder);
+            assertEquals(want.rankId, got.rankId);
+            assertEquals(want.expiresAt, got.expiresAt);
+            assertEquals(want.previousRankId, got.previousRankId);
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.expiry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that values come out of the wheel on the tick they fall due, whichever level they start at, and
+ * that deadlines beyond the top level are kept until it comes round.
+ */
+public class TimingWheelTest {
+
+    // The ticks covered by the wheel's five levels of 64 slots.
+    private static final long SPAN = 1L << 30;
+
+    @Test public void deadlinesRoundUpToATick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        wheel.schedule("a", 1500);
+
+        assertTrue(wheel.advance(1999).isEmpty());
+        assertEquals(Collections.singletonList("a"), wheel.advance(2000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test public void pastDeadlinesComeOutOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 100);
+        wheel.schedule("a", 50);
+        wheel.schedule("b", 100);
+
+        assertEquals(2, wheel.size());
+        assertEquals(Arrays.asList("a", "b"), wheel.advance(100));
+    }
+
+    @Test public void valuesCascadeDownToTheirTick() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        // One deadline for each of the first four levels, each a little off a slot boundary.
+        long[] deadlines = {5, 64 * 3 + 5, 64 * 64 * 2 + 7, 64 * 64 * 64 + 64 * 5 + 1};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 1; now <= deadlines[3]; now++) {
+            for (long value : wheel.advance(now)) {
+                assertEquals(now, value);
+                expired.add(value);
+            }
+        }
+        assertEquals(deadlines.length, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test public void valuesComeOutInTheOrderTheyFellDue() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        long[] deadlines = {70_000, 3, 4096, 64, 63, 262_144};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long deadline : deadlines) {
+            expected.add(deadline);
+        }
+        Collections.sort(expected);
+        assertEquals(expected, wheel.advance(262_144));
+    }
+
+    @Test public void matchesABruteForceSchedule() {
+        Random random = new Random(42);
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        List<Long> pending = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = 1 + random.nextInt(300_000);
+            wheel.schedule(deadline, deadline);
+            pending.add(deadline);
+        }
+
+        long now = 0;
+        while (!pending.isEmpty()) {
+            now += random.nextInt(500);
+            List<Long> expected = new ArrayList<>();
+            for (long deadline : pending) {
+                if (deadline <= now) {
+                    expected.add(deadline);
+                }
+            }
+            pending.removeAll(expected);
+
+            List<Long> expired = wheel.advance(now);
+            Collections.sort(expected);
+            Collections.sort(expired);
+            assertEquals(expected, expired);
+            assertEquals(pending.size(), wheel.size());
+        }
+    }
+
+    @Test public void overflowWaitsForTheTopLevelToComeRound() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, SPAN - 1);
+        // Both differ from now above the top level, so both start out aside.
+        wheel.schedule("soon", SPAN + 3);
+        wheel.schedule("later", 2 * SPAN + 5);
+        assertEquals(2, wheel.size());
+
+        assertTrue(wheel.advance(SPAN).isEmpty());
+        assertTrue(wheel.advance(SPAN + 2).isEmpty());
+        assertEquals(Collections.singletonList("soon"), wheel.advance(SPAN + 3));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test public void clearDropsEverythingButKeepsTheTime() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        wheel.schedule("due", 0);
+        wheel.schedule("near", 10);
+        wheel.schedule("far", 100_000);
+        wheel.schedule("overflow", 2 * SPAN);
+
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(100_000).isEmpty());
+
+        wheel.schedule("again", 100_010);
+        assertTrue(wheel.advance(100_009).isEmpty());
+        assertEquals(Collections.singletonList("again"), wheel.advance(100_010));
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a player's history reads back as written, across restarts, once trimmed, and when a crash has
+ * left half a record at the end of the file.
+ */
+public class RankHistoryTest {
+
+    // A time well past the epoch, so deltas aren't all from zero.
+    private static final long START = 1_500_000_000_000L;
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    private File folder;
+    private RankHistory history;
+    private final UUID uid = UUID.fromString("3f2a1c9e-0b7d-4e21-9a55-7c1d2e3f4a5b");
+
+    @Before public void setUp() throws IOException {
+        folder = temp.newFolder("history");
+        history = new RankHistory(folder, 10);
+    }
+
+    @After public void tearDown() {
+        history.close();
+    }
+
+    private List<RankChange> read() throws InterruptedException, ExecutionException {
+        return history.read(uid).get();
+    }
+
+    private void reopen(int limit) {
+        history.close();
+        history = new RankHistory(folder, limit);
+    }
+
+    private File file() {
+        return new File(new File(folder, "3f"), uid + ".hist");
+    }
+
+    private static void assertChange(long time, int ladderId, Integer rankId, RankChange change) {
+        assertEquals(time, change.time);
+        assertEquals(ladderId, change.ladderId);
+        assertEquals(rankId, change.rankId);
+    }
+
+    @Test public void changesReadBackInOrder() throws Exception {
+        history.record(uid, new RankChange(START, 0, 1));
+        history.record(uid, new RankChange(START + 90_000, 0, 2));
+        history.record(uid, new RankChange(START + 90_000, 3, null));
+        // Large enough values to take several bytes each.
+        history.record(uid, new RankChange(START + 400L * 24 * 3600 * 1000, 70_000, 1_000_000));
+
+        List<RankChange> changes = read();
+        assertEquals(4, changes.size());
+        assertChange(START, 0, 1, changes.get(0));
+        assertChange(START + 90_000, 0, 2, changes.get(1));
+        assertChange(START + 90_000, 3, null, changes.get(2));
+        assertChange(START + 400L * 24 * 3600 * 1000, 70_000, 1_000_000, changes.get(3));
+    }
+
+    @Test public void timesAreKeptToTheSecondAndInOrder() throws Exception {
+        history.record(uid, new RankChange(START + 1_999, 0, 1));
+        history.record(uid, new RankChange(START - 60_000, 0, 2)); // The clock stepped back.
+
+        List<RankChange> changes = read();
+        assertChange(START + 1_000, 0, 1, changes.get(0));
+        assertChange(START + 1_000, 0, 2, changes.get(1));
+    }
+
+    @Test public void historySurvivesARestart() throws Exception {
+        history.record(uid, new RankChange(START, 0, 1));
+        reopen(10);
+        history.record(uid, new RankChange(START + 5_000, 0, 2));
+
+        List<RankChange> changes = read();
+        assertEquals(2, changes.size());
+        assertChange(START + 5_000, 0, 2, changes.get(1));
+    }
+
+    @Test public void onlyTheLastChangesAreKept() throws Exception {
+        reopen(3);
+        for (int i = 0; i < 7; i++) {
+            history.record(uid, new RankChange(START + i * 1000L, 0, i));
+        }
+
+        // Trimmed down to three at the sixth change, and one more added since.
+        List<RankChange> changes = read();
+        assertEquals(4, changes.size());
+        for (int i = 0; i < 4; i++) {
+            assertChange(START + (i + 3) * 1000L, 0, i + 3, changes.get(i));
+        }
+    }
+
+    @Test public void halfWrittenRecordsAreDropped() throws Exception {
+        history.record(uid, new RankChange(START, 0, 1));
+        history.record(uid, new RankChange(START + 1_000, 0, 2));
+        history.close();
+        long length = file().length();
+
+        // A crash part way through a record: a delta, then a varint missing its last byte.
+        try (OutputStream out = new FileOutputStream(file(), true)) {
+            out.write(new byte[] {5, (byte) 0x81});
+        }
+
+        history = new RankHistory(folder, 10);
+        assertEquals(2, read().size());
+
+        history.record(uid, new RankChange(START + 2_000, 0, 3));
+        List<RankChange> changes = read();
+        assertEquals(3, changes.size());
+        assertChange(START + 2_000, 0, 3, changes.get(2));
+        assertTrue(file().length() > length);
+    }
+
+    @Test public void halfWrittenHeadersAreDropped() throws Exception {
+        assertTrue(file().getParentFile().mkdirs());
+        try (OutputStream out = new FileOutputStream(file())) {
+            out.write(new byte[] {0x50, 0x52});
+        }
+        assertTrue(read().isEmpty());
+
+        history.record(uid, new RankChange(START, 0, 1));
+        List<RankChange> changes = read();
+        assertEquals(1, changes.size());
+        assertChange(START, 0, 1, changes.get(0));
+    }
+
+    @Test public void unknownPlayersHaveNoHistory() throws Exception {
+        assertTrue(read().isEmpty());
+    }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.loadtest;
+
+import com.sun.management.ThreadMXBean;
+import tech.mcprison.prison.internal.Player;
+import tech.mcprison.prison.ranks.ChatHandler;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.RankUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.managers.LadderManager;
+import tech.mcprison.prison.ranks.managers.PlayerManager;
+import tech.mcprison.prison.ranks.managers.RankManager;
+import tech.mcprison.prison.ranks.metrics.LatencyHistogram;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the ranks code with synthetic players joining, chatting and ranking up at fixed rates, and measures
+ * how it copes. It runs offline, on its own module set up by {@link PrisonRanks#offline}, with its own
+ * ranks and ladders kept in memory, so nothing touches a server or real player data. Players pay from an
+ * in-memory wallet. Each player holds a rank on {@link #LADDERS} ladders, so the chat figures show the cost
+ * of formatting that many rank tags.
+ * <p>
+ * Run it with {@code gradle loadTest}, or {@code gradle loadTest -Pargs="players seconds joins chats rankups"}.
+ */
+public class LoadTest {
+
+    /*
+     * Fields & Constants
+     */
+
+    private static final String CHAT_FORMAT = "{PRISON_RANK} &7%1$s: %2$s";
+
+    // How many ladders the test creates and puts each player on, and how many ranks each has.
+    private static final int LADDERS = 3;
+    private static final int RANKS_PER_LADDER = 30;
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final int playerCount;
+    private final int seconds;
+    private final double joinsPerSecond;
+    private final double chatsPerSecond;
+    private final double rankUpsPerSecond;
+    private final Random random = new Random(0);
+
+    private final Operation joins = new Operation("join");
+    private final Operation chats = new Operation("chat");
+    private final Operation rankUps = new Operation("rankup");
+
+    private final Map<UUID, Double> balances = new HashMap<>();
+    private final RankUtil.Funds wallet = new RankUtil.Funds() {
+        @Override public boolean canAfford(RankPlayer player, Player prisonPlayer, double amount) {
+            return balances.getOrDefault(player.uid, 0.0) >= amount;
+        }
+
+        @Override public void remove(RankPlayer player, Player prisonPlayer, double amount) {
+            balances.merge(player.uid, -amount, Double::sum);
+        }
+    };
+
+    /*
+     * Constructor
+     */
+
+    /**
+     * @param playerCount      How many synthetic players may join.
+     * @param seconds          How long to run for.
+     * @param joinsPerSecond   How often a new player joins, until all have joined.
+     * @param chatsPerSecond   How often a random joined player chats.
+     * @param rankUpsPerSecond How often a random joined player tries to rank up.
+     */
+    public LoadTest(int playerCount, int seconds, double joinsPerSecond, double chatsPerSecond,
+        double rankUpsPerSecond) {
+        this.playerCount = playerCount;
+        this.seconds = seconds;
+        this.joinsPerSecond = joinsPerSecond;
+        this.chatsPerSecond = chatsPerSecond;
+        this.rankUpsPerSecond = rankUpsPerSecond;
+    }
+
+    /*
+     * Methods
+     */
+
+    public static void main(String[] args) {
+        LoadTest loadTest = new LoadTest(intArg(args, 0, 500), intArg(args, 1, 30),
+            doubleArg(args, 2, 20), doubleArg(args, 3, 200), doubleArg(args, 4, 50));
+        Result result = loadTest.run();
+
+        System.out.printf("%d players over %.1f seconds. Times are in milliseconds.%n", result.players,
+            result.elapsedSeconds);
+        for (Operation operation : result.operations) {
+            LatencyHistogram histogram = operation.latency;
+            System.out.printf(
+                "%-7s %8d calls (%.0f/s), p50 %.3f, p95 %.3f, p99 %.3f, max %.3f, %.0f bytes/op%n",
+                histogram.getName(), histogram.getCount(), histogram.getCount() / result.elapsedSeconds,
+                LatencyHistogram.toMillis(histogram.getPercentileNanos(0.5)),
+                LatencyHistogram.toMillis(histogram.getPercentileNanos(0.95)),
+                LatencyHistogram.toMillis(histogram.getPercentileNanos(0.99)),
+                LatencyHistogram.toMillis(histogram.getMaxNanos()), operation.getBytesPerCall());
+        }
+    }
+
+    /**
+     * Sets up an offline module with the test's ladders, runs the test on the calling thread, and blocks until
+     * it is finished.
+     *
+     * @return The results.
+     */
+    public Result run() {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        List<RankLadder> ladders = createLadders(ranks.getRankManager(), ranks.getLadderManager());
+        RankLadder ladder = ladders.get(0);
+        double highestCost = highestCost(ladder);
+        PlayerManager playerManager = ranks.getPlayerManager();
+        List<RankPlayer> joined = new ArrayList<>(playerCount);
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        // Each kind of operation runs on its own fixed schedule, so a slow one doesn't slow the others down.
+        long joinInterval = interval(joinsPerSecond);
+        long chatInterval = interval(chatsPerSecond);
+        long rankUpInterval = interval(rankUpsPerSecond);
+        long nextJoin = start, nextChat = start, nextRankUp = start;
+
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            while (nextJoin <= now && joined.size() < playerCount) {
+                long opStart = joins.begin();
+                RankPlayer player =
+                    playerManager.createPlayer(new UUID(random.nextLong(), random.nextLong()));
+                for (RankLadder other : ladders) {
+                    other.getByPosition(0).ifPresent(rank -> player.addRank(other, rank));
+                }
+                playerManager.savePlayerAsync(player);
+                joins.end(opStart);
+
+                balances.put(player.uid, random.nextDouble() * highestCost * 2);
+                joined.add(player);
+                nextJoin += joinInterval;
+            }
+
+            while (nextChat <= now && !joined.isEmpty()) {
+                RankPlayer player = joined.get(random.nextInt(joined.size()));
+                long opStart = chats.begin();
+                ChatHandler.formatChat(CHAT_FORMAT, player);
+                chats.end(opStart);
+                nextChat += chatInterval;
+            }
+
+            while (nextRankUp <= now && !joined.isEmpty()) {
+                RankPlayer player = joined.get(random.nextInt(joined.size()));
+                long opStart = rankUps.begin();
+                RankUtil.rankUpPlayer(player, null, ladder, wallet, playerManager, false);
+                rankUps.end(opStart);
+                nextRankUp += rankUpInterval;
+            }
+
+            long next = Math.min(nextChat, nextRankUp);
+            if (joined.size() < playerCount) {
+                next = Math.min(next, nextJoin);
+            }
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        playerManager.shutdown();
+        double elapsedSeconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        return new Result(elapsedSeconds, joined.size(), new Operation[] {joins, chats, rankUps});
+    }
+
+    /**
+     * Creates the test's ladders, each with ranks of rising cost. The first is the default ladder, which players
+     * rank up on.
+     */
+    private static List<RankLadder> createLadders(RankManager rankManager,
+        LadderManager ladderManager) {
+        List<RankLadder> ret = new ArrayList<>(LADDERS);
+        ret.add(ladderManager.getLadder("default").orElseThrow(IllegalStateException::new));
+        for (int i = 1; i < LADDERS; i++) {
+            ret.add(ladderManager.createLadder("ladder" + i).orElseThrow(IllegalStateException::new));
+        }
+
+        for (RankLadder ladder : ret) {
+            for (int i = 0; i < RANKS_PER_LADDER; i++) {
+                Rank rank = rankManager
+                    .createRank(ladder.name + "_" + i, "&7[&b" + ladder.name + i + "&7]",
+                        1000 * Math.pow(1.25, i)).orElseThrow(IllegalStateException::new);
+                ladder.addRank(rank);
+            }
+        }
+        return ret;
+    }
+
+    private static double highestCost(RankLadder ladder) {
+        double highest = 0;
+        for (RankLadder.PositionRank positionRank : ladder.ranks) {
+            Optional<Rank> rank = ladder.getByPosition(positionRank.getPosition());
+            if (rank.isPresent()) {
+                highest = Math.max(highest, rank.get().cost);
+            }
+        }
+        return highest;
+    }
+
+    private static long interval(double perSecond) {
+        return perSecond <= 0 ? Long.MAX_VALUE / 2 : (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+    }
+
+    private static int intArg(String[] args, int index, int def) {
+        return args.length > index ? Integer.parseInt(args[index]) : def;
+    }
+
+    private static double doubleArg(String[] args, int index, double def) {
+        return args.length > index ? Double.parseDouble(args[index]) : def;
+    }
+
+    /*
+     * Member Classes
+     */
+
+    /**
+     * The timings of one kind of operation, and the bytes it allocated on the test's thread. Saves the writer
+     * thread makes later aren't counted.
+     */
+    public static class Operation {
+
+        public final LatencyHistogram latency;
+        private long allocatedBytes;
+        private long allocatedAtStart;
+
+        Operation(String name) {
+            this.latency = new LatencyHistogram(name);
+        }
+
+        long begin() {
+            allocatedAtStart = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+            return System.nanoTime();
+        }
+
+        void end(long startNanos) {
+            latency.recordSince(startNanos);
+            allocatedBytes +=
+                THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedAtStart;
+        }
+
+        public double getBytesPerCall() {
+            long count = latency.getCount();
+            return count == 0 ? 0 : allocatedBytes / (double) count;
+        }
+
+    }
+
+    /**
+     * What a load test measured.
+     */
+    public static class Result {
+
+        public final double elapsedSeconds;
+        public final int players;
+        public final Operation[] operations;
+
+        public Result(double elapsedSeconds, int players, Operation[] operations) {
+            this.elapsedSeconds = elapsedSeconds;
+            this.players = players;
+            this.operations = operations;
+        }
+    }
+
+}
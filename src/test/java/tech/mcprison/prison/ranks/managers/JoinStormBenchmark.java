@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.managers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A storm of first joins: how long the joining thread spends on a burst of new players, and how long until
+ * the writer has stored them all. Each join builds the player and queues it as {@code onPlayerJoin} does,
+ * without the event bus.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.SingleShotTime) @OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10) @Measurement(iterations = 20) @Fork(1)
+public class JoinStormBenchmark {
+
+    @Param({"1000", "10000"}) private int joins;
+
+    private PlayerManager playerManager;
+    private RankLadder ladder;
+    private Rank startingRank;
+    private long nextUid;
+
+    @Setup(Level.Iteration) public void setUp() {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        playerManager = ranks.getPlayerManager();
+        ladder = ranks.getDefaultLadder();
+        startingRank = ranks.getRankManager().createRank("first", "[1]", 0)
+            .orElseThrow(IllegalStateException::new);
+        ladder.addRank(startingRank);
+    }
+
+    @TearDown(Level.Iteration) public void tearDown() {
+        playerManager.shutdown();
+    }
+
+    @Benchmark public void joinStorm() {
+        join();
+    }
+
+    @Benchmark public void joinStormUntilStored() {
+        join();
+        playerManager.flushSaves();
+    }
+
+    private void join() {
+        for (int i = 0; i < joins; i++) {
+            RankPlayer player = playerManager.createPlayer(new UUID(0, nextUid++));
+            player.addRank(ladder, startingRank);
+            playerManager.savePlayerAsync(player);
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.managers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that removing a ladder takes it from its players and from the loaded ladders, on a module set up
+ * offline, without an audit log.
+ */
+public class LadderManagerTest {
+
+    private PrisonRanks ranks;
+
+    @Before public void setUp() {
+        ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+    }
+
+    @After public void tearDown() {
+        ranks.getPlayerManager().shutdown();
+    }
+
+    @Test public void removedLaddersAreTakenFromTheirPlayers() throws IOException {
+        RankLadder donor = ranks.getLadderManager().createLadder("donor").get();
+        Rank vip = ranks.getRankManager().createRank("vip", "[VIP]", 0).get();
+        donor.addRank(vip);
+        RankPlayer player = ranks.getPlayerManager().createPlayer(UUID.randomUUID());
+        player.addRank(donor, vip);
+        ranks.getPlayerManager().savePlayer(player);
+
+        assertTrue(ranks.getLadderManager().removeLadder(donor));
+
+        assertFalse(player.ranks.containsKey("donor"));
+        assertNull(ranks.getLadderManager().getLadderOrNull("donor"));
+        assertFalse(ranks.getLadderManager().getLadder(donor.id).isPresent());
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.managers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.history.RankChange;
+import tech.mcprison.prison.ranks.history.RankHistory;
+import tech.mcprison.prison.ranks.storage.MemoryDataStore;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+import tech.mcprison.prison.ranks.storage.PlayerKeys;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that new players are written in batches off the calling thread, that a synchronous save always
+ * wins over a queued one, that findPlayers hands back the live players, and that only committed rank changes
+ * reach the history.
+ */
+public class PlayerManagerTest {
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    private CountingStore store;
+    private PlayerManager playerManager;
+    private RankLadder ladder;
+    private Rank first;
+    private Rank second;
+
+    @Before public void setUp() {
+        PrisonRanks ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        ladder = ranks.getDefaultLadder();
+        first = ranks.getRankManager().createRank("first", "[1]", 0).get();
+        second = ranks.getRankManager().createRank("second", "[2]", 10).get();
+        ladder.addRank(first);
+        ladder.addRank(second);
+
+        store = new CountingStore();
+        playerManager = new PlayerManager(store, false);
+    }
+
+    @After public void tearDown() {
+        playerManager.shutdown();
+    }
+
+    @Test public void joinStormIsWrittenInBatches() throws IOException {
+        int joins = 5000;
+        for (int i = 0; i < joins; i++) {
+            RankPlayer player = playerManager.createPlayer(new UUID(0, i));
+            player.addRank(ladder, first);
+            playerManager.savePlayerAsync(player);
+        }
+        playerManager.shutdown();
+
+        assertEquals(joins, store.size());
+        assertEquals(0, store.saves.get());
+        assertTrue("Expected fewer batches than joins, got " + store.batches.get(),
+            store.batches.get() < joins);
+        assertEquals(Integer.valueOf(first.id),
+            store.load(PlayerKeys.key(new UUID(0, 42))).get().ranks.get(ladder.name));
+    }
+
+    @Test public void queuedCopyIsTakenWhenQueued() throws IOException {
+        RankPlayer player = playerManager.createPlayer(UUID.randomUUID());
+        player.addRank(ladder, first);
+        playerManager.savePlayerAsync(player);
+        player.addRank(ladder, second); // Changed, but not saved again
+        playerManager.flushSaves();
+
+        assertEquals(Integer.valueOf(first.id),
+            store.load(PlayerKeys.key(player.uid)).get().ranks.get(ladder.name));
+    }
+
+    @Test public void syncSaveWinsOverQueuedCopy() throws IOException {
+        RankPlayer player = playerManager.createPlayer(UUID.randomUUID());
+        player.addRank(ladder, first);
+        playerManager.savePlayerAsync(player);
+        player.addRank(ladder, second);
+        playerManager.savePlayer(player);
+        playerManager.flushSaves();
+
+        assertEquals(Integer.valueOf(second.id),
+            store.load(PlayerKeys.key(player.uid)).get().ranks.get(ladder.name));
+    }
+
+    @Test public void findPlayersReturnsLivePlayers() {
+        RankPlayer onFirst = playerManager.createPlayer(UUID.randomUUID());
+        onFirst.addRank(ladder, first);
+        RankPlayer onSecond = playerManager.createPlayer(UUID.randomUUID());
+        onSecond.addRank(ladder, second);
+
+        Object[] found = playerManager
+            .findPlayers(player -> Integer.valueOf(second.id).equals(player.ranks.get(ladder.name)))
+            .toArray();
+        assertEquals(1, found.length);
+        assertSame(onSecond, found[0]);
+    }
+
+    @Test public void findPlayersTestsCopies() {
+        RankPlayer player = playerManager.createPlayer(UUID.randomUUID());
+        player.addRank(ladder, first);
+
+        assertEquals(1, playerManager.findPlayers(copy -> {
+            copy.ranks.clear();
+            return true;
+        }).count());
+        assertEquals(Integer.valueOf(first.id), player.ranks.get(ladder.name));
+    }
+
+    @Test public void committedChangesAreRecorded() throws Exception {
+        RankHistory history = new RankHistory(temp.newFolder("history"), 10);
+        try {
+            RankPlayer player = historyPlayer(history);
+            playerManager.transaction(() -> {
+                player.addRank(ladder, second);
+                playerManager.savePlayer(player);
+            });
+
+            List<RankChange> changes = history.read(player.uid).get();
+            assertEquals(1, changes.size());
+            assertEquals(Integer.valueOf(second.id), changes.get(0).rankId);
+        } finally {
+            history.close();
+        }
+    }
+
+    @Test public void rolledBackChangesAreNotRecorded() throws Exception {
+        RankHistory history = new RankHistory(temp.newFolder("history"), 10);
+        try {
+            RankPlayer player = historyPlayer(history);
+            RankPlayer snapshot = player.copy();
+            try {
+                playerManager.transaction(() -> {
+                    player.addRank(ladder, second);
+                    playerManager.savePlayer(player);
+                    throw new IOException("Failed on purpose");
+                });
+                fail("The transaction should have failed");
+            } catch (IOException expected) {
+                playerManager.restore(player, snapshot);
+            }
+
+            assertEquals(Integer.valueOf(first.id), player.ranks.get(ladder.name));
+            assertTrue(history.read(player.uid).get().isEmpty());
+        } finally {
+            history.close();
+        }
+    }
+
+    private RankPlayer historyPlayer(RankHistory history) throws IOException {
+        RankPlayer player = playerManager.createPlayer(UUID.randomUUID());
+        player.addRank(ladder, first);
+        playerManager.savePlayer(player);
+        playerManager.setHistory(history);
+        return player;
+    }
+
+    /**
+     * Counts how players reach the store.
+     */
+    private static class CountingStore extends MemoryDataStore<RankPlayer> {
+
+        final AtomicInteger saves = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+
+        CountingStore() {
+            super(CodecUtil.PLAYER);
+        }
+
+        @Override public void save(String key, RankPlayer value) throws IOException {
+            saves.incrementAndGet();
+            super.save(key, value);
+        }
+
+        @Override public void saveAll(Map<String, RankPlayer> values) throws IOException {
+            batches.incrementAndGet();
+            for (Map.Entry<String, RankPlayer> entry : values.entrySet()) {
+                super.save(entry.getKey(), entry.getValue());
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.managers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.PrisonRanks;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+import tech.mcprison.prison.ranks.storage.MemoryStorageBackend;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that removing a rank moves only the players holding it, on a module set up offline.
+ */
+public class RankManagerTest {
+
+    private PrisonRanks ranks;
+    private RankLadder ladder;
+    private Rank a;
+    private Rank b;
+    private Rank c;
+
+    @Before public void setUp() {
+        ranks = PrisonRanks.offline(new RanksConfig(), new MemoryStorageBackend());
+        ladder = ranks.getDefaultLadder();
+        a = ranks.getRankManager().createRank("A", "[A]", 0).get();
+        b = ranks.getRankManager().createRank("B", "[B]", 10).get();
+        c = ranks.getRankManager().createRank("C", "[C]", 20).get();
+        ladder.addRank(a);
+        ladder.addRank(b);
+        ladder.addRank(c);
+    }
+
+    @After public void tearDown() {
+        ranks.getPlayerManager().shutdown();
+    }
+
+    @Test public void holdersOfTheRemovedRankMoveDown() throws IOException {
+        RankPlayer onB = player(b);
+
+        assertTrue(ranks.getRankManager().removeRank(b));
+
+        assertSame(a, onB.getRankOrNull(ladder));
+        assertFalse(ranks.getRankManager().getRank(b.id).isPresent());
+    }
+
+    @Test public void playersOnOtherRanksStayWhereTheyAre() throws IOException {
+        RankPlayer onA = player(a);
+        RankPlayer onC = player(c);
+        player(b);
+
+        assertTrue(ranks.getRankManager().removeRank(b));
+
+        assertSame(a, onA.getRankOrNull(ladder));
+        assertSame(c, onC.getRankOrNull(ladder));
+    }
+
+    private RankPlayer player(Rank rank) throws IOException {
+        RankPlayer player = ranks.getPlayerManager().createPlayer(UUID.randomUUID());
+        player.addRank(ladder, rank);
+        ranks.getPlayerManager().savePlayer(player);
+        return player;
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks which events a window counts as time moves across its bucket boundaries.
+ */
+public class RollingWindowTest {
+
+    // Six buckets of ten seconds: a one-minute window.
+    private final RollingWindow window = new RollingWindow(10_000, 6);
+
+    @Test public void eventsInTheWindowAreCounted() {
+        window.record(1_000, 5);
+        window.record(9_999, 7);
+        window.record(10_000, 11);
+
+        assertEquals(3, window.getCount(10_000));
+        assertEquals(23, window.getSum(10_000));
+        assertEquals(60_000, window.getSpanMillis());
+    }
+
+    @Test public void bucketsLeaveTheWindowWhole() {
+        window.record(0, 1);       // Bucket 0
+        window.record(9_999, 1);   // Bucket 0
+        window.record(10_000, 1);  // Bucket 1
+        window.record(59_999, 1);  // Bucket 5
+
+        // The window covers the current bucket and the five before it.
+        assertEquals(4, window.getCount(59_999));
+        assertEquals(2, window.getCount(60_000));
+        assertEquals(2, window.getCount(69_999));
+        assertEquals(1, window.getCount(70_000));
+        assertEquals(1, window.getCount(109_999));
+        assertEquals(0, window.getCount(110_000));
+    }
+
+    @Test public void eventsAfterTheQueryTimeAreNotCounted() {
+        window.record(5_000, 1);
+        window.record(25_000, 1);
+
+        assertEquals(1, window.getCount(15_000));
+    }
+
+    @Test public void reusedBucketsStartEmpty() {
+        window.record(5_000, 100);
+        window.record(65_000, 1); // The same slot as 5 000, a window later.
+
+        assertEquals(1, window.getCount(65_000));
+        assertEquals(1, window.getSum(65_000));
+    }
+
+    @Test public void bucketsStaleForSeveralWindowsAreCleared() {
+        window.record(5_000, 100);
+        window.record(365_000, 3);
+
+        assertEquals(1, window.getCount(365_000));
+        assertEquals(3, window.getSum(365_000));
+    }
+
+    @Test public void concurrentEventsInOneBucketAreAllCounted() throws InterruptedException {
+        int threads = 8;
+        int events = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < events; i++) {
+                    window.record(12_345, 2);
+                }
+            });
+            thread.start();
+            running.add(thread);
+        }
+        window.record(12_000, 0); // Claim the bucket first, so no write races its clearing.
+        start.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+
+        assertEquals(threads * events + 1, window.getCount(12_345));
+        assertEquals(threads * events * 2L, window.getSum(12_345));
+    }
+
+}
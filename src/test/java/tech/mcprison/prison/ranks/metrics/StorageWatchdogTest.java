@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a slow storage call is put down to the code that made it, rather than the managers and storage
+ * wrappers it went through.
+ */
+public class StorageWatchdogTest {
+
+    private static StackTraceElement frame(String className, String method, int line) {
+        return new StackTraceElement(className, method, className + ".java", line);
+    }
+
+    @Test public void playerSavesAreReportedAtTheirCaller() {
+        // The stack of a rank-up's save, as seen from inside the watched store.
+        StackTraceElement[] stack = {
+            frame("tech.mcprison.prison.ranks.metrics.WatchedDataStore", "save", 60),
+            frame("tech.mcprison.prison.ranks.storage.MigratingPlayerStore", "save", 140),
+            frame("tech.mcprison.prison.ranks.managers.PlayerManager", "savePlayerNow", 280),
+            frame("tech.mcprison.prison.ranks.managers.PlayerManager", "savePlayer", 265),
+            frame("tech.mcprison.prison.ranks.managers.PlayerManager", "savePlayer", 475),
+            frame("tech.mcprison.prison.ranks.RankUtil", "rankUpPlayer", 150),
+            frame("tech.mcprison.prison.ranks.commands.RankUpCommand", "rankUp", 80),
+            frame("tech.mcprison.prison.commands.CommandHandler", "execute", 300),
+            frame("tech.mcprison.prison.Prison", "dispatch", 10)};
+
+        assertEquals("RankUtil.rankUpPlayer:150 <- RankUpCommand.rankUp:80 <- CommandHandler.execute:300",
+            StorageWatchdog.findCallSite(stack));
+    }
+
+    @Test public void directCallersAreReportedAsTheyAre() {
+        StackTraceElement[] stack = {
+            frame("tech.mcprison.prison.ranks.metrics.WatchedDataStore", "loadAll", 45),
+            frame("tech.mcprison.prison.ranks.storage.MigratingPlayerStore", "loadAll", 90),
+            frame("tech.mcprison.prison.ranks.archive.RanksArchive", "export", 120)};
+
+        assertEquals("RanksArchive.export:120", StorageWatchdog.findCallSite(stack));
+    }
+
+}
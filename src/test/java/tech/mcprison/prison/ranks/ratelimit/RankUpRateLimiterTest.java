@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.ratelimit;
+
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RanksConfig;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that each player's bucket allows a burst, refills at its rate up to the burst and no further, that
+ * ladders and players don't share buckets, and that buckets are only swept out once they've refilled.
+ */
+public class RankUpRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final UUID player = UUID.randomUUID();
+    private RanksConfig config;
+    private RankUpRateLimiter limiter;
+    private RankLadder ladder;
+    private RankLadder prestige;
+
+    @Before public void setUp() {
+        config = new RanksConfig();
+        config.rankupLimits.put("*", new RanksConfig.RateLimit(3, 2));
+        limiter = new RankUpRateLimiter(config);
+        ladder = ladder(0, "default");
+        prestige = ladder(7, "prestige");
+    }
+
+    private static RankLadder ladder(int id, String name) {
+        RankLadder ladder = new RankLadder();
+        ladder.id = id;
+        ladder.name = name;
+        return ladder;
+    }
+
+    private int acquired(UUID uid, RankLadder ladder, long now, int tries) {
+        int acquired = 0;
+        for (int i = 0; i < tries; i++) {
+            if (limiter.tryAcquire(uid, ladder, now)) {
+                acquired++;
+            }
+        }
+        return acquired;
+    }
+
+    @Test public void burstIsAllowedAtOnce() {
+        assertEquals(3, acquired(player, ladder, 0, 10));
+        assertEquals(7, limiter.getThrottled());
+    }
+
+    @Test public void tokensRefillAtTheirRate() {
+        assertEquals(3, acquired(player, ladder, 0, 3));
+        assertFalse(limiter.tryAcquire(player, ladder, SECOND / 4)); // Half a token back.
+        assertTrue(limiter.tryAcquire(player, ladder, SECOND / 2)); // A whole one, counting the half.
+        assertFalse(limiter.tryAcquire(player, ladder, SECOND / 2));
+        assertEquals(2, acquired(player, ladder, 3 * SECOND / 2, 5));
+    }
+
+    @Test public void refillStopsAtTheBurst() {
+        assertEquals(3, acquired(player, ladder, 0, 3));
+        assertEquals(3, acquired(player, ladder, 60 * SECOND, 10));
+    }
+
+    @Test public void throttledTriesDontCostTokens() {
+        assertEquals(3, acquired(player, ladder, 0, 3));
+        for (int i = 1; i < 8; i++) {
+            assertFalse(limiter.tryAcquire(player, ladder, i * SECOND / 16));
+        }
+        assertTrue(limiter.tryAcquire(player, ladder, SECOND / 2));
+    }
+
+    @Test public void laddersAndPlayersHaveTheirOwnBuckets() {
+        config.rankupLimits.put("prestige", new RanksConfig.RateLimit(1, 0.1));
+
+        assertEquals(3, acquired(player, ladder, 0, 5));
+        assertEquals(1, acquired(player, prestige, 0, 5));
+        assertEquals(3, acquired(UUID.randomUUID(), ladder, 0, 5));
+        assertEquals(0, acquired(player, prestige, 5 * SECOND, 1));
+        assertEquals(1, acquired(player, prestige, 10 * SECOND, 1));
+        assertEquals(2, limiter.getTrackedPlayers());
+    }
+
+    @Test public void zeroBurstTurnsTheLimitOff() {
+        config.rankupLimits.put("*", new RanksConfig.RateLimit(0, 2));
+
+        assertEquals(100, acquired(player, ladder, 0, 100));
+        assertEquals(0, limiter.getTrackedPlayers());
+    }
+
+    @Test public void idlePlayersAreSweptOut() {
+        long start = System.nanoTime();
+        assertTrue(limiter.tryAcquire(player, ladder, start));
+        assertEquals(1, limiter.getTrackedPlayers());
+
+        // Another player's try, once the first player's bucket has refilled and the sweep is due, sweeps them out.
+        assertTrue(limiter.tryAcquire(UUID.randomUUID(), ladder, start + TimeUnit.MINUTES.toNanos(2)));
+        assertEquals(1, limiter.getTrackedPlayers());
+    }
+
+    @Test public void slowBucketsAreKeptUntilTheyRefill() {
+        // One token an hour, so an emptied bucket takes two hours to fill again.
+        config.rankupLimits.put("*", new RanksConfig.RateLimit(2, 1.0 / 3600));
+        long start = System.nanoTime();
+        assertEquals(2, acquired(player, ladder, start, 2));
+
+        // Sweeps after twenty minutes and after an hour and a half leave the player's bucket alone, still short.
+        long later = start + TimeUnit.MINUTES.toNanos(20);
+        assertTrue(limiter.tryAcquire(UUID.randomUUID(), ladder, later));
+        assertFalse(limiter.tryAcquire(player, ladder, later));
+        later = start + TimeUnit.MINUTES.toNanos(90);
+        assertTrue(limiter.tryAcquire(UUID.randomUUID(), ladder, later));
+        assertEquals(1, acquired(player, ladder, later, 2));
+    }
+
+}
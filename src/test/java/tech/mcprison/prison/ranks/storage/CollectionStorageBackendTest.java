@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the collection backend only creates the collections it writes to, so that servers on another
+ * backend aren't left with hundreds of empty player collections.
+ */
+public class CollectionStorageBackendTest {
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    private JsonFileDatabase database;
+
+    @Before public void setUp() throws IOException {
+        database = new JsonFileDatabase(temp.newFolder("ranks"));
+    }
+
+    private static RankPlayer player(UUID uid) {
+        RankPlayer player = new RankPlayer();
+        player.uid = uid;
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", 1);
+        return player;
+    }
+
+    @Test public void openingAndReadingCreateNothing() throws IOException {
+        CollectionStorageBackend backend = new CollectionStorageBackend(database);
+        assertTrue(backend.getRanks().loadAll().isEmpty());
+        assertTrue(backend.getPlayers().loadAll().isEmpty());
+        assertFalse(backend.getPlayers().load(PlayerKeys.key(UUID.randomUUID())).isPresent());
+        backend.getPlayers().remove(PlayerKeys.key(UUID.randomUUID()));
+
+        assertTrue(database.getCollectionNames().isEmpty());
+    }
+
+    @Test public void writingCreatesOnlyTheCollectionWritten() throws IOException {
+        CollectionStorageBackend backend = new CollectionStorageBackend(database);
+        backend.getPlayers().setMigrated();
+        UUID uid = UUID.randomUUID();
+        backend.getPlayers().save(PlayerKeys.key(uid), player(uid));
+
+        assertEquals(1, database.getCollectionNames().size());
+        assertTrue(database.getCollectionNames().get(0).startsWith("players_"));
+        assertEquals(uid, new CollectionStorageBackend(database).getPlayers().load(PlayerKeys.key(uid))
+            .get().uid);
+    }
+
+    @Test public void legacyPlayersAreReadAndMoved() throws IOException {
+        UUID uid = UUID.randomUUID();
+        database.createCollection("players");
+        database.getCollection("players").get()
+            .insert(PlayerKeys.legacyKey(uid), player(uid).toDocument());
+
+        CollectionStorageBackend backend = new CollectionStorageBackend(database);
+        assertEquals(uid, backend.getPlayers().load(PlayerKeys.key(uid)).get().uid);
+        assertEquals(1, backend.getPlayers().migrate((checked, moved) -> {
+        }));
+        assertEquals(Collections.emptyList(), database.getCollection("players").get().getAll());
+        assertEquals(2, database.getCollectionNames().size());
+        assertEquals(1, backend.getPlayers().loadAll().size());
+        assertEquals(CodecUtil.PLAYER.toJson(player(uid)),
+            CodecUtil.PLAYER.toJson(backend.getPlayers().load(PlayerKeys.key(uid)).get()));
+    }
+
+}
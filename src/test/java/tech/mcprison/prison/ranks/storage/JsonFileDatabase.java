@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import com.google.gson.Gson;
+import tech.mcprison.prison.store.Collection;
+import tech.mcprison.prison.store.Database;
+import tech.mcprison.prison.store.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link Database} laid out as Prison's file storage is: a folder for each collection, holding a JSON file
+ * for each document. Nothing is cached, so every read goes to the file system.
+ */
+public class JsonFileDatabase implements Database {
+
+    private static final Gson GSON = new Gson();
+
+    private final File folder;
+
+    public JsonFileDatabase(File folder) {
+        this.folder = folder;
+    }
+
+    @Override public String getName() {
+        return folder.getName();
+    }
+
+    @Override public Optional<Collection> getCollection(String name) {
+        File collection = new File(folder, name);
+        return collection.isDirectory() ? Optional.of(new FileCollection(collection))
+            : Optional.empty();
+    }
+
+    @Override public void createCollection(String name) {
+        new File(folder, name).mkdirs();
+    }
+
+    @Override public void deleteCollection(String name) {
+        File collection = new File(folder, name);
+        File[] files = collection.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        collection.delete();
+    }
+
+    @Override public List<Collection> getCollections() {
+        List<Collection> ret = new ArrayList<>();
+        File[] collections = folder.listFiles(File::isDirectory);
+        if (collections != null) {
+            for (File collection : collections) {
+                ret.add(new FileCollection(collection));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return The names of the collections that exist.
+     */
+    public List<String> getCollectionNames() {
+        List<String> ret = new ArrayList<>();
+        for (Collection collection : getCollections()) {
+            ret.add(collection.getName());
+        }
+        return ret;
+    }
+
+    private static class FileCollection implements Collection {
+
+        private final File folder;
+
+        FileCollection(File folder) {
+            this.folder = folder;
+        }
+
+        @Override public String getName() {
+            return folder.getName();
+        }
+
+        @Override public List<Document> getAll() {
+            List<Document> ret = new ArrayList<>();
+            File[] files = folder.listFiles((dir, name) -> name.endsWith(".json"));
+            if (files != null) {
+                for (File file : files) {
+                    ret.add(read(file));
+                }
+            }
+            return ret;
+        }
+
+        @Override public Optional<Document> get(String key) {
+            File file = new File(folder, key + ".json");
+            return file.exists() ? Optional.of(read(file)) : Optional.empty();
+        }
+
+        @Override public void insert(String key, Document document) {
+            try {
+                Files.write(new File(folder, key + ".json").toPath(),
+                    GSON.toJson(document).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override public void remove(String key) {
+            new File(folder, key + ".json").delete();
+        }
+
+        private static Document read(File file) {
+            try {
+                return GSON.fromJson(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+                    Document.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.codec.Codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link DataStore} which keeps everything in memory, encoded with its {@link Codec} so that reads and
+ * writes cost about what serialization does on a real backend. Nothing survives a restart.
+ *
+ * @param <T> The type of object stored.
+ */
+public class MemoryDataStore<T> implements DataStore<T> {
+
+    /*
+     * Fields & Constants
+     */
+
+    private final Codec<T> codec;
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+
+    /*
+     * Constructor
+     */
+
+    public MemoryDataStore(Codec<T> codec) {
+        this.codec = codec;
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public Optional<T> load(String key) throws IOException {
+        String json = data.get(key);
+        return json == null ? Optional.empty() : Optional.of(codec.fromJson(json));
+    }
+
+    @Override public List<T> loadAll() throws IOException {
+        List<T> ret = new ArrayList<>(data.size());
+        for (String json : data.values()) {
+            ret.add(codec.fromJson(json));
+        }
+        return ret;
+    }
+
+    @Override public void save(String key, T value) throws IOException {
+        data.put(key, codec.toJson(value));
+    }
+
+    @Override public void saveAll(Map<String, T> values) throws IOException {
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            save(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override public void remove(String key) {
+        data.remove(key);
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+}
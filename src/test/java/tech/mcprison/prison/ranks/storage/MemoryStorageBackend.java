@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.Rank;
+import tech.mcprison.prison.ranks.data.RankLadder;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+
+/**
+ * Keeps the ranks data in {@link MemoryDataStore}s, so nothing survives a restart. This is for tests,
+ * benchmarks and load tests, which shouldn't touch real data.
+ */
+public class MemoryStorageBackend implements StorageBackend {
+
+    /*
+     * Fields & Constants
+     */
+
+    public static final String NAME = "memory";
+
+    private final MemoryDataStore<Rank> ranks = new MemoryDataStore<>(CodecUtil.RANK);
+    private final MemoryDataStore<RankLadder> ladders = new MemoryDataStore<>(CodecUtil.LADDER);
+    private final MemoryDataStore<RankPlayer> playerData = new MemoryDataStore<>(CodecUtil.PLAYER);
+    private final MigratingPlayerStore players;
+
+    /*
+     * Constructor
+     */
+
+    public MemoryStorageBackend() {
+        // There's never anything under the old keys, so the legacy store stays empty.
+        this.players = new MigratingPlayerStore(this, playerData,
+            new MemoryDataStore<>(CodecUtil.PLAYER));
+        this.players.setMigrated();
+    }
+
+    /*
+     * Methods
+     */
+
+    @Override public synchronized void transaction(Transaction transaction) throws IOException {
+        // Nothing is rolled back, but the work is still kept apart from other transactions.
+        transaction.run();
+    }
+
+    @Override public void close() {
+        // Nothing to release.
+    }
+
+    /*
+     * Getters & Setters
+     */
+
+    @Override public String getName() {
+        return NAME;
+    }
+
+    @Override public DataStore<Rank> getRanks() {
+        return ranks;
+    }
+
+    @Override public DataStore<RankLadder> getLadders() {
+        return ladders;
+    }
+
+    @Override public MigratingPlayerStore getPlayers() {
+        return players;
+    }
+
+    /**
+     * @return The players store under the migration wrapper, for checking what was actually written.
+     */
+    public MemoryDataStore<RankPlayer> getPlayerData() {
+        return playerData;
+    }
+
+}
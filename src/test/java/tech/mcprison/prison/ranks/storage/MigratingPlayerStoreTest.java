@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that players stored under their old half-UUID keys are found, moved to full-UUID keys, and never
+ * overwrite a newer save, whether the old keys are in a store of their own or the same one.
+ */
+public class MigratingPlayerStoreTest {
+
+    private MemoryDataStore<RankPlayer> current;
+    private MemoryDataStore<RankPlayer> legacy;
+
+    @Before public void setUp() {
+        current = new MemoryDataStore<>(CodecUtil.PLAYER);
+        legacy = new MemoryDataStore<>(CodecUtil.PLAYER);
+    }
+
+    private static RankPlayer player(UUID uid, int rank) {
+        RankPlayer player = new RankPlayer();
+        player.uid = uid;
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", rank);
+        return player;
+    }
+
+    private static int rankOf(RankPlayer player) {
+        return player.ranks.get("default");
+    }
+
+    @Test public void oldKeysAreReadUntilMigrated() throws IOException {
+        UUID uid = UUID.randomUUID();
+        legacy.save(PlayerKeys.legacyKey(uid), player(uid, 1));
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, legacy);
+
+        assertEquals(1, rankOf(store.load(PlayerKeys.key(uid)).get()));
+        assertEquals(1, store.loadAll().size());
+    }
+
+    @Test public void migrationMovesOldKeys() throws IOException {
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, legacy);
+        for (int i = 0; i < 100; i++) {
+            UUID uid = new UUID(i, i);
+            legacy.save(PlayerKeys.legacyKey(uid), player(uid, i));
+        }
+
+        assertEquals(100, store.migrate((checked, moved) -> {
+        }));
+        assertTrue(store.isMigrated());
+        assertEquals(0, legacy.size());
+        assertEquals(100, current.size());
+        assertEquals(42, rankOf(current.load(PlayerKeys.key(new UUID(42, 42))).get()));
+    }
+
+    @Test public void playersWhoShareAnOldKeyAreTellable() throws IOException {
+        // Older versions only kept the low half of the UUID, so these two would have collided.
+        UUID first = new UUID(1, 7);
+        UUID second = new UUID(2, 7);
+        assertEquals(PlayerKeys.legacyKey(first), PlayerKeys.legacyKey(second));
+
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, legacy);
+        store.save(PlayerKeys.key(first), player(first, 1));
+        store.save(PlayerKeys.key(second), player(second, 2));
+
+        assertEquals(1, rankOf(store.load(PlayerKeys.key(first)).get()));
+        assertEquals(2, rankOf(store.load(PlayerKeys.key(second)).get()));
+        assertEquals(first, PlayerKeys.uidOf(PlayerKeys.key(first)));
+    }
+
+    @Test public void savesClearOldKeysAndWinOverThem() throws IOException {
+        UUID uid = UUID.randomUUID();
+        legacy.save(PlayerKeys.legacyKey(uid), player(uid, 1));
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, legacy);
+
+        store.save(PlayerKeys.key(uid), player(uid, 2));
+        assertFalse(legacy.load(PlayerKeys.legacyKey(uid)).isPresent());
+
+        // Saved again under the old key, as if the server crashed before the old key was cleared.
+        legacy.save(PlayerKeys.legacyKey(uid), player(uid, 1));
+        assertEquals(0, store.migrate((checked, moved) -> {
+        }));
+        assertEquals(2, rankOf(current.load(PlayerKeys.key(uid)).get()));
+        assertEquals(0, legacy.size());
+    }
+
+    @Test public void removalClearsBothKeys() throws IOException {
+        UUID uid = UUID.randomUUID();
+        legacy.save(PlayerKeys.legacyKey(uid), player(uid, 1));
+        current.save(PlayerKeys.key(uid), player(uid, 2));
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, legacy);
+
+        store.remove(PlayerKeys.key(uid));
+        assertFalse(store.load(PlayerKeys.key(uid)).isPresent());
+        assertEquals(0, legacy.size());
+    }
+
+    @Test public void sharedStorePrefersTheNewKey() throws IOException {
+        UUID moved = new UUID(1, 1);
+        UUID notMoved = new UUID(2, 2);
+        current.save(PlayerKeys.legacyKey(moved), player(moved, 1));
+        current.save(PlayerKeys.key(moved), player(moved, 2)); // Crashed before the old key was cleared.
+        current.save(PlayerKeys.legacyKey(notMoved), player(notMoved, 3));
+        MigratingPlayerStore store = new MigratingPlayerStore(new MemoryStorageBackend(), current, current);
+
+        List<RankPlayer> players = store.loadAll();
+        assertEquals(2, players.size());
+        for (RankPlayer player : players) {
+            assertEquals(player.uid.equals(moved) ? 2 : 3, rankOf(player));
+        }
+
+        assertEquals(1, store.migrate((checked, count) -> {
+        }));
+        assertEquals(2, current.size());
+        assertEquals(2, rankOf(store.load(PlayerKeys.key(moved)).get()));
+        assertEquals(3, rankOf(store.load(PlayerKeys.key(notMoved)).get()));
+    }
+
+}
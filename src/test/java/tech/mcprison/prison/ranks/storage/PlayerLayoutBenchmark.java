@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The collection backend's player layouts at a million players, on a file database laid out as Prison's is:
+ * the 256 sharded collections keyed by full UUID, against the single legacy "players" collection keyed by half
+ * of it.
+ * <p>
+ * {@code load} reads a random player from a store that's already open. {@code open} opens the backend afresh
+ * and reads one player, and {@code listCollection} lists the folder a player's collection is kept in, which
+ * is what a flat folder of a million files makes slow for anything that enumerates it. The operating system's
+ * directory cache stays warm between runs; drop it between forks for cold figures. Filling the database takes
+ * a few minutes.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class PlayerLayoutBenchmark {
+
+    @Param({"1000000"}) private int players;
+    @Param({"sharded", "legacy"}) private String layout;
+
+    private File folder;
+    private DataStore<RankPlayer> store;
+
+    @Setup public void setUp() throws IOException {
+        folder = Files.createTempDirectory("player-layout").toFile();
+        JsonFileDatabase database = new JsonFileDatabase(folder);
+        store = open(database);
+
+        Map<String, RankPlayer> batch = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            RankPlayer player = new RankPlayer();
+            player.uid = uid(i);
+            player.ranks = new HashMap<>();
+            player.ranks.put("default", i % 30);
+            batch.put(key(player.uid), player);
+            if (batch.size() == 10_000) {
+                store.saveAll(batch);
+                batch.clear();
+            }
+        }
+        store.saveAll(batch);
+        System.out.printf("%n%d players in %d collections%n", players, database.getCollections().size());
+    }
+
+    @TearDown public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(folder.toPath())) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private DataStore<RankPlayer> open(JsonFileDatabase database) {
+        if ("legacy".equals(layout)) {
+            return new CollectionDataStore<>(database, "players", RankPlayer::new, RankPlayer::toDocument);
+        }
+        CollectionStorageBackend backend = new CollectionStorageBackend(database);
+        backend.getPlayers().setMigrated();
+        return backend.getPlayers();
+    }
+
+    private String key(UUID uid) {
+        return "legacy".equals(layout) ? PlayerKeys.legacyKey(uid) : PlayerKeys.key(uid);
+    }
+
+    // Real UUIDs are random, so give every bit of them something to do.
+    private static UUID uid(int i) {
+        return new UUID(i * 0x9E3779B97F4A7C15L, ~i * 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private UUID randomUid() {
+        return uid(ThreadLocalRandom.current().nextInt(players));
+    }
+
+    @Benchmark public Optional<RankPlayer> load() throws IOException {
+        return store.load(key(randomUid()));
+    }
+
+    @Benchmark @BenchmarkMode(Mode.SingleShotTime) public Optional<RankPlayer> open() throws IOException {
+        return open(new JsonFileDatabase(folder)).load(key(randomUid()));
+    }
+
+    @Benchmark @BenchmarkMode(Mode.SingleShotTime) public int listCollection() {
+        String collection = "legacy".equals(layout) ? "players"
+            : String.format("players_%02x", Math.floorMod(key(randomUid()).hashCode(), 256));
+        String[] files = new File(folder, collection).list();
+        return files == null ? 0 : files.length;
+    }
+
+}
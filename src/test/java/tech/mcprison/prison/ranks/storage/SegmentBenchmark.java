@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Random reads and rewrites of players in the segment store, against the same in the file-per-player layout the
+ * collection backend has on a file database. Setup prints how many bytes each player takes on disk, which is
+ * what the segments are for: both the files' lengths, and what they take once each file is rounded up to a whole
+ * block, as most filesystems do.
+ */
+@State(Scope.Benchmark) @BenchmarkMode(Mode.AverageTime) @OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1) @Measurement(iterations = 5, time = 1) @Fork(1)
+public class SegmentBenchmark {
+
+    // The block size of most Linux and Windows filesystems. Java 8 can't ask the filesystem for its own.
+    private static final long BLOCK = 4096;
+
+    @Param({"10000", "100000"}) private int players;
+    @Param({"segments", "files"}) private String layout;
+
+    private File folder;
+    private DataStore<RankPlayer> store;
+    private RankPlayer update;
+
+    @Setup public void setUp() throws IOException {
+        folder = Files.createTempDirectory("segments").toFile();
+        if ("files".equals(layout)) {
+            store = new CollectionDataStore<>(new JsonFileDatabase(folder), "players", RankPlayer::new,
+                RankPlayer::toDocument);
+        } else {
+            store = new SegmentDataStore<>(folder, CodecUtil.PLAYER, 64,
+                SegmentStorageBackend.PLAYER_DICTIONARY);
+        }
+
+        Map<String, RankPlayer> batch = new HashMap<>();
+        for (int i = 0; i < players; i++) {
+            RankPlayer player = player(i);
+            batch.put(PlayerKeys.key(player.uid), player);
+            if (batch.size() == 1000) {
+                store.saveAll(batch);
+                batch.clear();
+            }
+        }
+        store.saveAll(batch);
+        long bytes = 0;
+        long blocks = 0;
+        try (Stream<Path> files = Files.walk(folder.toPath())) {
+            for (File file : files.map(Path::toFile).filter(File::isFile).collect(Collectors.toList())) {
+                bytes += file.length();
+                blocks += (file.length() + BLOCK - 1) / BLOCK;
+            }
+        }
+        System.out.printf("%n%d players as %s in %d bytes, %.1f bytes each; %.1f bytes each in whole blocks%n",
+            players, layout, bytes, (double) bytes / players, (double) blocks * BLOCK / players);
+
+        update = player(0);
+    }
+
+    @TearDown public void tearDown() throws IOException {
+        if (store instanceof SegmentDataStore) {
+            ((SegmentDataStore<RankPlayer>) store).close();
+        }
+        try (Stream<Path> files = Files.walk(folder.toPath())) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static RankPlayer player(int i) {
+        RankPlayer player = new RankPlayer();
+        player.uid = new UUID(i * 31L, i);
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", i % 30);
+        if (i % 10 == 0) {
+            player.ranks.put("donor", i % 5);
+        }
+        return player;
+    }
+
+    private UUID randomUid() {
+        int i = ThreadLocalRandom.current().nextInt(players);
+        return new UUID(i * 31L, i);
+    }
+
+    @Benchmark public RankPlayer randomRead() throws IOException {
+        return store.load(PlayerKeys.key(randomUid())).get();
+    }
+
+    @Benchmark public void randomWrite() throws IOException {
+        update.uid = randomUid();
+        store.save(PlayerKeys.key(update.uid), update);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 The MC-Prison Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package tech.mcprison.prison.ranks.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.mcprison.prison.ranks.codec.CodecUtil;
+import tech.mcprison.prison.ranks.data.RankPlayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the segment store reads back what it writes, both from its index and after reopening its files,
+ * and that compaction keeps every live record.
+ */
+public class SegmentDataStoreTest {
+
+    private static final byte[] DICTIONARY =
+        "{\"uid\":\"-4000-8000-9000-a000-b000-\",\"ranks\":{\"default\":1}}".getBytes(StandardCharsets.UTF_8);
+
+    @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+    private File folder;
+    private SegmentDataStore<RankPlayer> store;
+
+    @Before public void setUp() throws IOException {
+        folder = temp.newFolder("segments");
+        store = open();
+    }
+
+    @After public void tearDown() {
+        store.close();
+    }
+
+    private SegmentDataStore<RankPlayer> open() throws IOException {
+        return new SegmentDataStore<>(folder, CodecUtil.PLAYER, 4, DICTIONARY);
+    }
+
+    private static RankPlayer player(int id, int rank) {
+        RankPlayer player = new RankPlayer();
+        player.uid = new UUID(id, id);
+        player.ranks = new HashMap<>();
+        player.ranks.put("default", rank);
+        return player;
+    }
+
+    @Test public void savedPlayersLoad() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            store.save(PlayerKeys.key(new UUID(i, i)), player(i, i));
+        }
+
+        assertEquals(100, store.size());
+        assertEquals(100, store.loadAll().size());
+        RankPlayer loaded = store.load(PlayerKeys.key(new UUID(42, 42))).get();
+        assertEquals(new UUID(42, 42), loaded.uid);
+        assertEquals(42, (int) loaded.ranks.get("default"));
+        assertFalse(store.load(PlayerKeys.key(new UUID(1000, 1000))).isPresent());
+    }
+
+    @Test public void latestSaveWins() throws IOException {
+        String key = PlayerKeys.key(new UUID(1, 1));
+        store.save(key, player(1, 1));
+        store.save(key, player(1, 2));
+
+        assertEquals(1, store.size());
+        assertEquals(2, (int) store.load(key).get().ranks.get("default"));
+        assertTrue(store.getLiveBytes() < store.getDiskBytes());
+    }
+
+    @Test public void removedPlayersStayRemovedAfterReopening() throws IOException {
+        Map<String, RankPlayer> players = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            players.put(PlayerKeys.key(new UUID(i, i)), player(i, i));
+        }
+        store.saveAll(players);
+        store.remove(PlayerKeys.key(new UUID(3, 3)));
+        store.remove(PlayerKeys.key(new UUID(1000, 1000))); // Never stored, so nothing is written.
+        store.close();
+
+        store = open();
+        assertEquals(9, store.size());
+        assertFalse(store.load(PlayerKeys.key(new UUID(3, 3))).isPresent());
+        assertEquals(7, (int) store.load(PlayerKeys.key(new UUID(7, 7))).get().ranks.get("default"));
+    }
+
+    @Test public void reopeningRebuildsTheIndex() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            store.save(PlayerKeys.key(new UUID(i, i)), player(i, 1));
+            store.save(PlayerKeys.key(new UUID(i, i)), player(i, 2));
+        }
+        long diskBytes = store.getDiskBytes();
+        long liveBytes = store.getLiveBytes();
+        store.close();
+
+        store = open();
+        assertEquals(50, store.size());
+        assertEquals(diskBytes, store.getDiskBytes());
+        assertEquals(liveBytes, store.getLiveBytes());
+        assertEquals(2, (int) store.load(PlayerKeys.key(new UUID(9, 9))).get().ranks.get("default"));
+    }
+
+    @Test public void compactionKeepsLiveRecords() throws IOException {
+        // Rewrite the same players until each segment is mostly dead space.
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.save(PlayerKeys.key(new UUID(i, i)), player(i, round));
+            }
+        }
+        long before = store.getDiskBytes();
+        store.compactAll();
+
+        assertTrue(store.getDiskBytes() < before);
+        assertEquals(100, store.size());
+        assertEquals(39, (int) store.load(PlayerKeys.key(new UUID(5, 5))).get().ranks.get("default"));
+
+        store.close();
+        store = open();
+        assertEquals(100, store.size());
+        assertEquals(store.getLiveBytes() + 4 * 4, store.getDiskBytes());
+        assertEquals(39, (int) store.load(PlayerKeys.key(new UUID(99, 99))).get().ranks.get("default"));
+    }
+
+}